@@ -0,0 +1,57 @@
+package prometheus;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.MetricFamily;
+import prometheus.types.Summary;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * A walker that does no work of its own - it just hands everything it is given to a JMH blackhole
+ * so the JIT cannot optimize away the work done to produce it.
+ */
+public class BlackholePrometheusMetricsWalker implements PrometheusMetricsWalker {
+    private final Blackhole blackhole;
+
+    public BlackholePrometheusMetricsWalker(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void walkStart() {
+    }
+
+    @Override
+    public void walkFinish(int familiesProcessed, int metricsProcessed) {
+        blackhole.consume(familiesProcessed);
+        blackhole.consume(metricsProcessed);
+    }
+
+    @Override
+    public void walkMetricFamily(MetricFamily family, int index) {
+        blackhole.consume(family);
+    }
+
+    @Override
+    public void walkCounterMetric(MetricFamily family, Counter counter, int index) {
+        blackhole.consume(counter);
+    }
+
+    @Override
+    public void walkGaugeMetric(MetricFamily family, Gauge gauge, int index) {
+        blackhole.consume(gauge);
+    }
+
+    @Override
+    public void walkSummaryMetric(MetricFamily family, Summary summary, int index) {
+        blackhole.consume(summary);
+    }
+
+    @Override
+    public void walkHistogramMetric(MetricFamily family, Histogram histogram, int index) {
+        blackhole.consume(histogram);
+    }
+}
@@ -0,0 +1,105 @@
+package prometheus;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares writing sample values with {@link Util#convertDoubleToString(double)},
+ * {@link Util#appendDouble(StringBuilder, double)} and {@link Util#writeDouble(double, byte[], int)}
+ * with the original String.format based conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DoubleFormatterBenchmark {
+
+    private double[] values;
+    private StringBuilder str;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        // the same mix as DoubleParserBenchmark: counts, durations, bucket bounds and the odd NaN
+        Random random = new Random(42);
+        values = new double[1024];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 8) {
+                case 0:
+                case 1:
+                case 2:
+                    values[i] = random.nextInt(1000000);
+                    break;
+                case 3:
+                case 4:
+                    values[i] = random.nextDouble() * 1000;
+                    break;
+                case 5:
+                    values[i] = random.nextDouble() * 1e-6;
+                    break;
+                case 6:
+                    values[i] = random.nextInt(100) / 100.0;
+                    break;
+                default:
+                    values[i] = (random.nextBoolean()) ? Double.NaN : Double.POSITIVE_INFINITY;
+                    break;
+            }
+        }
+        str = new StringBuilder(values.length * Util.MAX_DOUBLE_LENGTH);
+        buffer = new byte[values.length * Util.MAX_DOUBLE_LENGTH];
+    }
+
+    @Benchmark
+    public void legacyString(Blackhole blackhole) {
+        for (double value : values) {
+            blackhole.consume(legacyConvertDoubleToString(value));
+        }
+    }
+
+    @Benchmark
+    public void string(Blackhole blackhole) {
+        for (double value : values) {
+            blackhole.consume(Util.convertDoubleToString(value));
+        }
+    }
+
+    @Benchmark
+    public void stringBuilder(Blackhole blackhole) {
+        str.setLength(0);
+        for (double value : values) {
+            Util.appendDouble(str, value).append(' ');
+        }
+        blackhole.consume(str);
+    }
+
+    @Benchmark
+    public void bytes(Blackhole blackhole) {
+        int offset = 0;
+        for (double value : values) {
+            offset = Util.writeDouble(value, buffer, offset);
+        }
+        blackhole.consume(offset);
+    }
+
+    // the original implementation of Util.convertDoubleToString
+    private static String legacyConvertDoubleToString(double value) {
+        if (Double.isInfinite(value)) {
+            return (value < 0.0) ? "-Inf" : "+Inf";
+        }
+        return String.format("%f", value);
+    }
+}
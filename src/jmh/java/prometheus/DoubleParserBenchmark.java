@@ -0,0 +1,108 @@
+package prometheus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares converting sample values with {@link Util#convertStringToDouble(String)}, with
+ * {@link Util#convertToDouble(byte[], int, int)} and with the original string based conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DoubleParserBenchmark {
+
+    private String[] values;
+    private byte[] bytes;
+    private int[] offsets;
+
+    @Setup
+    public void setup() {
+        // a mix of what sample values typically look like: counts, durations, bucket bounds and the odd NaN
+        Random random = new Random(42);
+        values = new String[1024];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 8) {
+                case 0:
+                case 1:
+                case 2:
+                    values[i] = Long.toString(random.nextInt(1000000));
+                    break;
+                case 3:
+                case 4:
+                    values[i] = Double.toString(random.nextDouble() * 1000);
+                    break;
+                case 5:
+                    values[i] = Double.toString(random.nextDouble() * 1e-6);
+                    break;
+                case 6:
+                    values[i] = "0." + random.nextInt(100);
+                    break;
+                default:
+                    values[i] = (random.nextBoolean()) ? "NaN" : "+Inf";
+                    break;
+            }
+        }
+
+        StringBuilder all = new StringBuilder();
+        offsets = new int[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            offsets[i] = all.length();
+            all.append(values[i]);
+        }
+        offsets[values.length] = all.length();
+        bytes = all.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public void legacyString(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(legacyConvertStringToDouble(value));
+        }
+    }
+
+    @Benchmark
+    public void string(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(Util.convertStringToDouble(value));
+        }
+    }
+
+    @Benchmark
+    public void bytes(Blackhole blackhole) {
+        for (int i = 0; i < values.length; i++) {
+            blackhole.consume(Util.convertToDouble(bytes, offsets[i], offsets[i + 1]));
+        }
+    }
+
+    // the original implementation of Util.convertStringToDouble
+    private static double legacyConvertStringToDouble(String valueString) {
+        double doubleValue;
+        if (valueString.equalsIgnoreCase("NaN")) {
+            doubleValue = Double.NaN;
+        } else if (valueString.equalsIgnoreCase("+Inf")) {
+            doubleValue = Double.POSITIVE_INFINITY;
+        } else if (valueString.equalsIgnoreCase("-Inf")) {
+            doubleValue = Double.NEGATIVE_INFINITY;
+        } else {
+            doubleValue = Double.valueOf(valueString).doubleValue();
+        }
+        return doubleValue;
+    }
+}
@@ -0,0 +1,37 @@
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import prometheus.types.MetricFamily;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * Walks metric families that have already been parsed. This lets the benchmarks measure the cost of
+ * walking the data (and of the walker itself) without the cost of parsing it.
+ */
+public class ListPrometheusMetricsProcessor extends PrometheusMetricsProcessor<MetricFamily> {
+    private final List<MetricFamily> metricFamilies;
+
+    public ListPrometheusMetricsProcessor(List<MetricFamily> metricFamilies, PrometheusMetricsWalker theWalker) {
+        super(new ByteArrayInputStream(new byte[0]), theWalker);
+        this.metricFamilies = metricFamilies;
+    }
+
+    @Override
+    protected PrometheusMetricDataParser<MetricFamily> createPrometheusMetricDataParser() {
+        final Iterator<MetricFamily> iterator = metricFamilies.iterator();
+        return new PrometheusMetricDataParser<MetricFamily>(getInputStream()) {
+            @Override
+            public MetricFamily parse() {
+                return iterator.hasNext() ? iterator.next() : null;
+            }
+        };
+    }
+
+    @Override
+    protected MetricFamily convert(MetricFamily metricFamily) {
+        return metricFamily;
+    }
+}
@@ -0,0 +1,222 @@
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.prometheus.client.Metrics;
+import prometheus.binary.BinaryPrometheusMetricDataParser;
+import prometheus.text.TextPrometheusMetricDataParser;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+
+/**
+ * Synthetic Prometheus data shared by the benchmarks. The same metric data is generated in both
+ * the text and the binary format. The shape of the data is controlled by the parameters; families
+ * cycle through the counter, gauge, summary and histogram types.
+ */
+@State(Scope.Benchmark)
+public class PayloadState {
+    private static final MetricType[] TYPES = MetricType.values();
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    @Param({ "100" })
+    public int families;
+
+    @Param({ "100" })
+    public int seriesPerFamily;
+
+    @Param({ "4" })
+    public int labelsPerSeries;
+
+    @Param({ "10" })
+    public int histogramBuckets;
+
+    /**
+     * The metric data in the text format.
+     */
+    public byte[] text;
+
+    /**
+     * The metric data in the delimited protocol buffer format.
+     */
+    public byte[] binary;
+
+    /**
+     * The metric families parsed out of the {@link #text} data.
+     */
+    public List<MetricFamily> metricFamilies;
+
+    /**
+     * The protocol buffer metric families parsed out of the {@link #binary} data.
+     */
+    public List<Metrics.MetricFamily> binaryMetricFamilies;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        text = generateText();
+        binary = generateBinary();
+
+        metricFamilies = new ArrayList<>();
+        TextPrometheusMetricDataParser textParser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(text));
+        for (MetricFamily family = textParser.parse(); family != null; family = textParser.parse()) {
+            metricFamilies.add(family);
+        }
+
+        binaryMetricFamilies = new ArrayList<>();
+        BinaryPrometheusMetricDataParser binaryParser = new BinaryPrometheusMetricDataParser(
+                new ByteArrayInputStream(binary));
+        for (Metrics.MetricFamily family = binaryParser.parse(); family != null; family = binaryParser.parse()) {
+            binaryMetricFamilies.add(family);
+        }
+    }
+
+    private MetricType typeOf(int family) {
+        return TYPES[family % TYPES.length];
+    }
+
+    private String familyName(int family) {
+        return "benchmark_" + typeOf(family).name().toLowerCase() + "_metric_" + family;
+    }
+
+    private String labelName(int label) {
+        return "label_" + label;
+    }
+
+    private String labelValue(int series, int label) {
+        return "value-" + series + "-" + label;
+    }
+
+    private double value(int family, int series) {
+        return family * 1000.0 + series + 0.25;
+    }
+
+    private double bucketBound(int bucket) {
+        return (bucket == histogramBuckets - 1) ? Double.POSITIVE_INFINITY : 0.005 * (1 << bucket);
+    }
+
+    private byte[] generateText() {
+        StringBuilder str = new StringBuilder();
+        for (int family = 0; family < families; family++) {
+            String name = familyName(family);
+            MetricType type = typeOf(family);
+            str.append("# HELP ").append(name).append(" Synthetic ").append(type).append(" data.\n");
+            str.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase()).append('\n');
+
+            for (int series = 0; series < seriesPerFamily; series++) {
+                StringBuilder labels = new StringBuilder();
+                for (int label = 0; label < labelsPerSeries; label++) {
+                    labels.append(labelName(label)).append("=\"").append(labelValue(series, label)).append("\",");
+                }
+                double value = value(family, series);
+
+                switch (type) {
+                    case COUNTER:
+                    case GAUGE:
+                        appendSample(str, name, labels, null, value);
+                        break;
+                    case SUMMARY:
+                        for (double quantile : QUANTILES) {
+                            appendSample(str, name, labels, "quantile=\"" + quantile + "\"", value * quantile);
+                        }
+                        appendSample(str, name + "_sum", labels, null, value);
+                        appendSample(str, name + "_count", labels, null, series);
+                        break;
+                    case HISTOGRAM:
+                        for (int bucket = 0; bucket < histogramBuckets; bucket++) {
+                            appendSample(str, name + "_bucket", labels,
+                                    "le=\"" + Util.convertDoubleToString(bucketBound(bucket)) + "\"",
+                                    series + bucket);
+                        }
+                        appendSample(str, name + "_sum", labels, null, value);
+                        appendSample(str, name + "_count", labels, null, series + histogramBuckets - 1);
+                        break;
+                }
+            }
+        }
+        return str.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendSample(StringBuilder str, String name, StringBuilder labels, String extraLabel,
+            double value) {
+        str.append(name);
+        if (labels.length() > 0 || extraLabel != null) {
+            str.append('{').append(labels);
+            if (extraLabel != null) {
+                str.append(extraLabel);
+            } else {
+                str.setLength(str.length() - 1); // remove the trailing comma
+            }
+            str.append('}');
+        }
+        str.append(' ').append(value).append('\n');
+    }
+
+    private byte[] generateBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int family = 0; family < families; family++) {
+            MetricType type = typeOf(family);
+            Metrics.MetricFamily.Builder familyBuilder = Metrics.MetricFamily.newBuilder()
+                    .setName(familyName(family))
+                    .setHelp("Synthetic " + type + " data.");
+
+            for (int series = 0; series < seriesPerFamily; series++) {
+                Metrics.Metric.Builder metricBuilder = Metrics.Metric.newBuilder();
+                for (int label = 0; label < labelsPerSeries; label++) {
+                    metricBuilder.addLabel(Metrics.LabelPair.newBuilder()
+                            .setName(labelName(label))
+                            .setValue(labelValue(series, label)));
+                }
+                double value = value(family, series);
+
+                switch (type) {
+                    case COUNTER:
+                        familyBuilder.setType(Metrics.MetricType.COUNTER);
+                        metricBuilder.setCounter(Metrics.Counter.newBuilder().setValue(value));
+                        break;
+                    case GAUGE:
+                        familyBuilder.setType(Metrics.MetricType.GAUGE);
+                        metricBuilder.setGauge(Metrics.Gauge.newBuilder().setValue(value));
+                        break;
+                    case SUMMARY:
+                        familyBuilder.setType(Metrics.MetricType.SUMMARY);
+                        Metrics.Summary.Builder summaryBuilder = Metrics.Summary.newBuilder()
+                                .setSampleCount(series)
+                                .setSampleSum(value);
+                        for (double quantile : QUANTILES) {
+                            summaryBuilder.addQuantile(Metrics.Quantile.newBuilder()
+                                    .setQuantile(quantile)
+                                    .setValue(value * quantile));
+                        }
+                        metricBuilder.setSummary(summaryBuilder);
+                        break;
+                    case HISTOGRAM:
+                        familyBuilder.setType(Metrics.MetricType.HISTOGRAM);
+                        Metrics.Histogram.Builder histogramBuilder = Metrics.Histogram.newBuilder()
+                                .setSampleCount(series + histogramBuckets - 1)
+                                .setSampleSum(value);
+                        for (int bucket = 0; bucket < histogramBuckets; bucket++) {
+                            histogramBuilder.addBucket(Metrics.Bucket.newBuilder()
+                                    .setUpperBound(bucketBound(bucket))
+                                    .setCumulativeCount(series + bucket));
+                        }
+                        metricBuilder.setHistogram(histogramBuilder);
+                        break;
+                }
+                familyBuilder.addMetric(metricBuilder);
+            }
+            familyBuilder.build().writeDelimitedTo(out);
+        }
+        return out.toByteArray();
+    }
+}
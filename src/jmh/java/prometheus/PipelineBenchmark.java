@@ -0,0 +1,40 @@
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import prometheus.binary.BinaryPrometheusMetricsProcessor;
+import prometheus.text.TextPrometheusMetricsProcessor;
+
+/**
+ * Measures {@link PrometheusMetricsProcessor#walk()} end to end - parsing, converting and walking the
+ * synthetic data - with a walker that does no work of its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Benchmark
+    public void walkText(PayloadState payload, Blackhole blackhole) {
+        new TextPrometheusMetricsProcessor(new ByteArrayInputStream(payload.text),
+                new BlackholePrometheusMetricsWalker(blackhole)).walk();
+    }
+
+    @Benchmark
+    public void walkBinary(PayloadState payload, Blackhole blackhole) {
+        new BinaryPrometheusMetricsProcessor(new ByteArrayInputStream(payload.binary),
+                new BlackholePrometheusMetricsWalker(blackhole)).walk();
+    }
+}
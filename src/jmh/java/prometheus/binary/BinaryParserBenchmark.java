@@ -0,0 +1,77 @@
+package prometheus.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.prometheus.client.Metrics.MetricFamily;
+import prometheus.PayloadState;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+/**
+ * Measures {@link BinaryPrometheusMetricDataParser#parse()} and
+ * {@link BinaryPrometheusMetricsProcessor#convert(MetricFamily)} over the synthetic binary data, and
+ * {@link DirectBinaryPrometheusMetricDataParser#parse()} which does the work of both.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryParserBenchmark {
+
+    private BinaryPrometheusMetricsProcessor processor;
+
+    @Setup
+    public void setup(PayloadState payload) {
+        processor = new BinaryPrometheusMetricsProcessor(new ByteArrayInputStream(payload.binary),
+                new CollectorPrometheusMetricsWalker());
+    }
+
+    @Benchmark
+    public void parse(PayloadState payload, Blackhole blackhole) throws IOException {
+        BinaryPrometheusMetricDataParser parser = new BinaryPrometheusMetricDataParser(
+                new ByteArrayInputStream(payload.binary));
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            blackhole.consume(family);
+        }
+    }
+
+    @Benchmark
+    public void convert(PayloadState payload, Blackhole blackhole) {
+        for (MetricFamily family : payload.binaryMetricFamilies) {
+            blackhole.consume(processor.convert(family));
+        }
+    }
+
+    @Benchmark
+    public void parseAndConvert(PayloadState payload, Blackhole blackhole) throws IOException {
+        BinaryPrometheusMetricDataParser parser = new BinaryPrometheusMetricDataParser(
+                new ByteArrayInputStream(payload.binary));
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            blackhole.consume(processor.convert(family));
+        }
+    }
+
+    @Benchmark
+    public void parseDirect(PayloadState payload, Blackhole blackhole) throws IOException {
+        DirectBinaryPrometheusMetricDataParser parser = new DirectBinaryPrometheusMetricDataParser(
+                new ByteArrayInputStream(payload.binary));
+        for (prometheus.types.MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            blackhole.consume(family);
+        }
+    }
+}
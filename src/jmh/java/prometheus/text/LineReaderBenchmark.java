@@ -0,0 +1,100 @@
+package prometheus.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the throughput of {@link LineReader} against the byte-at-a-time reader
+ * the text parser originally used.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineReaderBenchmark {
+
+    /**
+     * Approximate size of the generated text data, in megabytes.
+     */
+    @Param({ "1", "40" })
+    public int megabytes;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        StringBuilder text = new StringBuilder();
+        int family = 0;
+        while (text.length() < megabytes * 1024 * 1024) {
+            String name = "node_cpu_seconds_total_" + family;
+            text.append("# HELP ").append(name).append(" Seconds the CPUs spent in each mode.\n");
+            text.append("# TYPE ").append(name).append(" counter\n");
+            for (int cpu = 0; cpu < 64; cpu++) {
+                text.append(name).append("{cpu=\"").append(cpu).append("\",mode=\"idle\"} ")
+                        .append(123456.78 + cpu).append('\n');
+            }
+            family++;
+        }
+        data = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void legacyReader(Blackhole blackhole) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(data);
+        String line;
+        while ((line = legacyReadLine(inputStream)) != null) {
+            blackhole.consume(line);
+        }
+    }
+
+    @Benchmark
+    public void lineReaderStrings(Blackhole blackhole) throws IOException {
+        LineReader lineReader = new LineReader(new ByteArrayInputStream(data));
+        while (lineReader.readLine()) {
+            blackhole.consume(lineReader.getLineAsString());
+        }
+    }
+
+    @Benchmark
+    public void lineReaderRanges(Blackhole blackhole) throws IOException {
+        LineReader lineReader = new LineReader(new ByteArrayInputStream(data));
+        while (lineReader.readLine()) {
+            blackhole.consume(lineReader.getLineEnd() - lineReader.getLineStart());
+        }
+    }
+
+    // this is how TextPrometheusMetricDataParser used to read lines
+    private static String legacyReadLine(InputStream inputStream) throws IOException {
+        int lineChar;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        for (lineChar = inputStream.read(); (lineChar != '\n' && lineChar != -1); lineChar = inputStream.read()) {
+            baos.write(lineChar);
+        }
+
+        if (lineChar == -1 && baos.size() == 0) {
+            return null;
+        }
+
+        return baos.toString("UTF-8");
+    }
+}
@@ -0,0 +1,70 @@
+package prometheus.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import prometheus.PayloadState;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+
+/**
+ * Measures {@link TextPrometheusMetricDataParser#parse()} and {@link TextPrometheusMetricDataParser#parse(TextSampleSink)}
+ * over the synthetic text data, as well as {@link ParallelTextPrometheusMetricDataParser} on the common pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextParserBenchmark {
+
+    @Benchmark
+    public void parse(PayloadState payload, Blackhole blackhole) throws IOException {
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(payload.text));
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            blackhole.consume(family);
+        }
+    }
+
+    @Benchmark
+    public void parseParallel(PayloadState payload, Blackhole blackhole) throws IOException {
+        ParallelTextPrometheusMetricDataParser parser = new ParallelTextPrometheusMetricDataParser(
+                new ByteArrayInputStream(payload.text), ForkJoinPool.commonPool());
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            blackhole.consume(family);
+        }
+    }
+
+    @Benchmark
+    public void stream(PayloadState payload, final Blackhole blackhole) throws IOException {
+        new TextPrometheusMetricDataParser(new ByteArrayInputStream(payload.text)).parse(new TextSampleSink() {
+            @Override
+            public void startMetricFamily(String name, MetricType type, String help) {
+                blackhole.consume(name);
+            }
+
+            @Override
+            public void sample(String name, LabelView labels, double value, long timestamp) {
+                blackhole.consume(name);
+                blackhole.consume(labels.getLabelCount());
+                blackhole.consume(value);
+            }
+
+            @Override
+            public void endMetricFamily() {
+            }
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package prometheus.walkers;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import prometheus.ListPrometheusMetricsProcessor;
+import prometheus.PayloadState;
+
+/**
+ * Measures the cost of each of the walkers over already parsed metric families.
+ * Walkers that print do so to a stream that discards everything.
+ * The logging walker logs at DEBUG level, so this measures its cost when that level is disabled.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WalkerBenchmark {
+
+    @Param({ "collector", "logging", "simple", "xml", "legacyXml", "json", "legacyJson" })
+    public String walker;
+
+    private PrintStream originalOut;
+
+    @Setup
+    public void setup() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public Object walk(PayloadState payload) {
+        PrometheusMetricsWalker theWalker = createWalker();
+        new ListPrometheusMetricsProcessor(payload.metricFamilies, theWalker).walk();
+        return theWalker;
+    }
+
+    private PrometheusMetricsWalker createWalker() {
+        switch (walker) {
+            case "collector":
+                return new CollectorPrometheusMetricsWalker();
+            case "logging":
+                return new LoggingPrometheusMetricsWalker();
+            case "simple":
+                return new SimplePrometheusMetricsWalker();
+            case "xml":
+                return new XMLPrometheusMetricsWalker();
+            case "legacyXml":
+                return new LegacyXMLPrometheusMetricsWalker();
+            case "json":
+                return new JSONPrometheusMetricsWalker();
+            case "legacyJson":
+                return new LegacyJSONPrometheusMetricsWalker();
+            default:
+                throw new IllegalArgumentException("Unknown walker: " + walker);
+        }
+    }
+}
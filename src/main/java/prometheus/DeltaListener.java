@@ -0,0 +1,65 @@
+package prometheus;
+
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+
+/**
+ * Told by a {@link DeltaScraper} how the series found by a scrape differ from those found by the scrape before it.
+ * Like a {@link prometheus.walkers.PrometheusMetricsWalker walker}, it is called while the scrape is walked.
+ *
+ * Each series that is new, has changed or was reset gets exactly one call. Series that have not changed get none.
+ */
+public interface DeltaListener {
+
+    /**
+     * Called before anything else is reported for a scrape.
+     */
+    void deltaStart();
+
+    /**
+     * Called for a series that was not found by the previous scrape. On the first scrape, every series is added.
+     *
+     * @param family the metric family of the series
+     * @param metric the series
+     */
+    void seriesAdded(MetricFamily family, Metric metric);
+
+    /**
+     * Called for a series whose value (or, for summaries and histograms, whose count, sum, quantiles or buckets)
+     * changed since the previous scrape.
+     *
+     * @param family the metric family of the series
+     * @param metric the series, with its new values
+     */
+    void seriesChanged(MetricFamily family, Metric metric);
+
+    /**
+     * Called instead of {@link #seriesChanged(MetricFamily, Metric)} for a counter whose value went down, or a
+     * summary or histogram whose count went down, since the previous scrape - typically because the process that
+     * exposes it restarted.
+     *
+     * @param family the metric family of the series
+     * @param metric the series, with its new values
+     */
+    void counterReset(MetricFamily family, Metric metric);
+
+    /**
+     * Called for a series that was found by the previous scrape but not by this one. Removed series are reported
+     * after all the other changes.
+     *
+     * @param familyName the name of the metric family of the series
+     * @param labels the labels of the series
+     */
+    void seriesRemoved(String familyName, Labels labels);
+
+    /**
+     * Called after everything else has been reported for a scrape.
+     *
+     * @param added the number of series added
+     * @param changed the number of series that changed, including those that were reset
+     * @param removed the number of series removed
+     * @param unchanged the number of series that did not change
+     */
+    void deltaFinish(int added, int changed, int removed, int unchanged);
+}
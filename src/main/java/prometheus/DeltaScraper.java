@@ -0,0 +1,191 @@
+package prometheus;
+
+import java.io.IOException;
+
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.types.Summary;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * Scrapes an endpoint over and over again, reporting only how each scrape differs from the one before it: which
+ * series were added, changed, reset or removed. Series that did not change are not reported at all, so consumers
+ * that only need changed values have much less to process.
+ *
+ * The delta scraper remembers the series found by the previous scrape, identified by their metric family name and
+ * labels. Only a value and a 64 bit fingerprint of the rest of the values are kept for each series, in flat
+ * arrays, so the memory used is small compared to keeping the previous scrape's metric families around.
+ * Fingerprints can collide - in the very unlikely case that a summary's or histogram's sum, quantiles or buckets
+ * change to values with the same fingerprint while the count stays the same, the change is not reported.
+ *
+ * Give the delta scraper its own {@link PrometheusScraper} - it relies on the scraper's
+ * {@link PrometheusScraper#getLastScrapeStats() stats} being those of its own scrapes.
+ */
+public class DeltaScraper {
+
+    // the values kept for each series
+    private static final int VALUE = 0; // the value of a counter or gauge, or the count of a summary or histogram
+    private static final int FINGERPRINT = 1; // everything else
+    private static final int VALUES_PER_SERIES = 2;
+
+    private final PrometheusScraper scraper;
+    private final SeriesTable series = new SeriesTable(VALUES_PER_SERIES);
+
+    /**
+     * @param scraper scrapes the endpoint whose changes are reported
+     */
+    public DeltaScraper(PrometheusScraper scraper) {
+        if (scraper == null) {
+            throw new IllegalArgumentException("Scraper must not be null");
+        }
+        this.scraper = scraper;
+    }
+
+    /**
+     * @return the scraper that scrapes the endpoint
+     */
+    public PrometheusScraper getScraper() {
+        return scraper;
+    }
+
+    /**
+     * Scrapes the endpoint and tells the listener how the series found differ from those found by the previous
+     * scrape.
+     *
+     * If the scrape fails, or the data could not be read to the end, the series that were not found are not
+     * reported as removed - they are compared with what the next scrape finds instead.
+     *
+     * @param listener told about the series that changed
+     * @throws IOException if the scrape failed
+     */
+    public synchronized void scrape(final DeltaListener listener) throws IOException {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+
+        DeltaWalker walker = new DeltaWalker(listener);
+        series.nextGeneration();
+        listener.deltaStart();
+        scraper.scrape(walker);
+
+        int removed = 0;
+        ScrapeStats stats = scraper.getLastScrapeStats();
+        if (stats == null || stats.getParseErrors().getCount(ParseErrors.Reason.UNREADABLE_DATA) == 0) {
+            removed = series.sweep(0, new SeriesTable.RemovalListener() {
+                @Override
+                public void removed(int slot) {
+                    listener.seriesRemoved(series.getFamily(slot), series.getLabels(slot));
+                }
+            });
+        }
+        listener.deltaFinish(walker.added, walker.changed, removed, walker.unchanged);
+    }
+
+    /**
+     * @return the number of series found by the previous scrape
+     */
+    public synchronized int getSeriesCount() {
+        return series.size();
+    }
+
+    /**
+     * Forgets the series found by the previous scrape, so that every series found by the next scrape is reported
+     * as added.
+     */
+    public synchronized void reset() {
+        series.clear();
+    }
+
+    /**
+     * Compares each metric the scrape finds with what the previous scrape found.
+     */
+    private class DeltaWalker implements PrometheusMetricsWalker {
+        private final DeltaListener listener;
+        private int added;
+        private int changed;
+        private int unchanged;
+
+        DeltaWalker(DeltaListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void walkStart() {
+        }
+
+        @Override
+        public void walkFinish(int familiesProcessed, int metricsProcessed) {
+        }
+
+        @Override
+        public void walkMetricFamily(MetricFamily family, int index) {
+        }
+
+        @Override
+        public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
+            compare(family, metric, metric.getValue(), mix(1L, 0L), true);
+        }
+
+        @Override
+        public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
+            compare(family, metric, metric.getValue(), mix(2L, 0L), false);
+        }
+
+        @Override
+        public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
+            long fingerprint = mix(3L, Double.doubleToLongBits(metric.getSampleSum()));
+            for (int i = 0; i < metric.getQuantileCount(); i++) {
+                fingerprint = mix(fingerprint, Double.doubleToLongBits(metric.getQuantile(i)));
+                fingerprint = mix(fingerprint, Double.doubleToLongBits(metric.getQuantileValue(i)));
+            }
+            compare(family, metric, metric.getSampleCount(), fingerprint, true);
+        }
+
+        @Override
+        public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
+            long fingerprint = mix(4L, Double.doubleToLongBits(metric.getSampleSum()));
+            for (int i = 0; i < metric.getBucketCount(); i++) {
+                fingerprint = mix(fingerprint, Double.doubleToLongBits(metric.getUpperBound(i)));
+                fingerprint = mix(fingerprint, metric.getCumulativeCount(i));
+            }
+            compare(family, metric, metric.getSampleCount(), fingerprint, true);
+        }
+
+        private void compare(MetricFamily family, Metric metric, double value, long fingerprint,
+                boolean cumulative) {
+            int slot = series.put(family.getName(), metric.getLabelSet());
+            if (slot < 0) {
+                slot = -(slot + 1);
+                series.setDouble(slot, VALUE, value);
+                series.setLong(slot, FINGERPRINT, fingerprint);
+                added++;
+                listener.seriesAdded(family, metric);
+                return;
+            }
+
+            double previousValue = series.getDouble(slot, VALUE);
+            if (Double.doubleToLongBits(previousValue) == Double.doubleToLongBits(value)
+                    && series.getLong(slot, FINGERPRINT) == fingerprint) {
+                unchanged++;
+                return;
+            }
+            series.setDouble(slot, VALUE, value);
+            series.setLong(slot, FINGERPRINT, fingerprint);
+            changed++;
+            if (cumulative && value < previousValue) {
+                listener.counterReset(family, metric);
+            } else {
+                listener.seriesChanged(family, metric);
+            }
+        }
+    }
+
+    // folds the bits into the fingerprint
+    private static long mix(long fingerprint, long bits) {
+        long h = (fingerprint ^ bits) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,276 @@
+package prometheus;
+
+import java.math.BigInteger;
+
+/**
+ * Writes doubles as the shortest decimal number that converts back to exactly the same double.
+ *
+ * The digits are found with Raffaello Giulietti's Schubfach algorithm ("The Schubfach way to render doubles",
+ * the algorithm behind Double.toString since Java 19), which needs nothing but a few 64-bit multiplications
+ * and a table of 128-bit approximations of powers of ten.
+ *
+ * The digits are laid out like JavaScript does it: plain decimal notation for numbers from 1e-6 up to (but
+ * not including) 1e21 - so integral values have no fraction at all, "162030" rather than "162030.0" - and
+ * scientific notation ("1.5e-10", "2e+21") otherwise. NaN and the infinities are written the way Prometheus
+ * writes them: "NaN", "+Inf" and "-Inf".
+ */
+final class DoubleFormatter {
+    /**
+     * No double is written with more than this many characters.
+     */
+    static final int MAX_LENGTH = 26;
+
+    private static final int P = 53; // precision of a double, in bits
+    private static final int Q_MIN = -1074; // exponent of the smallest subnormal
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = 0x7FF;
+    private static final long T_MASK = (1L << (P - 1)) - 1;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = (1L << 63) - 1;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    // the 126-bit approximations g of 10^-k for K_MIN <= k <= K_MAX, split into the upper and lower 63 bits
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        long power = 1;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+
+        // 10^-k = beta 2^r where 2^125 <= beta < 2^126, and g = floor(beta) + 1
+        BigInteger ten = BigInteger.TEN;
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            BigInteger beta;
+            if (k <= 0) {
+                BigInteger n = ten.pow(-k);
+                int r = n.bitLength() - 126;
+                beta = (r >= 0) ? n.shiftRight(r) : n.shiftLeft(-r);
+            } else {
+                BigInteger d = ten.pow(k);
+                beta = BigInteger.ONE.shiftLeft(125 + d.bitLength()).divide(d);
+            }
+            BigInteger g = beta.add(BigInteger.ONE);
+            int index = 2 * (k - K_MIN);
+            G[index] = g.shiftRight(63).longValue();
+            G[index + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    private DoubleFormatter() {
+    }
+
+    /**
+     * @param value the value to format
+     * @param buffer where the ASCII characters are written to - at least {@link #MAX_LENGTH} bytes must be free
+     * @param offset where in the buffer the first character is written
+     * @return the offset just past the last character written
+     */
+    static int format(double value, byte[] buffer, int offset) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                return ascii("NaN", buffer, offset);
+            }
+            return ascii((bits < 0) ? "-Inf" : "+Inf", buffer, offset);
+        }
+
+        if (bits < 0) {
+            buffer[offset++] = '-';
+        }
+
+        if (bq != 0) {
+            // normal value; its exact value is c 2^q
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                // an integer needs no rounding at all
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return layout(f, 0, buffer, offset);
+                }
+            }
+            return toDecimal(-mq, c, buffer, offset);
+        }
+        if (t != 0) {
+            // subnormal value
+            return toDecimal(Q_MIN, t, buffer, offset);
+        }
+        buffer[offset++] = '0';
+        return offset;
+    }
+
+    /**
+     * @param value the value to format
+     * @param str where the characters are appended to
+     * @return the given string builder
+     */
+    static StringBuilder format(double value, StringBuilder str) {
+        byte[] buffer = new byte[MAX_LENGTH];
+        int length = format(value, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            str.append((char) buffer[i]);
+        }
+        return str;
+    }
+
+    // finds the shortest decimal in the rounding interval of c 2^q; see section 9 of the Schubfach paper
+    private static int toDecimal(int q, long c, byte[] buffer, int offset) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // the interval is not symmetric when c is a power of two
+            cbl = cb - 1;
+            k = flog10ThreeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        int index = 2 * (k - K_MIN);
+        long g1 = G[index];
+        long g0 = G[index + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+
+        // try one digit less first: sp10 = 10 floor(s / 10). Double.toString only does this for s >= 100 since
+        // it always wants two digits, which would make the tiniest subnormals come out longer than needed.
+        long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+        long tp10 = sp10 + 10;
+        boolean upin = vbl + out <= sp10 << 2;
+        boolean wpin = (tp10 << 2) + out <= vbr;
+        if (upin != wpin) {
+            return layout(upin ? sp10 : tp10, k, buffer, offset);
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return layout(uin ? s : t, k, buffer, offset);
+        }
+
+        // both are in the interval - pick the closest, and the even one if they are equally close
+        long cmp = vb - (s + t << 1);
+        return layout((cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : t, k, buffer, offset);
+    }
+
+    // writes the decimal f 10^e
+    private static int layout(long f, int e, byte[] buffer, int offset) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        int length = 1;
+        while (length < POWERS_OF_TEN.length && f >= POWERS_OF_TEN[length]) {
+            length++;
+        }
+        int point = length + e; // where the decimal point goes, relative to the first digit
+
+        if (length <= point && point <= 21) {
+            // an integer: digits followed by zeros
+            offset = digits(f, length, buffer, offset);
+            for (int i = length; i < point; i++) {
+                buffer[offset++] = '0';
+            }
+        } else if (0 < point && point <= 21) {
+            // digits on both sides of the decimal point
+            offset = digits(f / POWERS_OF_TEN[length - point], point, buffer, offset);
+            buffer[offset++] = '.';
+            offset = digits(f % POWERS_OF_TEN[length - point], length - point, buffer, offset);
+        } else if (-6 < point && point <= 0) {
+            // a small number: "0." and zeros followed by the digits
+            buffer[offset++] = '0';
+            buffer[offset++] = '.';
+            for (int i = point; i < 0; i++) {
+                buffer[offset++] = '0';
+            }
+            offset = digits(f, length, buffer, offset);
+        } else {
+            // scientific notation
+            offset = digits(f / POWERS_OF_TEN[length - 1], 1, buffer, offset);
+            if (length > 1) {
+                buffer[offset++] = '.';
+                offset = digits(f % POWERS_OF_TEN[length - 1], length - 1, buffer, offset);
+            }
+            buffer[offset++] = 'e';
+            int exponent = point - 1;
+            if (exponent < 0) {
+                buffer[offset++] = '-';
+                exponent = -exponent;
+            } else {
+                buffer[offset++] = '+';
+            }
+            offset = digits(exponent, (exponent >= 100) ? 3 : (exponent >= 10) ? 2 : 1, buffer, offset);
+        }
+        return offset;
+    }
+
+    // writes exactly count digits of the value, with leading zeros if needed
+    private static int digits(long value, int count, byte[] buffer, int offset) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + count;
+    }
+
+    private static int ascii(String str, byte[] buffer, int offset) {
+        for (int i = 0; i < str.length(); i++) {
+            buffer[offset++] = (byte) str.charAt(i);
+        }
+        return offset;
+    }
+
+    // the upper bits of g cp, rounded to odd
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    // floor(log10(2^q))
+    private static int flog10pow2(int q) {
+        return (int) (q * 661_971_961_083L >> 41);
+    }
+
+    // floor(log10(3/4 2^q))
+    private static int flog10ThreeQuartersPow2(int q) {
+        return (int) (q * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    // floor(log2(10^e))
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    // the high 64 bits of the 128-bit product of two non-negative longs (Math.multiplyHigh needs Java 9)
+    private static long multiplyHigh(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL;
+        long bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long lowHigh = aLow * bHigh;
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+        return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+    }
+}
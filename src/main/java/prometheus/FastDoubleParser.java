@@ -0,0 +1,542 @@
+package prometheus;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts decimal numbers to doubles straight from the characters (or UTF-8 bytes) they are written in,
+ * without creating any objects.
+ *
+ * The number is first split into a decimal significand of up to 19 digits and a power of ten. Most values
+ * (small significands with small exponents) are then converted exactly with a single floating point
+ * multiplication or division (Clinger's fast path); all other values are converted with the Eisel-Lemire
+ * algorithm as implemented in the fast_float library (https://github.com/fastfloat/fast_float), which
+ * multiplies the significand by a 128-bit approximation of the power of ten. Both give exactly the same double
+ * as {@link Double#parseDouble(String)}.
+ *
+ * Anything that is not a plain decimal number - hexadecimal numbers, "Infinity", type suffixes, surrounding
+ * whitespace - as well as the rare numbers with more than 19 significant digits whose conversion cannot be
+ * decided from the first 19 digits, are handed to {@link Double#parseDouble(String)}.
+ */
+final class FastDoubleParser {
+    private static final int MAX_SIGNIFICAND_DIGITS = 19;
+    private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+    private static final int MAX_EXACT_POWER_OF_TEN = 22;
+    private static final int SMALLEST_POWER_OF_FIVE = -342;
+    private static final int LARGEST_POWER_OF_FIVE = 308;
+    private static final int MANTISSA_EXPLICIT_BITS = 52;
+    private static final int INFINITE_POWER = 0x7FF;
+    private static final long POSITIVE_INFINITY_BITS = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+    private static final String INFINITY = "Infinity"; // as Double.parseDouble spells it
+    private static final long NOT_DECIDED = -1L; // never a valid result - the sign bit is applied separately
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER_OF_TEN + 1];
+
+    // the 128-bit approximations of 5^q, high then low 64 bits, for SMALLEST_POWER_OF_FIVE <= q <= LARGEST
+    private static final long[] POWERS_OF_FIVE = new long[2 * (LARGEST_POWER_OF_FIVE - SMALLEST_POWER_OF_FIVE + 1)];
+
+    static {
+        double power = 1.0;
+        for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10.0;
+        }
+
+        // the same table fast_float generates - truncated for positive powers, rounded up reciprocals otherwise
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger five = BigInteger.valueOf(5);
+        for (int q = SMALLEST_POWER_OF_FIVE; q <= LARGEST_POWER_OF_FIVE; q++) {
+            BigInteger c;
+            if (q >= 0) {
+                c = five.pow(q);
+                if (c.compareTo(two127) < 0) {
+                    c = c.shiftLeft(127 - c.bitLength() + 1);
+                } else {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            } else {
+                BigInteger power5 = five.pow(-q);
+                int z = power5.subtract(BigInteger.ONE).bitLength(); // smallest z where 2^z >= 5^-q
+                int b = (q >= -27) ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                if (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            }
+            int index = 2 * (q - SMALLEST_POWER_OF_FIVE);
+            POWERS_OF_FIVE[index] = c.shiftRight(64).longValue();
+            POWERS_OF_FIVE[index + 1] = c.longValue();
+        }
+    }
+
+    private FastDoubleParser() {
+    }
+
+    /**
+     * @param chars the characters of the number
+     * @param start index of the first character of the number
+     * @param end index just past the last character of the number
+     * @return the double value of the number
+     * @throws NumberFormatException if the characters are not a number
+     */
+    static double parseDouble(CharSequence chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            negative = chars.charAt(i) == '-';
+            i++;
+        }
+
+        long significand = 0;
+        int digits = 0; // significant digits in the significand - leading zeros do not count
+        int exponent = 0;
+        boolean truncated = false;
+        boolean anyDigits = false;
+
+        for (; i < end; i++) {
+            int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            anyDigits = true;
+            if (digits < MAX_SIGNIFICAND_DIGITS) {
+                significand = significand * 10 + digit;
+                if (significand != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+        if (i < end && chars.charAt(i) == '.') {
+            i++;
+            for (; i < end; i++) {
+                int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                anyDigits = true;
+                if (digits < MAX_SIGNIFICAND_DIGITS) {
+                    significand = significand * 10 + digit;
+                    exponent--;
+                    if (significand != 0) {
+                        digits++;
+                    }
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+
+        if (anyDigits && i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                negativeExponent = chars.charAt(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (explicitExponent < 100000) { // anything larger overflows or underflows anyway
+                    explicitExponent = explicitExponent * 10 + digit;
+                }
+            }
+            if (i == exponentStart) {
+                return fallback(chars, start, end);
+            }
+            exponent += (negativeExponent) ? -explicitExponent : explicitExponent;
+        }
+
+        if (!anyDigits || i != end) {
+            return parseSpecial(chars, start, end);
+        }
+
+        return toDouble(negative, significand, exponent, truncated, chars, start, end);
+    }
+
+    /**
+     * @param bytes the UTF-8 encoded characters of the number
+     * @param start index of the first byte of the number
+     * @param end index just past the last byte of the number
+     * @return the double value of the number
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    static double parseDouble(byte[] bytes, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long significand = 0;
+        int digits = 0; // significant digits in the significand - leading zeros do not count
+        int exponent = 0;
+        boolean truncated = false;
+        boolean anyDigits = false;
+
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            anyDigits = true;
+            if (digits < MAX_SIGNIFICAND_DIGITS) {
+                significand = significand * 10 + digit;
+                if (significand != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+        if (i < end && bytes[i] == '.') {
+            i++;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                anyDigits = true;
+                if (digits < MAX_SIGNIFICAND_DIGITS) {
+                    significand = significand * 10 + digit;
+                    exponent--;
+                    if (significand != 0) {
+                        digits++;
+                    }
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+
+        if (anyDigits && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (explicitExponent < 100000) { // anything larger overflows or underflows anyway
+                    explicitExponent = explicitExponent * 10 + digit;
+                }
+            }
+            if (i == exponentStart) {
+                return fallback(bytes, start, end);
+            }
+            exponent += (negativeExponent) ? -explicitExponent : explicitExponent;
+        }
+
+        if (!anyDigits || i != end) {
+            return parseSpecial(bytes, start, end);
+        }
+
+        return toDouble(negative, significand, exponent, truncated, bytes, start, end);
+    }
+
+    private static double toDouble(boolean negative, long significand, int exponent, boolean truncated,
+            Object source, int start, int end) {
+        double value;
+        if (!truncated && exponent >= -MAX_EXACT_POWER_OF_TEN && exponent <= MAX_EXACT_POWER_OF_TEN
+                && Long.compareUnsigned(significand, MAX_EXACT_SIGNIFICAND) <= 0) {
+            // both the significand and the power of ten are exact doubles, so IEEE rounding does the rest
+            value = (exponent < 0) ? significand / POWERS_OF_TEN[-exponent]
+                    : significand * POWERS_OF_TEN[exponent];
+        } else {
+            long bits = eiselLemire(exponent, significand);
+            if (truncated && bits != eiselLemire(exponent, significand + 1)) {
+                // the digits we dropped decide which way to round
+                bits = NOT_DECIDED;
+            }
+            if (bits == NOT_DECIDED) {
+                return (source instanceof byte[]) ? fallback((byte[]) source, start, end)
+                        : fallback((CharSequence) source, start, end);
+            }
+            value = Double.longBitsToDouble(bits);
+        }
+        return (negative) ? -value : value;
+    }
+
+    /**
+     * Computes the double closest to w * 10^q.
+     *
+     * @param q the power of ten
+     * @param w the unsigned significand
+     * @return the bits of the (positive) double
+     */
+    private static long eiselLemire(int q, long w) {
+        if (w == 0 || q < SMALLEST_POWER_OF_FIVE) {
+            return 0L;
+        }
+        if (q > LARGEST_POWER_OF_FIVE) {
+            return POSITIVE_INFINITY_BITS;
+        }
+
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        // the product of the significand and the power of five, with enough precision for the 55 bits we need
+        int index = 2 * (q - SMALLEST_POWER_OF_FIVE);
+        long productHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index]);
+        long productLow = w * POWERS_OF_FIVE[index];
+        long precisionMask = 0xFFFFFFFFFFFFFFFFL >>> (MANTISSA_EXPLICIT_BITS + 3);
+        if ((productHigh & precisionMask) == precisionMask) {
+            long secondHigh = unsignedMultiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            productLow += secondHigh;
+            if (Long.compareUnsigned(secondHigh, productLow) > 0) {
+                productHigh++;
+            }
+        }
+
+        int upperBit = (int) (productHigh >>> 63);
+        int shift = upperBit + 64 - MANTISSA_EXPLICIT_BITS - 3;
+        long mantissa = productHigh >>> shift;
+        // floor(log2(10^q)) is ((217706 * q) >> 16)
+        int power2 = (((152170 + 65536) * q) >> 16) + 63 + upperBit - lz + 1023;
+
+        if (power2 <= 0) {
+            // subnormal
+            if (-power2 + 1 >= 64) {
+                return 0L;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += (mantissa & 1);
+            mantissa >>>= 1;
+            power2 = (mantissa < (1L << MANTISSA_EXPLICIT_BITS)) ? 0 : 1;
+            return mantissa | ((long) power2 << MANTISSA_EXPLICIT_BITS);
+        }
+
+        // when exactly halfway between two doubles, round to even
+        if (Long.compareUnsigned(productLow, 1) <= 0 && q >= -4 && q <= 23 && (mantissa & 3) == 1) {
+            if ((mantissa << shift) == productHigh) {
+                mantissa &= ~1L;
+            }
+        }
+
+        mantissa += (mantissa & 1);
+        mantissa >>>= 1;
+        if (mantissa >= (2L << MANTISSA_EXPLICIT_BITS)) {
+            mantissa = 1L << MANTISSA_EXPLICIT_BITS;
+            power2++;
+        }
+        mantissa &= ~(1L << MANTISSA_EXPLICIT_BITS);
+        if (power2 >= INFINITE_POWER) {
+            return POSITIVE_INFINITY_BITS;
+        }
+        return mantissa | ((long) power2 << MANTISSA_EXPLICIT_BITS);
+    }
+
+    // the high 64 bits of the unsigned 128-bit product (Math.multiplyHigh is not available in Java 8)
+    private static long unsignedMultiplyHigh(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL;
+        long bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long lowHigh = aLow * bHigh;
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+        return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+    }
+
+    /**
+     * Checks the characters can be converted without an exception: a decimal number with an optional sign,
+     * fraction and exponent, "NaN", "+Inf" or "-Inf" (in any case), or "Infinity" with an optional sign.
+     *
+     * @param chars the characters of the number
+     * @param start index of the first character of the number
+     * @param end index just past the last character of the number
+     * @return true if the characters are a number
+     */
+    static boolean isNumber(CharSequence chars, int start, int end) {
+        int i = start;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            i++;
+        }
+        boolean anyDigits = false;
+        while (i < end && isDigit(chars.charAt(i))) {
+            i++;
+            anyDigits = true;
+        }
+        if (i < end && chars.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(chars.charAt(i))) {
+                i++;
+                anyDigits = true;
+            }
+        }
+        if (!anyDigits) {
+            return isSpecial(chars, start, end);
+        }
+        if (i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                i++;
+            }
+            if (i == end) {
+                return false;
+            }
+            while (i < end && isDigit(chars.charAt(i))) {
+                i++;
+            }
+        }
+        return i == end;
+    }
+
+    /**
+     * Like {@link #isNumber(CharSequence, int, int)} but checks UTF-8 bytes.
+     *
+     * @param bytes the UTF-8 encoded characters of the number
+     * @param start index of the first byte of the number
+     * @param end index just past the last byte of the number
+     * @return true if the bytes are a number
+     */
+    static boolean isNumber(byte[] bytes, int start, int end) {
+        int i = start;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            i++;
+        }
+        boolean anyDigits = false;
+        while (i < end && isDigit(bytes[i])) {
+            i++;
+            anyDigits = true;
+        }
+        if (i < end && bytes[i] == '.') {
+            i++;
+            while (i < end && isDigit(bytes[i])) {
+                i++;
+                anyDigits = true;
+            }
+        }
+        if (!anyDigits) {
+            return isSpecial(bytes, start, end);
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                i++;
+            }
+            if (i == end) {
+                return false;
+            }
+            while (i < end && isDigit(bytes[i])) {
+                i++;
+            }
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // the values that are not decimal numbers and that parseSpecial (or its fallback) converts
+    private static boolean isSpecial(CharSequence chars, int start, int end) {
+        int length = end - start;
+        if (length == 3) {
+            return matches(chars, start, "nan");
+        } else if (length == 4) {
+            return (chars.charAt(start) == '+' || chars.charAt(start) == '-') && matches(chars, start + 1, "inf");
+        }
+        int nameStart = (length == 9 && (chars.charAt(start) == '+' || chars.charAt(start) == '-'))
+                ? start + 1 : start;
+        if (end - nameStart != INFINITY.length()) {
+            return false;
+        }
+        for (int i = 0; i < INFINITY.length(); i++) {
+            if (chars.charAt(nameStart + i) != INFINITY.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpecial(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (length == 3) {
+            return matches(bytes, start, "nan");
+        } else if (length == 4) {
+            return (bytes[start] == '+' || bytes[start] == '-') && matches(bytes, start + 1, "inf");
+        }
+        int nameStart = (length == 9 && (bytes[start] == '+' || bytes[start] == '-')) ? start + 1 : start;
+        if (end - nameStart != INFINITY.length()) {
+            return false;
+        }
+        for (int i = 0; i < INFINITY.length(); i++) {
+            if (bytes[nameStart + i] != INFINITY.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Prometheus spells out NaN and the infinities as "NaN", "+Inf" and "-Inf" (in any case)
+    private static double parseSpecial(CharSequence chars, int start, int end) {
+        int length = end - start;
+        if (length == 3 && matches(chars, start, "nan")) {
+            return Double.NaN;
+        } else if (length == 4 && matches(chars, start + 1, "inf")) {
+            if (chars.charAt(start) == '+') {
+                return Double.POSITIVE_INFINITY;
+            } else if (chars.charAt(start) == '-') {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        return fallback(chars, start, end);
+    }
+
+    private static double parseSpecial(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (length == 3 && matches(bytes, start, "nan")) {
+            return Double.NaN;
+        } else if (length == 4 && matches(bytes, start + 1, "inf")) {
+            if (bytes[start] == '+') {
+                return Double.POSITIVE_INFINITY;
+            } else if (bytes[start] == '-') {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        return fallback(bytes, start, end);
+    }
+
+    private static boolean matches(CharSequence chars, int start, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if ((chars.charAt(start + i) | 0x20) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] bytes, int start, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if ((bytes[start + i] | 0x20) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double fallback(CharSequence chars, int start, int end) {
+        return Double.parseDouble(chars.subSequence(start, end).toString());
+    }
+
+    private static double fallback(byte[] bytes, int start, int end) {
+        return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+    }
+}
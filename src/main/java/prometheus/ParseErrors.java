@@ -0,0 +1,133 @@
+package prometheus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the parts of the metric data a parser had to skip: the lines it rejected and the metric families it
+ * dropped, and why. Errors are counted without creating any exceptions, so a lenient parse of bad data costs
+ * about as much as a parse of good data.
+ *
+ * The counters can be updated by several threads at the same time (as segments of the data are parsed in
+ * parallel, for example).
+ *
+ * @see ParseMode
+ */
+public class ParseErrors {
+
+    /**
+     * Why a part of the metric data was skipped.
+     */
+    public enum Reason {
+        /**
+         * A line that is not a valid sample, HELP or TYPE line.
+         */
+        MALFORMED_LINE,
+
+        /**
+         * A sample whose value, or whose quantile or bucket label, is not a number.
+         */
+        INVALID_VALUE,
+
+        /**
+         * A summary quantile sample without a quantile label or a histogram bucket sample without an le label.
+         */
+        MISSING_LABEL,
+
+        /**
+         * A sample that does not belong to the metric family it was found in, or that comes before any HELP or
+         * TYPE line.
+         */
+        UNEXPECTED_SAMPLE,
+
+        /**
+         * A metric family whose TYPE is not a known metric type. The samples of the family are skipped.
+         */
+        UNKNOWN_TYPE,
+
+        /**
+         * The data could not be read any further, so the metric family being read and anything after it were
+         * dropped.
+         */
+        UNREADABLE_DATA
+    }
+
+    private final AtomicLong linesRejected = new AtomicLong();
+    private final AtomicLong familiesDropped = new AtomicLong();
+    private final AtomicLongArray reasons = new AtomicLongArray(Reason.values().length);
+
+    /**
+     * Counts a line that was skipped.
+     *
+     * @param reason why it was skipped
+     */
+    public void lineRejected(Reason reason) {
+        linesRejected.incrementAndGet();
+        reasons.incrementAndGet(reason.ordinal());
+    }
+
+    /**
+     * Counts a metric family that was skipped.
+     *
+     * @param reason why it was skipped
+     */
+    public void familyDropped(Reason reason) {
+        familiesDropped.incrementAndGet();
+        reasons.incrementAndGet(reason.ordinal());
+    }
+
+    /**
+     * Adds the counts of the given errors to these.
+     *
+     * @param other the errors to add
+     */
+    public void add(ParseErrors other) {
+        linesRejected.addAndGet(other.getLinesRejected());
+        familiesDropped.addAndGet(other.getFamiliesDropped());
+        for (Reason reason : Reason.values()) {
+            reasons.addAndGet(reason.ordinal(), other.getCount(reason));
+        }
+    }
+
+    /**
+     * @return the number of lines that were skipped
+     */
+    public long getLinesRejected() {
+        return linesRejected.get();
+    }
+
+    /**
+     * @return the number of metric families that were skipped
+     */
+    public long getFamiliesDropped() {
+        return familiesDropped.get();
+    }
+
+    /**
+     * @param reason the reason
+     * @return the number of lines and metric families that were skipped for the given reason
+     */
+    public long getCount(Reason reason) {
+        return reasons.get(reason.ordinal());
+    }
+
+    /**
+     * @return true if nothing had to be skipped
+     */
+    public boolean isEmpty() {
+        return getLinesRejected() == 0 && getFamiliesDropped() == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("ParseErrors[linesRejected=").append(getLinesRejected())
+                .append(", familiesDropped=").append(getFamiliesDropped());
+        for (Reason reason : Reason.values()) {
+            long count = getCount(reason);
+            if (count > 0) {
+                str.append(", ").append(reason).append('=').append(count);
+            }
+        }
+        return str.append(']').toString();
+    }
+}
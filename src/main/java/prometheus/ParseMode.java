@@ -0,0 +1,20 @@
+package prometheus;
+
+/**
+ * How a parser deals with metric data that is not valid.
+ *
+ * @see PrometheusMetricDataParser#setParseMode(ParseMode)
+ */
+public enum ParseMode {
+    /**
+     * The first error stops the parsing with a {@link PrometheusParseException}. Use this when any error means
+     * the data can't be trusted, or to find out what is wrong with an endpoint.
+     */
+    STRICT,
+
+    /**
+     * Lines that are not valid are skipped and metric families that can't be understood are dropped, and
+     * everything else is parsed as usual. Each error is counted in the {@link ParseErrors} of the parser.
+     */
+    LENIENT
+}
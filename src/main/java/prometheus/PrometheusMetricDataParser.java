@@ -2,6 +2,10 @@ package prometheus;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.jboss.logging.Logger;
+import prometheus.types.LabelInterner;
 
 /**
  * An object that can parse Prometheus found in a specific data format in an input stream.
@@ -12,7 +16,12 @@ import java.io.InputStream;
  * @param <T> the metric family object type that the parser produces
  */
 public abstract class PrometheusMetricDataParser<T> {
+    private static final Logger log = Logger.getLogger(PrometheusMetricDataParser.class);
+
     private InputStream inputStream;
+    private LabelInterner labelInterner;
+    private ParseMode parseMode = ParseMode.LENIENT;
+    private ParseErrors parseErrors = new ParseErrors();
 
     /**
      * Provides the input stream where the parser will look for metric data.
@@ -31,6 +40,109 @@ public abstract class PrometheusMetricDataParser<T> {
         return this.inputStream;
     }
 
+    /**
+     * @param labelInterner if not null, the labels of the parsed metrics are shared through this interner
+     */
+    public void setLabelInterner(LabelInterner labelInterner) {
+        this.labelInterner = labelInterner;
+    }
+
+    /**
+     * @return the interner the labels of the parsed metrics are shared through, or null if they are not shared
+     */
+    public LabelInterner getLabelInterner() {
+        return labelInterner;
+    }
+
+    /**
+     * @param parseMode what to do when the data is not valid - the default is {@link ParseMode#LENIENT}
+     */
+    public void setParseMode(ParseMode parseMode) {
+        if (parseMode == null) {
+            throw new IllegalArgumentException("Parse mode must not be null");
+        }
+        this.parseMode = parseMode;
+    }
+
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * @param parseErrors where the parser counts the parts of the data it skips, so several parsers can share
+     *                    the same counters
+     */
+    public void setParseErrors(ParseErrors parseErrors) {
+        if (parseErrors == null) {
+            throw new IllegalArgumentException("Parse errors must not be null");
+        }
+        this.parseErrors = parseErrors;
+    }
+
+    /**
+     * @return the counts of the parts of the data the parser has skipped so far
+     */
+    public ParseErrors getParseErrors() {
+        return parseErrors;
+    }
+
+    /**
+     * @return the number of lines of metric data read so far - parsers of data formats that are not line based
+     *         return 0
+     */
+    public long getLineCount() {
+        return 0L;
+    }
+
+    /**
+     * Parsers call this when they skip a line that is not valid.
+     *
+     * @param reason why the line is not valid
+     * @param line the line, or a description of it
+     * @throws PrometheusParseException in strict mode
+     */
+    protected void lineRejected(ParseErrors.Reason reason, String line) throws PrometheusParseException {
+        parseErrors.lineRejected(reason);
+        if (parseMode == ParseMode.STRICT) {
+            throw new PrometheusParseException(reason, line);
+        }
+        log.debugf("Rejected a line of the metric data (%s) - it will be ignored: %s", reason, line);
+    }
+
+    /**
+     * Like {@link #lineRejected(ParseErrors.Reason, String)}, but only decodes the UTF-8 line if it is needed - in
+     * strict mode or for the debug message - so skipping bad lines costs next to nothing.
+     *
+     * @param reason why the line is not valid
+     * @param buffer holds the line
+     * @param start index of the first byte of the line
+     * @param end index just past the last byte of the line
+     * @throws PrometheusParseException in strict mode
+     */
+    protected void lineRejected(ParseErrors.Reason reason, byte[] buffer, int start, int end)
+            throws PrometheusParseException {
+        if (parseMode == ParseMode.STRICT || log.isDebugEnabled()) {
+            lineRejected(reason, new String(buffer, start, end - start, StandardCharsets.UTF_8));
+        } else {
+            parseErrors.lineRejected(reason);
+        }
+    }
+
+    /**
+     * Parsers call this when they skip a metric family that is not valid.
+     *
+     * @param reason why the metric family is not valid
+     * @param familyName the name of the metric family
+     * @throws PrometheusParseException in strict mode
+     */
+    protected void familyDropped(ParseErrors.Reason reason, String familyName) throws PrometheusParseException {
+        parseErrors.familyDropped(reason);
+        if (parseMode == ParseMode.STRICT) {
+            throw new PrometheusParseException(reason, familyName);
+        }
+        log.debugf("Dropped metric family [%s] (%s)", familyName, reason);
+    }
+
     /**
      * Reads a single metric family from the Prometheus metric data stream and returns it.
      * Returns null when no more data is in the stream.
@@ -1,10 +1,13 @@
 package prometheus;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 
 import org.jboss.logging.Logger;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
+import prometheus.types.LabelInterner;
 import prometheus.types.MetricFamily;
 import prometheus.walkers.PrometheusMetricsWalker;
 
@@ -17,6 +20,18 @@ public abstract class PrometheusMetricsProcessor<T> {
 
     private final InputStream inputStream;
     private final PrometheusMetricsWalker walker;
+    private LabelInterner labelInterner;
+    private ParseMode parseMode = ParseMode.LENIENT;
+    private final ParseErrors parseErrors = new ParseErrors();
+
+    // measured by walk()
+    private long parseNanos;
+    private long convertNanos;
+    private long walkerNanos;
+    private long lineCount;
+    private int familyCount;
+    private int metricCount;
+    private long sampleCount;
 
     /**
      * @param inputStream where the Prometheus metrics are that the walker will traverse.
@@ -38,20 +53,59 @@ public abstract class PrometheusMetricsProcessor<T> {
      * This will iterate over a set of metrics that are produced by the
      * {@link #createPrometheusMetricDataParser() parser} and will notify the {@link #getWalker() walker}
      * of each metric found.
+     *
+     * In {@link ParseMode#LENIENT lenient} mode (the default), data that can't be parsed ends the walk early
+     * and what was skipped is counted in the {@link #getParseErrors() parse errors}. In
+     * {@link ParseMode#STRICT strict} mode, the first error ends the walk with an exception instead, and the
+     * walker is not told the walk has finished. Exceptions thrown by the walker are not errors in the data - they
+     * end the walk in either mode and are passed on to the caller.
+     *
+     * While walking, this measures how long was spent parsing, converting and in the walker, and counts what
+     * was found - see {@link #getParseNanos()} and the methods that follow it.
+     *
+     * @throws UncheckedIOException in strict mode, if the data could not be read or is not valid - the cause
+     *         is a {@link PrometheusParseException} if the data is not valid
      */
     public void walk() {
         // tell the walker we are starting
+        long start = System.nanoTime();
         walker.walkStart();
+        long now = System.nanoTime();
+        walkerNanos += now - start;
 
         int totalMetrics = 0;
         int familyIndex = 0;
+        PrometheusMetricDataParser<T> parser = null;
 
         try {
-            PrometheusMetricDataParser<T> parser = createPrometheusMetricDataParser();
-            T metricFamily = parser.parse(); // prime the pump
+            // only the parser and the conversion are guarded - exceptions thrown by the walker are its own
+            // and are passed on as they are
+            start = now;
+            T metricFamily = null;
+            try {
+                parser = createPrometheusMetricDataParser();
+                parser.setLabelInterner(labelInterner);
+                parser.setParseMode(parseMode);
+                parser.setParseErrors(parseErrors);
+                metricFamily = parser.parse(); // prime the pump
+            } catch (IOException | RuntimeException e) {
+                dataUnreadable(e);
+            }
+            now = System.nanoTime();
+            parseNanos += now - start;
 
             while (metricFamily != null) {
-                prometheus.types.MetricFamily convertedMetricFamily = convert(metricFamily);
+                start = now;
+                prometheus.types.MetricFamily convertedMetricFamily;
+                try {
+                    convertedMetricFamily = convert(metricFamily);
+                } catch (RuntimeException e) {
+                    dataUnreadable(e);
+                    break;
+                }
+                now = System.nanoTime();
+                convertNanos += now - start;
+                start = now;
 
                 // let the walker know we are traversing a new family of metrics
                 walker.walkMetricFamily(convertedMetricFamily, familyIndex++);
@@ -63,20 +117,24 @@ public abstract class PrometheusMetricsProcessor<T> {
                     switch (convertedMetricFamily.getType()) {
                         case COUNTER:
                             walker.walkCounterMetric(convertedMetricFamily, (Counter) metric, metricIndex);
+                            sampleCount++;
                             break;
 
                         case GAUGE:
                             walker.walkGaugeMetric(convertedMetricFamily, (Gauge) metric, metricIndex);
+                            sampleCount++;
                             break;
 
                         case SUMMARY:
-                            walker.walkSummaryMetric(convertedMetricFamily,
-                                    ((prometheus.types.Summary) metric), metricIndex);
+                            prometheus.types.Summary summary = (prometheus.types.Summary) metric;
+                            walker.walkSummaryMetric(convertedMetricFamily, summary, metricIndex);
+                            sampleCount += summary.getQuantileCount() + 2; // plus the sum and count
                             break;
 
                         case HISTOGRAM:
-                            walker.walkHistogramMetric(convertedMetricFamily,
-                                    ((prometheus.types.Histogram) metric), metricIndex);
+                            prometheus.types.Histogram histogram = (prometheus.types.Histogram) metric;
+                            walker.walkHistogramMetric(convertedMetricFamily, histogram, metricIndex);
+                            sampleCount += histogram.getBucketCount() + 2; // plus the sum and count
                             break;
                     }
 
@@ -85,16 +143,45 @@ public abstract class PrometheusMetricsProcessor<T> {
 
                 // finished processing the metrics for the current family
                 totalMetrics += convertedMetricFamily.getMetrics().size();
+                now = System.nanoTime();
+                walkerNanos += now - start;
+                start = now;
 
                 // go to the next metric family
-                metricFamily = parser.parse();
+                try {
+                    metricFamily = parser.parse();
+                } catch (IOException | RuntimeException e) {
+                    dataUnreadable(e);
+                    metricFamily = null;
+                }
+                now = System.nanoTime();
+                parseNanos += now - start;
+            }
+        } finally {
+            familyCount += familyIndex;
+            metricCount += totalMetrics;
+            if (parser != null) {
+                lineCount += parser.getLineCount();
             }
-        } catch (Exception e) {
-            log.debugf(e, "Error while processing binary data");
         }
 
         // tell the walker we have finished
+        start = System.nanoTime();
         walker.walkFinish(familyIndex, totalMetrics);
+        walkerNanos += System.nanoTime() - start;
+    }
+
+    // the data could not be parsed - in strict mode that ends the walk with an exception, in lenient mode it is
+    // counted and the walk ends early
+    private void dataUnreadable(Exception e) {
+        if (parseMode == ParseMode.STRICT) {
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+        parseErrors.familyDropped(ParseErrors.Reason.UNREADABLE_DATA);
+        log.debugf(e, "Error while processing the metric data");
     }
 
     /**
@@ -104,6 +191,95 @@ public abstract class PrometheusMetricsProcessor<T> {
         return inputStream;
     }
 
+    /**
+     * Metrics with the same labels will share a single label set from the given interner. Give the processors
+     * of repeated scrapes of the same endpoint the same interner so those scrapes share their label sets.
+     *
+     * @param labelInterner the interner the labels of the metrics are shared through, or null to not share them
+     */
+    public void setLabelInterner(LabelInterner labelInterner) {
+        this.labelInterner = labelInterner;
+    }
+
+    /**
+     * @return the interner the labels of the metrics are shared through, or null if they are not shared
+     */
+    public LabelInterner getLabelInterner() {
+        return labelInterner;
+    }
+
+    /**
+     * @param parseMode what to do when the data is not valid - the default is {@link ParseMode#LENIENT}
+     */
+    public void setParseMode(ParseMode parseMode) {
+        if (parseMode == null) {
+            throw new IllegalArgumentException("Parse mode must not be null");
+        }
+        this.parseMode = parseMode;
+    }
+
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    /**
+     * @return the counts of the lines and metric families that had to be skipped by {@link #walk()}
+     */
+    public ParseErrors getParseErrors() {
+        return parseErrors;
+    }
+
+    /**
+     * @return how long, in nanoseconds, {@link #walk()} spent waiting on the parser. Since the parser reads the
+     *         data as it parses it, this includes the time spent reading the data from the stream.
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return how long, in nanoseconds, {@link #walk()} spent converting the parsed metric families
+     */
+    public long getConvertNanos() {
+        return convertNanos;
+    }
+
+    /**
+     * @return how long, in nanoseconds, {@link #walk()} spent in the walker
+     */
+    public long getWalkerNanos() {
+        return walkerNanos;
+    }
+
+    /**
+     * @return the number of lines of metric data read by {@link #walk()}, or 0 if the data format is not line based
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the number of metric families {@link #walk()} passed to the walker
+     */
+    public int getFamilyCount() {
+        return familyCount;
+    }
+
+    /**
+     * @return the number of metrics {@link #walk()} passed to the walker
+     */
+    public int getMetricCount() {
+        return metricCount;
+    }
+
+    /**
+     * @return the number of samples in the metrics {@link #walk()} passed to the walker, counted the way the text
+     *         format lists them - a summary or histogram has a sample per quantile or bucket plus its sum and count
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
     /**
      * @return the object that will iterate over the found metric data
      */
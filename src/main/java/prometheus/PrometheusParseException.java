@@ -0,0 +1,28 @@
+package prometheus;
+
+import java.io.IOException;
+
+/**
+ * Thrown by parsers in {@link ParseMode#STRICT strict} mode when the metric data is not valid.
+ */
+public class PrometheusParseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final ParseErrors.Reason reason;
+
+    /**
+     * @param reason why the data is not valid
+     * @param detail the line or metric family that is not valid
+     */
+    public PrometheusParseException(ParseErrors.Reason reason, String detail) {
+        super(reason + ": " + detail);
+        this.reason = reason;
+    }
+
+    /**
+     * @return why the data is not valid
+     */
+    public ParseErrors.Reason getReason() {
+        return reason;
+    }
+}
@@ -3,14 +3,21 @@ package prometheus;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.jboss.logging.Logger;
-import prometheus.binary.BinaryPrometheusMetricsProcessor;
+import prometheus.binary.DirectBinaryPrometheusMetricsProcessor;
+import prometheus.text.ParallelTextPrometheusMetricsProcessor;
 import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.transport.MappedFileInputStream;
+import prometheus.transport.PrometheusTransport;
+import prometheus.transport.TransportResponse;
+import prometheus.transport.URLConnectionTransport;
+import prometheus.types.LabelInterner;
 import prometheus.types.MetricFamily;
 import prometheus.walkers.CollectorPrometheusMetricsWalker;
 import prometheus.walkers.PrometheusMetricsWalker;
@@ -24,16 +31,31 @@ public class PrometheusScraper {
     private static final Logger log = Logger.getLogger(PrometheusScraper.class);
 
     private final URL url;
+    private final File file; // null if not scraping a file
     private final PrometheusDataFormat knownDataFormat;
+    private boolean memoryMapFiles;
+    private ForkJoinPool textParserPool;
+    private PrometheusTransport transport = new URLConnectionTransport();
+    private LabelInterner labelInterner;
+    private ParseMode parseMode = ParseMode.LENIENT;
+    private volatile ScrapeStats lastScrapeStats;
 
     // see openConnection() for where this is used
     protected class OpenConnectionDetails {
         public final InputStream inputStream;
         public final String contentType;
+        public final TransportResponse response; // null if the stream did not come from a transport
 
         public OpenConnectionDetails(InputStream is, String contentType) {
             this.inputStream = is;
             this.contentType = contentType;
+            this.response = null;
+        }
+
+        public OpenConnectionDetails(TransportResponse response) {
+            this.inputStream = response.getInputStream();
+            this.contentType = response.getContentType();
+            this.response = response;
         }
     }
 
@@ -48,6 +70,7 @@ public class PrometheusScraper {
             context = "/metrics";
         }
         this.url = new URL("http", host, port, context);
+        this.file = null;
         this.knownDataFormat = null;
         log.debugf("Will scrape Permetheus data from URL [%s]", this.url);
     }
@@ -74,6 +97,7 @@ public class PrometheusScraper {
             throw new IllegalArgumentException("URL must not be null");
         }
         this.url = url;
+        this.file = null;
         this.knownDataFormat = dataFormat;
         log.debugf("Will scrape Permetheus data from URL [%s] with data format [%s]",
                 this.url, (this.knownDataFormat == null) ? "<TBD>" : this.knownDataFormat);
@@ -83,6 +107,8 @@ public class PrometheusScraper {
      * Scrape data from the given file. The data format will indicate if it
      * is binary protocol buffer data or text data ("text/plain").
      *
+     * The file can be read through memory mappings of it - see {@link #setMemoryMapFiles(boolean)}.
+     *
      * @param file the file to scrape
      * @param dataFormat the format of the metric data in the file.
      */
@@ -100,12 +126,101 @@ public class PrometheusScraper {
             throw new IllegalArgumentException("File does not have valid URL: " + file);
         }
 
+        this.file = file;
         this.knownDataFormat = dataFormat;
 
         log.debugf("Will scrape Permetheus data from file [%s] with data format [%s]", this.url,
                 this.knownDataFormat);
     }
 
+    /**
+     * Text data will be parsed in parallel on the given pool. The entire text data will be read into
+     * memory before it is parsed, so this is only worth it when scraping large amounts of text data.
+     * Walkers are still notified of the metric families in order.
+     *
+     * @param pool the pool where text data will be parsed, or null to parse text data serially (the default)
+     */
+    public void setTextParserPool(ForkJoinPool pool) {
+        this.textParserPool = pool;
+    }
+
+    /**
+     * Sets how the metric data is fetched from the endpoint. Share a single transport across scrapers
+     * (and across scrapes) so connections to the endpoints can be reused.
+     *
+     * @param transport the transport used by {@link #openConnection(URL)}; the default is a
+     *                  {@link URLConnectionTransport} with its default timeouts
+     */
+    public void setTransport(PrometheusTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("Transport must not be null");
+        }
+        this.transport = transport;
+    }
+
+    public PrometheusTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * When scraping a file, the file can be read through memory mappings of it, which saves a system call (and a
+     * copy) for every buffer full of data read. Files larger than 2GB are mapped a window at a time.
+     * This has no effect when scraping a URL.
+     *
+     * Mapping is off by default because of what it costs elsewhere. A mapping is only released once it is garbage
+     * collected, not when the scrape is done with it - and until then, on Windows, the file can't be deleted or
+     * replaced, not even by renaming a new file over it. And if the file is truncated while it is read, the JVM
+     * throws an InternalError rather than the scrape failing with an IOException.
+     * Only turn it on for files that are replaced by renaming new files over them, on platforms other than
+     * Windows.
+     *
+     * @param memoryMapFiles true to memory map files, false (the default) to read them through the
+     *                       {@link #setTransport(PrometheusTransport) transport} like any other URL
+     * @see MappedFileInputStream
+     */
+    public void setMemoryMapFiles(boolean memoryMapFiles) {
+        this.memoryMapFiles = memoryMapFiles;
+    }
+
+    public boolean isMemoryMapFiles() {
+        return memoryMapFiles;
+    }
+
+    /**
+     * Metrics with the same labels will share a single label set from the given interner, including metrics
+     * found by different scrapes. Since the same series are usually found scrape after scrape, this saves
+     * creating the same labels over and over again when the scraped metrics are kept around.
+     *
+     * @param labelInterner the interner the labels of scraped metrics are shared through, or null to not share
+     *                      them (the default)
+     */
+    public void setLabelInterner(LabelInterner labelInterner) {
+        this.labelInterner = labelInterner;
+    }
+
+    public LabelInterner getLabelInterner() {
+        return labelInterner;
+    }
+
+    /**
+     * In {@link ParseMode#STRICT strict} mode, scrapes fail with a {@link PrometheusParseException} as soon as
+     * anything in the metric data is not valid. In {@link ParseMode#LENIENT lenient} mode (the default), what is
+     * not valid is skipped, and what was skipped is counted in the {@link ScrapeStats#getParseErrors() parse errors}
+     * of the {@link #getLastScrapeStats() scrape stats}.
+     *
+     * @param parseMode what to do when the scraped data is not valid
+     */
+    public void setParseMode(ParseMode parseMode) {
+        if (parseMode == null) {
+            throw new IllegalArgumentException("Parse mode must not be null");
+        }
+        this.parseMode = parseMode;
+    }
+
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
     /**
      * This will collect all metric data from the endpoint and
      * return the entire list of all metric families found there.
@@ -118,13 +233,27 @@ public class PrometheusScraper {
         return collector.getAllMetricFamilies();
     }
 
+    /**
+     * Scrapes the endpoint, passing the metric data to the given walker.
+     *
+     * @param walker the object that is given the metric data
+     * @throws IOException if failed to scrape data, or if the data is not valid and the scraper is in
+     *                     {@link ParseMode#STRICT strict} mode
+     */
     public void scrape(PrometheusMetricsWalker walker) throws IOException {
+        long startNanos = System.nanoTime();
         OpenConnectionDetails connectionDetails = openConnection(this.url);
+        long connectNanos = System.nanoTime() - startNanos;
         if (connectionDetails == null || connectionDetails.inputStream == null) {
             throw new IOException("Failed to open the connection to the Prometheus endpoint");
         }
 
-        try (InputStream inputStream = connectionDetails.inputStream) {
+        TransportResponse response = (connectionDetails.response != null) ? connectionDetails.response
+                : new TransportResponse(connectionDetails.inputStream, connectionDetails.contentType);
+
+        PrometheusMetricsProcessor<?> processor;
+        try (TransportResponse r = response) {
+            InputStream inputStream = r.getInputStream();
             String contentType = connectionDetails.contentType;
 
             // if we were given a content type - we use it always. If we were not given a content type,
@@ -133,20 +262,66 @@ public class PrometheusScraper {
                 contentType = this.knownDataFormat.getContentType();
             }
 
-            PrometheusMetricsProcessor<?> processor;
-
             if (contentType.contains("application/vnd.google.protobuf")) {
-                processor = new BinaryPrometheusMetricsProcessor(inputStream, walker);
+                processor = new DirectBinaryPrometheusMetricsProcessor(inputStream, walker);
             } else if (contentType.contains("text/plain")) {
-                processor = new TextPrometheusMetricsProcessor(inputStream, walker);
+                processor = createTextProcessor(inputStream, walker);
             } else {
                 // unknown - since all Prometheus endpoints are required to support text, try it
                 log.debugf("Unknown content type for URL [%s]. Trying text format.", url);
-                processor = new TextPrometheusMetricsProcessor(inputStream, walker);
+                processor = createTextProcessor(inputStream, walker);
+            }
+
+            processor.setLabelInterner(labelInterner);
+            processor.setParseMode(parseMode);
+            try {
+                processor.walk();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
+        }
+
+        // the data is read and decoded while it is parsed, so take that out of the time spent parsing
+        long parseNanos = processor.getParseNanos() - response.getTransferNanos() - response.getDecodeNanos();
+
+        lastScrapeStats = new ScrapeStats.Builder()
+                .setContentEncoding(response.getContentEncoding())
+                .setWireBytes(response.getWireBytes())
+                .setDecodedBytes(response.getDecodedBytes())
+                .setDurationNanos(System.nanoTime() - startNanos)
+                .setPhaseNanos(ScrapeStats.Phase.CONNECT, connectNanos)
+                .setPhaseNanos(ScrapeStats.Phase.TRANSFER, response.getTransferNanos())
+                .setPhaseNanos(ScrapeStats.Phase.DECODE, response.getDecodeNanos())
+                .setPhaseNanos(ScrapeStats.Phase.PARSE, Math.max(parseNanos, 0L))
+                .setPhaseNanos(ScrapeStats.Phase.CONVERT, processor.getConvertNanos())
+                .setPhaseNanos(ScrapeStats.Phase.WALK, processor.getWalkerNanos())
+                .setLineCount(processor.getLineCount())
+                .setFamilyCount(processor.getFamilyCount())
+                .setMetricCount(processor.getMetricCount())
+                .setSampleCount(processor.getSampleCount())
+                .setParseErrors(processor.getParseErrors())
+                .build();
+        log.debugf("Scraped [%s]: %s", url, lastScrapeStats);
+    }
 
-            processor.walk();
+    /**
+     * The stats tell you how long each phase of the scrape took and how much data was scraped; use
+     * {@link ScrapeStats#toMetricFamilies(prometheus.types.Labels)} to export them as metrics.
+     *
+     * @return the measurements taken during the last scrape that finished, or null if no scrape has finished yet.
+     *         If this scraper is used by multiple threads at the same time, this is from whichever scrape
+     *         finished last.
+     */
+    public ScrapeStats getLastScrapeStats() {
+        return lastScrapeStats;
+    }
+
+    private PrometheusMetricsProcessor<?> createTextProcessor(InputStream inputStream,
+            PrometheusMetricsWalker walker) {
+        if (textParserPool != null) {
+            return new ParallelTextPrometheusMetricsProcessor(inputStream, walker, textParserPool);
         }
+        return new TextPrometheusMetricsProcessor(inputStream, walker);
     }
 
     /**
@@ -180,7 +355,9 @@ public class PrometheusScraper {
      * If subclasses return a null content type in the returned object the data format passed to this
      * object's constructor will be assumed as the data format in the input stream.
      *
-     * The default implementation is to simply open an unsecured connection to the URL.
+     * The default implementation is to ask the {@link #setTransport(PrometheusTransport) transport}
+     * for the data. If this scraper was given a file and told to {@link #setMemoryMapFiles(boolean) memory map}
+     * it, the default implementation instead memory maps the file.
      *
      * @param url the Prometheus endpoint
      * @return connection details for the Prometheus endpoint
@@ -188,10 +365,10 @@ public class PrometheusScraper {
      * @throws IOException if the connection could not be opened
      */
     protected OpenConnectionDetails openConnection(URL endpointUrl) throws IOException {
-        URLConnection conn = endpointUrl.openConnection();
-        conn.setRequestProperty("Accept", getBinaryFormatContentType());
-        InputStream stream = conn.getInputStream();
-        String contentType = conn.getContentType();
-        return new OpenConnectionDetails(stream, contentType);
+        if (file != null && memoryMapFiles) {
+            // the data format given to the constructor tells what is in the file
+            return new OpenConnectionDetails(new TransportResponse(new MappedFileInputStream(file), null));
+        }
+        return new OpenConnectionDetails(transport.open(endpointUrl, getBinaryFormatContentType()));
     }
 }
@@ -0,0 +1,299 @@
+package prometheus;
+
+import java.io.IOException;
+import java.util.List;
+
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.types.Summary;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * Computes how fast counters go up from one scrape to the next. Walk each scrape of an endpoint with the same
+ * engine - by having the engine {@link #scrape(PrometheusScraper) scrape} it, by passing the engine to
+ * {@link PrometheusScraper#scrape(PrometheusMetricsWalker)} or by giving it the scraped metric families with
+ * {@link #update(List, long)} - and ask it for the
+ * {@link #getRate(String, Labels) rate} or {@link #getIncrease(String, Labels) increase} of a series between the
+ * last two scrapes it was found in.
+ *
+ * Counters are tracked, and so are the count and sum of summaries and histograms, which are counters too - ask for
+ * those with the name of the family followed by _count or _sum. Gauges are ignored.
+ *
+ * When a counter goes down, the process that exposes it is assumed to have restarted and the counter to have
+ * started again from zero, so its increase is its new value. The count of a summary or histogram going down
+ * resets both its count and its sum.
+ *
+ * The time of a sample is its timestamp if it has one, or the time the scrape was walked. For each series, only
+ * the previous value and time are kept, in flat arrays of primitives - no objects are created per series or per
+ * scrape. Series that are missing from more than {@link #setMaxMissedScrapes(int) a number of} scrapes are
+ * forgotten.
+ *
+ * A walker can't tell whether the data of a scrape was read to the end - in {@link ParseMode#LENIENT lenient}
+ * mode the walk simply finishes early when the data is cut off - so when the engine is walked, the series after
+ * the cut count as missing from the scrape. Let the engine {@link #scrape(PrometheusScraper) scrape} the endpoint
+ * to keep them instead.
+ *
+ * Engines are thread safe, so rates can be read while a scrape is being walked.
+ */
+public class RateEngine implements PrometheusMetricsWalker {
+
+    // the values kept for each series
+    private static final int TIME = 0; // of the latest sample, in milliseconds since the epoch
+    private static final int VALUE = 1; // the counter, or the count of a summary or histogram
+    private static final int SUM = 2; // the sum of a summary or histogram
+    private static final int INTERVAL = 3; // milliseconds between the latest two samples, 0 if there is one sample
+    private static final int VALUE_INCREASE = 4; // between the latest two samples
+    private static final int SUM_INCREASE = 5;
+    private static final int RESETS = 6;
+    private static final int VALUES_PER_SERIES = 7;
+
+    private final SeriesTable series = new SeriesTable(VALUES_PER_SERIES);
+    private int maxMissedScrapes;
+    private long scrapeTime;
+
+    /**
+     * A series that is missing from a scrape is forgotten right away by default. Keep series around for a few
+     * scrapes if they may be missing from a scrape now and then; a series that comes back gets the rate from its
+     * last sample before it went missing.
+     *
+     * @param maxMissedScrapes the number of scrapes in a row a series can be missing from before it is forgotten
+     */
+    public synchronized void setMaxMissedScrapes(int maxMissedScrapes) {
+        if (maxMissedScrapes < 0) {
+            throw new IllegalArgumentException("Max missed scrapes must not be negative");
+        }
+        this.maxMissedScrapes = maxMissedScrapes;
+    }
+
+    public synchronized int getMaxMissedScrapes() {
+        return maxMissedScrapes;
+    }
+
+    /**
+     * Scrapes the endpoint with the given scraper and updates the engine with what it finds. Unlike walking the
+     * scrape, series are only counted as missing from it if the scrape succeeded and its data was read to the end,
+     * so a scrape that fails or is cut off does not make the engine forget them.
+     *
+     * @param scraper scrapes the endpoint - it must not be used for other scrapes at the same time, as its
+     *                {@link PrometheusScraper#getLastScrapeStats() stats} tell whether the data was read to the end
+     * @throws IOException if the scrape failed
+     */
+    public void scrape(PrometheusScraper scraper) throws IOException {
+        if (scraper == null) {
+            throw new IllegalArgumentException("Scraper must not be null");
+        }
+
+        // everything but the end of the walk goes to the engine, which decides about the end once the scrape is done
+        scraper.scrape(new PrometheusMetricsWalker() {
+            @Override
+            public void walkStart() {
+                RateEngine.this.walkStart();
+            }
+
+            @Override
+            public void walkFinish(int familiesProcessed, int metricsProcessed) {
+            }
+
+            @Override
+            public void walkMetricFamily(MetricFamily family, int index) {
+            }
+
+            @Override
+            public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
+                RateEngine.this.walkCounterMetric(family, metric, index);
+            }
+
+            @Override
+            public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
+            }
+
+            @Override
+            public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
+                RateEngine.this.walkSummaryMetric(family, metric, index);
+            }
+
+            @Override
+            public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
+                RateEngine.this.walkHistogramMetric(family, metric, index);
+            }
+        });
+
+        ScrapeStats stats = scraper.getLastScrapeStats();
+        if (stats == null || stats.getParseErrors().getCount(ParseErrors.Reason.UNREADABLE_DATA) == 0) {
+            synchronized (this) {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Updates the engine with the metric families of a scrape.
+     *
+     * @param families the metric families found by the scrape
+     * @param timeMillis when the scrape happened, in milliseconds since the epoch - the time of the samples that
+     *                   don't have a timestamp
+     */
+    public synchronized void update(List<MetricFamily> families, long timeMillis) {
+        start(timeMillis);
+        for (MetricFamily family : families) {
+            for (Metric metric : family.getMetrics()) {
+                if (metric instanceof Counter) {
+                    walkCounterMetric(family, (Counter) metric, 0);
+                } else if (metric instanceof Summary) {
+                    walkSummaryMetric(family, (Summary) metric, 0);
+                } else if (metric instanceof Histogram) {
+                    walkHistogramMetric(family, (Histogram) metric, 0);
+                }
+            }
+        }
+        finish();
+    }
+
+    /**
+     * Starts a scrape, using the current time as the time of the samples that don't have a timestamp.
+     */
+    @Override
+    public synchronized void walkStart() {
+        start(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized void walkFinish(int familiesProcessed, int metricsProcessed) {
+        finish();
+    }
+
+    @Override
+    public void walkMetricFamily(MetricFamily family, int index) {
+    }
+
+    @Override
+    public synchronized void walkCounterMetric(MetricFamily family, Counter metric, int index) {
+        sample(family.getName(), metric, metric.getValue(), 0.0);
+    }
+
+    @Override
+    public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
+    }
+
+    @Override
+    public synchronized void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
+        sample(family.getName(), metric, metric.getSampleCount(), metric.getSampleSum());
+    }
+
+    @Override
+    public synchronized void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
+        sample(family.getName(), metric, metric.getSampleCount(), metric.getSampleSum());
+    }
+
+    /**
+     * @param name the name of a counter, or the name of a summary or histogram followed by _count or _sum
+     * @param labels the labels of the series
+     * @return how much the series went up per second between the last two samples of it, or NaN if there are not
+     *         two samples of the series
+     */
+    public synchronized double getRate(String name, Labels labels) {
+        int slot = find(name, labels);
+        if (slot < 0 || series.getLong(slot, INTERVAL) == 0L) {
+            return Double.NaN;
+        }
+        return increase(slot, name) * 1000.0 / series.getLong(slot, INTERVAL);
+    }
+
+    /**
+     * @param name the name of a counter, or the name of a summary or histogram followed by _count or _sum
+     * @param labels the labels of the series
+     * @return how much the series went up between the last two samples of it, or NaN if there are not two samples
+     *         of the series
+     */
+    public synchronized double getIncrease(String name, Labels labels) {
+        int slot = find(name, labels);
+        if (slot < 0 || series.getLong(slot, INTERVAL) == 0L) {
+            return Double.NaN;
+        }
+        return increase(slot, name);
+    }
+
+    /**
+     * @param name the name of a counter, summary or histogram (with or without the _count or _sum suffix)
+     * @param labels the labels of the series
+     * @return the number of times the series was reset while the engine has been tracking it
+     */
+    public synchronized long getResets(String name, Labels labels) {
+        int slot = find(name, labels);
+        return (slot < 0) ? 0L : series.getLong(slot, RESETS);
+    }
+
+    /**
+     * @return the number of series the engine is tracking
+     */
+    public synchronized int getSeriesCount() {
+        return series.size();
+    }
+
+    /**
+     * Forgets all series.
+     */
+    public synchronized void clear() {
+        series.clear();
+    }
+
+    private void start(long timeMillis) {
+        series.nextGeneration();
+        scrapeTime = timeMillis;
+    }
+
+    private void finish() {
+        series.sweep(maxMissedScrapes, null);
+    }
+
+    private void sample(String name, Metric metric, double value, double sum) {
+        long time = metric.hasTimestamp() ? metric.getTimestamp() : scrapeTime;
+        int slot = series.put(name, metric.getLabelSet());
+        if (slot < 0) {
+            slot = -(slot + 1);
+            series.setLong(slot, TIME, time);
+            series.setDouble(slot, VALUE, value);
+            series.setDouble(slot, SUM, sum);
+            return;
+        }
+
+        long interval = time - series.getLong(slot, TIME);
+        if (interval <= 0L) {
+            return; // the same sample again (or one from the past) tells us nothing new
+        }
+        double previousValue = series.getDouble(slot, VALUE);
+        if (value < previousValue) {
+            // reset - the counter started again from zero
+            series.setDouble(slot, VALUE_INCREASE, value);
+            series.setDouble(slot, SUM_INCREASE, sum);
+            series.setLong(slot, RESETS, series.getLong(slot, RESETS) + 1);
+        } else {
+            series.setDouble(slot, VALUE_INCREASE, value - previousValue);
+            series.setDouble(slot, SUM_INCREASE, sum - series.getDouble(slot, SUM));
+        }
+        series.setLong(slot, TIME, time);
+        series.setLong(slot, INTERVAL, interval);
+        series.setDouble(slot, VALUE, value);
+        series.setDouble(slot, SUM, sum);
+    }
+
+    // the series the name refers to - a name with a _count or _sum suffix refers to the summary or histogram
+    private int find(String name, Labels labels) {
+        int slot = series.find(name, labels);
+        if (slot < 0 && name.endsWith("_count")) {
+            slot = series.find(name.substring(0, name.length() - "_count".length()), labels);
+        } else if (slot < 0 && name.endsWith("_sum")) {
+            slot = series.find(name.substring(0, name.length() - "_sum".length()), labels);
+        }
+        return slot;
+    }
+
+    private double increase(int slot, String name) {
+        boolean sum = name.endsWith("_sum") && !series.getFamily(slot).equals(name);
+        return series.getDouble(slot, sum ? SUM_INCREASE : VALUE_INCREASE);
+    }
+}
@@ -0,0 +1,31 @@
+package prometheus;
+
+import java.util.List;
+
+import prometheus.types.MetricFamily;
+
+/**
+ * Notified by a {@link ScrapeManager} when scrapes of its targets finish.
+ *
+ * Scrapes of different targets run concurrently, so implementations must be thread safe.
+ * Scrapes of the same target never overlap.
+ */
+public interface ScrapeListener {
+
+    /**
+     * Called when a scrape finished successfully.
+     *
+     * @param target the target that was scraped
+     * @param metricFamilies all the metric families found at the target
+     */
+    void scrapeSucceeded(ScrapeTarget target, List<MetricFamily> metricFamilies);
+
+    /**
+     * Called when a scrape failed or timed out.
+     *
+     * @param target the target that was scraped
+     * @param error why the scrape failed - this is a {@link java.util.concurrent.TimeoutException} if the
+     *              scrape took longer than the target's timeout
+     */
+    void scrapeFailed(ScrapeTarget target, Throwable error);
+}
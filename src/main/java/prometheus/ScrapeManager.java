@@ -0,0 +1,407 @@
+package prometheus;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.logging.Logger;
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.MetricFamily;
+import prometheus.types.Summary;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+/**
+ * Periodically scrapes many Prometheus endpoints concurrently.
+ *
+ * Each {@link ScrapeTarget} is scraped at its own interval and a scrape that takes longer than the target's
+ * timeout is abandoned. The first scrape of each target is delayed by a random amount of time within the
+ * target's interval so targets with the same interval do not all get scraped at the same moment.
+ * Scrapes of the same target never overlap - if a target is still being scraped when its next scrape is due,
+ * that next scrape is skipped.
+ *
+ * Scrapes run on virtual threads if the JVM supports them (and they are not disabled), otherwise on a fixed
+ * size thread pool. Either way, no more than {@link Builder#setMaxConcurrentScrapes(int) the maximum
+ * number} of scrapes run at the same time.
+ *
+ * Use {@link #getStatus(String)} to see how the scrapes of a target are doing and a {@link ScrapeListener}
+ * to get the scraped data.
+ *
+ * NOTE: a scrape that times out is interrupted, but a thread blocked reading from a socket does not react to
+ * interrupts. The scrapers' {@link prometheus.transport.PrometheusTransport transports} should have their own
+ * connection and read timeouts as well.
+ */
+public class ScrapeManager {
+    private static final Logger log = Logger.getLogger(ScrapeManager.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_SCRAPES = 64;
+
+    public static class Builder {
+        private int maxConcurrentScrapes = DEFAULT_MAX_CONCURRENT_SCRAPES;
+        private boolean useVirtualThreads = true;
+        private ScrapeListener listener;
+
+        /**
+         * @param maxConcurrentScrapes the maximum number of scrapes that run at the same time
+         */
+        public Builder setMaxConcurrentScrapes(int maxConcurrentScrapes) {
+            this.maxConcurrentScrapes = maxConcurrentScrapes;
+            return this;
+        }
+
+        /**
+         * @param useVirtualThreads if false, scrapes run on platform threads even if the JVM supports
+         *                          virtual threads
+         */
+        public Builder setUseVirtualThreads(boolean useVirtualThreads) {
+            this.useVirtualThreads = useVirtualThreads;
+            return this;
+        }
+
+        /**
+         * @param listener notified when scrapes finish
+         */
+        public Builder setListener(ScrapeListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public ScrapeManager build() {
+            return new ScrapeManager(this);
+        }
+    }
+
+    // the states of a single scrape
+    private static final int PENDING = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int TIMED_OUT = 3;
+
+    private final ScrapeListener listener;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+    private final Semaphore permits; // only needed when the executor does not bound the number of threads
+    private final ConcurrentMap<String, ScheduledTarget> targets = new ConcurrentHashMap<>();
+    private volatile boolean started;
+    private volatile boolean stopped;
+
+    protected ScrapeManager(Builder builder) {
+        if (builder.maxConcurrentScrapes <= 0) {
+            throw new IllegalArgumentException(
+                    "Maximum concurrent scrapes must be positive: " + builder.maxConcurrentScrapes);
+        }
+
+        this.listener = builder.listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("prometheus-scheduler"));
+
+        ExecutorService virtualThreadExecutor = (builder.useVirtualThreads) ? newVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            this.permits = new Semaphore(builder.maxConcurrentScrapes);
+        } else {
+            this.executor = Executors.newFixedThreadPool(builder.maxConcurrentScrapes,
+                    new NamedThreadFactory("prometheus-scraper"));
+            this.permits = null;
+        }
+        log.debugf("Scrapes will run on %s threads, at most [%d] at a time",
+                (virtualThreadExecutor != null) ? "virtual" : "platform", builder.maxConcurrentScrapes);
+    }
+
+    /**
+     * Adds a target to be scraped. If the manager has already been started, the target will be scheduled
+     * right away.
+     *
+     * @param target the target to scrape
+     * @throws IllegalArgumentException if there already is a target with the same ID
+     */
+    public void addTarget(ScrapeTarget target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target must not be null");
+        }
+        ScheduledTarget scheduledTarget = new ScheduledTarget(target);
+        if (targets.putIfAbsent(target.getId(), scheduledTarget) != null) {
+            throw new IllegalArgumentException("There already is a target with the ID: " + target.getId());
+        }
+        if (started) {
+            scheduledTarget.schedule();
+        }
+    }
+
+    /**
+     * Stops scraping the target. A scrape of the target that is already running is allowed to finish.
+     *
+     * @param targetId the ID of the target to remove
+     * @return the removed target, or null if there was no target with the given ID
+     */
+    public ScrapeTarget removeTarget(String targetId) {
+        ScheduledTarget scheduledTarget = targets.remove(targetId);
+        if (scheduledTarget == null) {
+            return null;
+        }
+        scheduledTarget.cancel();
+        return scheduledTarget.target;
+    }
+
+    /**
+     * @return all the targets being scraped
+     */
+    public List<ScrapeTarget> getTargets() {
+        Collection<ScheduledTarget> scheduledTargets = targets.values();
+        List<ScrapeTarget> result = new ArrayList<>(scheduledTargets.size());
+        for (ScheduledTarget scheduledTarget : scheduledTargets) {
+            result.add(scheduledTarget.target);
+        }
+        return result;
+    }
+
+    /**
+     * @param targetId the ID of the target
+     * @return the status of the scrapes of the target, or null if there is no target with the given ID
+     */
+    public ScrapeTargetStatus getStatus(String targetId) {
+        ScheduledTarget scheduledTarget = targets.get(targetId);
+        return (scheduledTarget == null) ? null : scheduledTarget.status;
+    }
+
+    /**
+     * Starts scraping the targets.
+     */
+    public synchronized void start() {
+        if (stopped) {
+            throw new IllegalStateException("The scrape manager has been stopped");
+        }
+        if (started) {
+            return;
+        }
+        started = true;
+        for (ScheduledTarget scheduledTarget : targets.values()) {
+            scheduledTarget.schedule();
+        }
+    }
+
+    /**
+     * Stops scraping all targets and interrupts the scrapes that are running. Once stopped, the manager
+     * cannot be started again.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        started = false;
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private void scrape(ScheduledTarget scheduledTarget, AtomicInteger state, long scrapeTime, long startNanos) {
+        ScrapeTarget target = scheduledTarget.target;
+        boolean acquired = false;
+        boolean ran = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return; // timed out while waiting to run
+            }
+            ran = true;
+
+            SampleCountingWalker walker = new SampleCountingWalker();
+            Throwable error = null;
+            try {
+                target.getScraper().scrape(walker);
+            } catch (Exception e) {
+                error = e;
+            }
+
+            if (!state.compareAndSet(RUNNING, DONE)) {
+                return; // timed out - the results have already been reported
+            }
+
+            long duration = System.nanoTime() - startNanos;
+            if (error == null) {
+                scheduledTarget.status = scheduledTarget.status.success(scrapeTime, duration,
+                        walker.getSampleCount(), target.getScraper().getLastScrapeStats());
+                if (listener != null) {
+                    listener.scrapeSucceeded(target, walker.getAllMetricFamilies());
+                }
+            } else {
+                log.debugf(error, "Failed to scrape target [%s]", target.getId());
+                scheduledTarget.status = scheduledTarget.status.failure(scrapeTime, duration, error);
+                if (listener != null) {
+                    listener.scrapeFailed(target, error);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // timed out or the manager was stopped
+        } catch (RuntimeException e) {
+            log.debugf(e, "Listener failed to process scrape of target [%s]", target.getId());
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+            if (ran || state.get() != TIMED_OUT) {
+                scheduledTarget.running.set(false);
+            }
+        }
+    }
+
+    private void timeout(ScheduledTarget scheduledTarget, AtomicInteger state, Future<?> scrape, long scrapeTime) {
+        boolean neverRan = state.compareAndSet(PENDING, TIMED_OUT);
+        if (neverRan || state.compareAndSet(RUNNING, TIMED_OUT)) {
+            scrape.cancel(true);
+            if (neverRan) {
+                scheduledTarget.running.set(false); // otherwise the scrape thread does this once it gives up
+            }
+            ScrapeTarget target = scheduledTarget.target;
+            TimeoutException error = new TimeoutException(
+                    String.format("Scrape of target [%s] timed out after [%d] ms", target.getId(),
+                            target.getTimeoutMillis()));
+            log.debugf("%s", error.getMessage());
+            scheduledTarget.status = scheduledTarget.status.failure(scrapeTime,
+                    TimeUnit.MILLISECONDS.toNanos(target.getTimeoutMillis()), error);
+            if (listener != null) {
+                try {
+                    listener.scrapeFailed(target, error);
+                } catch (RuntimeException e) {
+                    log.debugf(e, "Listener failed to process scrape of target [%s]", target.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps track of the schedule and status of a single target.
+     */
+    private class ScheduledTarget implements Runnable {
+        private final ScrapeTarget target;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private volatile ScrapeTargetStatus status;
+        private ScheduledFuture<?> schedule;
+
+        ScheduledTarget(ScrapeTarget target) {
+            this.target = target;
+            this.status = new ScrapeTargetStatus(target.getId());
+        }
+
+        synchronized void schedule() {
+            if (schedule == null) {
+                long jitter = ThreadLocalRandom.current().nextLong(target.getIntervalMillis());
+                schedule = scheduler.scheduleAtFixedRate(this, jitter, target.getIntervalMillis(),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void cancel() {
+            if (schedule != null) {
+                schedule.cancel(false);
+            }
+        }
+
+        // runs on the scheduler thread when a scrape is due - this must never throw or the target is descheduled
+        @Override
+        public void run() {
+            if (!running.compareAndSet(false, true)) {
+                log.debugf("Target [%s] is still being scraped - skipping this scrape", target.getId());
+                return;
+            }
+
+            final long scrapeTime = System.currentTimeMillis();
+            final long startNanos = System.nanoTime();
+            final AtomicInteger state = new AtomicInteger(PENDING);
+            try {
+                final Future<?> scrape = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        scrape(ScheduledTarget.this, state, scrapeTime, startNanos);
+                    }
+                });
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        timeout(ScheduledTarget.this, state, scrape, scrapeTime);
+                    }
+                }, target.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // the manager is being stopped
+                log.debugf(e, "Failed to schedule scrape of target [%s]", target.getId());
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Collects the metric families and counts their samples the way the text format would list them.
+     */
+    private static class SampleCountingWalker extends CollectorPrometheusMetricsWalker {
+        private int sampleCount;
+
+        int getSampleCount() {
+            return sampleCount;
+        }
+
+        @Override
+        public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
+            sampleCount++;
+        }
+
+        @Override
+        public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
+            sampleCount++;
+        }
+
+        @Override
+        public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
+            sampleCount += metric.getQuantileCount() + 2; // plus the sum and count
+        }
+
+        @Override
+        public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
+            sampleCount += metric.getBucketCount() + 2; // plus the sum and count
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Virtual threads are only available in Java 21 and up, so this has to be looked up reflectively.
+     *
+     * @return an executor that runs each task on a new virtual thread, or null if the JVM does not have them
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
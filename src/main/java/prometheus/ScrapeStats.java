@@ -0,0 +1,330 @@
+package prometheus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import prometheus.transport.ContentEncoding;
+import prometheus.types.Gauge;
+import prometheus.types.Labels;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+
+/**
+ * Measurements taken during a single scrape: how long each phase of the scrape took, how much data was read and
+ * how much was found in it.
+ *
+ * The phases do not overlap, and apart from some bookkeeping they add up to the {@link #getDurationNanos()
+ * duration} of the scrape. Since the data is parsed as it is read, reading, decoding and parsing are interleaved;
+ * the time spent in each is measured separately.
+ *
+ * {@link #toMetricFamilies(Labels)} gives the measurements as metric families, so they can be exported alongside
+ * the scraped metrics.
+ *
+ * @see PrometheusScraper#getLastScrapeStats()
+ */
+public class ScrapeStats {
+
+    /**
+     * The phases of a scrape, in the order they start.
+     */
+    public enum Phase {
+        /**
+         * Connecting to the endpoint and waiting for its response to start.
+         */
+        CONNECT,
+        /**
+         * Reading the data off the wire, which is mostly waiting for it to come over the network.
+         */
+        TRANSFER,
+        /**
+         * Decompressing the data.
+         */
+        DECODE,
+        /**
+         * Parsing the data into metric families.
+         */
+        PARSE,
+        /**
+         * Converting the parsed metric families into {@link MetricFamily} objects.
+         */
+        CONVERT,
+        /**
+         * Passing the metric families to the walker.
+         */
+        WALK;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @return the name of the phase, as used in the phase label of the exported metrics
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static class Builder {
+        private ContentEncoding contentEncoding = ContentEncoding.IDENTITY;
+        private long wireBytes;
+        private long decodedBytes;
+        private long durationNanos;
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private long lineCount;
+        private int familyCount;
+        private int metricCount;
+        private long sampleCount;
+        private ParseErrors parseErrors = new ParseErrors();
+
+        public Builder setContentEncoding(ContentEncoding contentEncoding) {
+            this.contentEncoding = contentEncoding;
+            return this;
+        }
+
+        public Builder setWireBytes(long wireBytes) {
+            this.wireBytes = wireBytes;
+            return this;
+        }
+
+        public Builder setDecodedBytes(long decodedBytes) {
+            this.decodedBytes = decodedBytes;
+            return this;
+        }
+
+        public Builder setDurationNanos(long durationNanos) {
+            this.durationNanos = durationNanos;
+            return this;
+        }
+
+        public Builder setPhaseNanos(Phase phase, long nanos) {
+            if (phase == null) {
+                throw new IllegalArgumentException("Phase must not be null");
+            }
+            this.phaseNanos[phase.ordinal()] = nanos;
+            return this;
+        }
+
+        public Builder setDecodeNanos(long decodeNanos) {
+            return setPhaseNanos(Phase.DECODE, decodeNanos);
+        }
+
+        public Builder setLineCount(long lineCount) {
+            this.lineCount = lineCount;
+            return this;
+        }
+
+        public Builder setFamilyCount(int familyCount) {
+            this.familyCount = familyCount;
+            return this;
+        }
+
+        public Builder setMetricCount(int metricCount) {
+            this.metricCount = metricCount;
+            return this;
+        }
+
+        public Builder setSampleCount(long sampleCount) {
+            this.sampleCount = sampleCount;
+            return this;
+        }
+
+        public Builder setParseErrors(ParseErrors parseErrors) {
+            this.parseErrors = parseErrors;
+            return this;
+        }
+
+        public ScrapeStats build() {
+            return new ScrapeStats(this);
+        }
+    }
+
+    private final ContentEncoding contentEncoding;
+    private final long wireBytes;
+    private final long decodedBytes;
+    private final long durationNanos;
+    private final long[] phaseNanos;
+    private final long lineCount;
+    private final int familyCount;
+    private final int metricCount;
+    private final long sampleCount;
+    private final ParseErrors parseErrors;
+
+    protected ScrapeStats(Builder builder) {
+        if (builder.contentEncoding == null) {
+            throw new IllegalArgumentException("Need to set content encoding");
+        }
+        this.contentEncoding = builder.contentEncoding;
+        this.wireBytes = builder.wireBytes;
+        this.decodedBytes = builder.decodedBytes;
+        this.durationNanos = builder.durationNanos;
+        this.phaseNanos = builder.phaseNanos.clone();
+        this.lineCount = builder.lineCount;
+        this.familyCount = builder.familyCount;
+        this.metricCount = builder.metricCount;
+        this.sampleCount = builder.sampleCount;
+        if (builder.parseErrors == null) {
+            throw new IllegalArgumentException("Need to set parse errors");
+        }
+        this.parseErrors = builder.parseErrors;
+    }
+
+    /**
+     * @return how the metric data was encoded on the wire
+     */
+    public ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the number of bytes of metric data that came over the wire
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @return the number of bytes of metric data after it was decoded - this is the same as the wire bytes
+     *         if the data was not compressed
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    /**
+     * @return how long, in nanoseconds, the whole scrape took
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @param phase a phase of the scrape
+     * @return how long, in nanoseconds, was spent in that phase of the scrape
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return how long, in nanoseconds, it took to decode the metric data
+     */
+    public long getDecodeNanos() {
+        return getPhaseNanos(Phase.DECODE);
+    }
+
+    /**
+     * @return the number of lines of metric data, or 0 if the data was not in the text format
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the number of metric families found
+     */
+    public int getFamilyCount() {
+        return familyCount;
+    }
+
+    /**
+     * @return the number of metrics found
+     */
+    public int getMetricCount() {
+        return metricCount;
+    }
+
+    /**
+     * @return the number of samples found, counted the way the text format lists them - a summary or histogram
+     *         has a sample per quantile or bucket plus its sum and count
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the lines and metric families that had to be skipped because they were not valid
+     */
+    public ParseErrors getParseErrors() {
+        return parseErrors;
+    }
+
+    /**
+     * Gives the measurements as gauges, named after the scrape_duration_seconds and scrape_samples_scraped
+     * metrics Prometheus records for its own scrapes. Times are in seconds; the time spent in each phase is
+     * given by scrape_phase_duration_seconds, with the phase in a "phase" label.
+     *
+     * @param labels the labels given to each of the metrics - typically the labels that identify the scraped
+     *               target, such as its job and instance
+     * @return the measurements as metric families
+     */
+    public List<MetricFamily> toMetricFamilies(Labels labels) {
+        if (labels == null) {
+            throw new IllegalArgumentException("Labels must not be null");
+        }
+        List<MetricFamily> families = new ArrayList<>();
+        families.add(gauge("scrape_duration_seconds", "How long the scrape took, in seconds", labels,
+                seconds(durationNanos)));
+
+        MetricFamily.Builder phases = new MetricFamily.Builder()
+                .setName("scrape_phase_duration_seconds")
+                .setHelp("How long each phase of the scrape took, in seconds")
+                .setType(MetricType.GAUGE);
+        String[] names = new String[labels.size() + 1];
+        String[] values = new String[labels.size() + 1];
+        for (int i = 0; i < labels.size(); i++) {
+            names[i] = labels.getName(i);
+            values[i] = labels.getValue(i);
+        }
+        names[labels.size()] = "phase";
+        for (Phase phase : Phase.values()) {
+            values[labels.size()] = phase.getLabel();
+            phases.addMetric(new Gauge.Builder()
+                    .setName("scrape_phase_duration_seconds")
+                    .setLabels(Labels.of(names, values, names.length))
+                    .setValue(seconds(phaseNanos[phase.ordinal()]))
+                    .build());
+        }
+        families.add(phases.build());
+
+        families.add(gauge("scrape_wire_bytes", "Bytes of metric data that came over the wire", labels,
+                wireBytes));
+        families.add(gauge("scrape_decoded_bytes", "Bytes of metric data after it was decompressed", labels,
+                decodedBytes));
+        families.add(gauge("scrape_lines", "Lines of text metric data", labels, lineCount));
+        families.add(gauge("scrape_metric_families", "Metric families found", labels, familyCount));
+        families.add(gauge("scrape_metrics", "Metrics found", labels, metricCount));
+        families.add(gauge("scrape_samples_scraped", "Samples found", labels, sampleCount));
+        families.add(gauge("scrape_lines_rejected", "Lines skipped because they were not valid", labels,
+                parseErrors.getLinesRejected()));
+        families.add(gauge("scrape_metric_families_dropped", "Metric families skipped because they were not valid",
+                labels, parseErrors.getFamiliesDropped()));
+        return families;
+    }
+
+    private static MetricFamily gauge(String name, String help, Labels labels, double value) {
+        return new MetricFamily.Builder()
+                .setName(name)
+                .setHelp(help)
+                .setType(MetricType.GAUGE)
+                .addMetric(new Gauge.Builder().setName(name).setLabels(labels).setValue(value).build())
+                .build();
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("encoding=%s, wireBytes=%d, decodedBytes=%d, duration=%dns",
+                contentEncoding.getName(), wireBytes, decodedBytes, durationNanos));
+        for (Phase phase : Phase.values()) {
+            str.append(", ").append(phase.getLabel()).append('=').append(phaseNanos[phase.ordinal()]).append("ns");
+        }
+        str.append(String.format(", lines=%d, families=%d, metrics=%d, samples=%d, linesRejected=%d, "
+                + "familiesDropped=%d", lineCount, familyCount, metricCount, sampleCount,
+                parseErrors.getLinesRejected(), parseErrors.getFamiliesDropped()));
+        return str.toString();
+    }
+}
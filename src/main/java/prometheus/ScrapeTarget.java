@@ -0,0 +1,116 @@
+package prometheus;
+
+/**
+ * A Prometheus endpoint that a {@link ScrapeManager} scrapes periodically.
+ */
+public class ScrapeTarget {
+
+    /**
+     * How often a target is scraped if no interval is set - this is the Prometheus default.
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 60 * 1000L;
+
+    /**
+     * How long a scrape of a target may take if no timeout is set - this is the Prometheus default.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 10 * 1000L;
+
+    public static class Builder {
+        private String id;
+        private PrometheusScraper scraper;
+        private long intervalMillis = DEFAULT_INTERVAL_MILLIS;
+        private Long timeoutMillis;
+
+        /**
+         * @param id uniquely identifies the target within its scrape manager
+         */
+        public Builder setId(String id) {
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * @param scraper the scraper that scrapes the target's endpoint
+         */
+        public Builder setScraper(PrometheusScraper scraper) {
+            this.scraper = scraper;
+            return this;
+        }
+
+        /**
+         * @param intervalMillis how often, in milliseconds, the target is scraped
+         */
+        public Builder setIntervalMillis(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * @param timeoutMillis how long, in milliseconds, a single scrape of the target may take. If this is not
+         *                      set, the timeout is the smaller of the interval and {@link #DEFAULT_TIMEOUT_MILLIS}.
+         */
+        public Builder setTimeoutMillis(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        public ScrapeTarget build() {
+            return new ScrapeTarget(this);
+        }
+    }
+
+    private final String id;
+    private final PrometheusScraper scraper;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+
+    protected ScrapeTarget(Builder builder) {
+        if (builder.id == null) {
+            throw new IllegalArgumentException("Need to set id");
+        }
+        if (builder.scraper == null) {
+            throw new IllegalArgumentException("Need to set scraper");
+        }
+        if (builder.intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive: " + builder.intervalMillis);
+        }
+
+        long timeout = (builder.timeoutMillis != null) ? builder.timeoutMillis
+                : Math.min(builder.intervalMillis, DEFAULT_TIMEOUT_MILLIS);
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+        }
+        if (timeout > builder.intervalMillis) {
+            // just like Prometheus, we do not let scrapes of the same target overlap
+            throw new IllegalArgumentException(
+                    String.format("Timeout [%d] must not be greater than the interval [%d]", timeout,
+                            builder.intervalMillis));
+        }
+
+        this.id = builder.id;
+        this.scraper = builder.scraper;
+        this.intervalMillis = builder.intervalMillis;
+        this.timeoutMillis = timeout;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public PrometheusScraper getScraper() {
+        return scraper;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[interval=%dms, timeout=%dms]", id, intervalMillis, timeoutMillis);
+    }
+}
@@ -0,0 +1,124 @@
+package prometheus;
+
+/**
+ * The outcome of the most recent scrapes of a {@link ScrapeTarget}. Instances are immutable snapshots -
+ * ask the {@link ScrapeManager} again to see the results of later scrapes.
+ */
+public class ScrapeTargetStatus {
+    private final String targetId;
+    private final long scrapeCount;
+    private final long failureCount;
+    private final long lastScrapeTime;
+    private final long lastDurationNanos;
+    private final long lastSuccessTime;
+    private final int lastSampleCount;
+    private final Throwable lastError;
+    private final ScrapeStats lastScrapeStats;
+
+    ScrapeTargetStatus(String targetId) {
+        this(targetId, 0, 0, 0, 0, 0, 0, null, null);
+    }
+
+    private ScrapeTargetStatus(String targetId, long scrapeCount, long failureCount, long lastScrapeTime,
+            long lastDurationNanos, long lastSuccessTime, int lastSampleCount, Throwable lastError,
+            ScrapeStats lastScrapeStats) {
+        this.targetId = targetId;
+        this.scrapeCount = scrapeCount;
+        this.failureCount = failureCount;
+        this.lastScrapeTime = lastScrapeTime;
+        this.lastDurationNanos = lastDurationNanos;
+        this.lastSuccessTime = lastSuccessTime;
+        this.lastSampleCount = lastSampleCount;
+        this.lastError = lastError;
+        this.lastScrapeStats = lastScrapeStats;
+    }
+
+    ScrapeTargetStatus success(long scrapeTime, long durationNanos, int sampleCount, ScrapeStats scrapeStats) {
+        return new ScrapeTargetStatus(targetId, scrapeCount + 1, failureCount, scrapeTime, durationNanos,
+                scrapeTime, sampleCount, null, scrapeStats);
+    }
+
+    ScrapeTargetStatus failure(long scrapeTime, long durationNanos, Throwable error) {
+        return new ScrapeTargetStatus(targetId, scrapeCount + 1, failureCount + 1, scrapeTime, durationNanos,
+                lastSuccessTime, 0, error, null);
+    }
+
+    public String getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * @return the number of scrapes that have finished, successfully or not
+     */
+    public long getScrapeCount() {
+        return scrapeCount;
+    }
+
+    /**
+     * @return the number of scrapes that have failed or timed out
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return when the last scrape started, in milliseconds since the epoch, or 0 if no scrape has finished yet
+     */
+    public long getLastScrapeTime() {
+        return lastScrapeTime;
+    }
+
+    /**
+     * @return how long the last scrape took in nanoseconds. For a scrape that timed out, this is the timeout.
+     */
+    public long getLastDurationNanos() {
+        return lastDurationNanos;
+    }
+
+    /**
+     * @return when the last successful scrape started, in milliseconds since the epoch, or 0 if no scrape
+     *         has succeeded yet
+     */
+    public long getLastSuccessTime() {
+        return lastSuccessTime;
+    }
+
+    /**
+     * @return true if the last scrape succeeded
+     */
+    public boolean isLastScrapeSuccessful() {
+        return scrapeCount > 0 && lastError == null;
+    }
+
+    /**
+     * @return the number of samples found by the last scrape, or 0 if the last scrape failed. As in the
+     *         text format, each summary and histogram is counted as its quantiles or buckets plus its
+     *         sum and count.
+     */
+    public int getLastSampleCount() {
+        return lastSampleCount;
+    }
+
+    /**
+     * @return why the last scrape failed, or null if it succeeded
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return the measurements taken during the last scrape, such as the number of bytes that came over the wire,
+     *         or null if the last scrape failed
+     */
+    public ScrapeStats getLastScrapeStats() {
+        return lastScrapeStats;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: scrapes=%d, failures=%d, lastScrapeTime=%d, lastDuration=%dns, "
+                + "lastSuccessTime=%d, lastSampleCount=%d, lastError=%s, lastScrapeStats=[%s]", targetId,
+                scrapeCount, failureCount, lastScrapeTime, lastDurationNanos, lastSuccessTime, lastSampleCount,
+                lastError, lastScrapeStats);
+    }
+}
@@ -0,0 +1,274 @@
+package prometheus;
+
+import java.util.Arrays;
+
+import prometheus.types.Labels;
+
+/**
+ * Keeps a fixed number of primitive values for each series (a metric family name plus a label set) in an open
+ * addressing hash table. The keys and values are held in flat arrays - the values of all series are in a single
+ * long array - so no objects are created per series other than what the keys already are, and looking a series
+ * up creates nothing at all.
+ *
+ * The table counts generations, which are usually scrapes. A series is stamped with the current generation
+ * whenever it is {@link #put(String, Labels) put}, so series that have not been seen for a while can be
+ * {@link #sweep(int, RemovalListener) swept} out of the table.
+ *
+ * Tables are not thread safe.
+ */
+final class SeriesTable {
+
+    /**
+     * Told about each series a {@link SeriesTable#sweep(int, RemovalListener) sweep} removes.
+     */
+    interface RemovalListener {
+        /**
+         * @param slot the slot of the series, which is valid until this returns
+         */
+        void removed(int slot);
+    }
+
+    private static final int INITIAL_CAPACITY = 64; // must be a power of two
+    private static final int FREE = Integer.MIN_VALUE; // the generation of an empty slot
+
+    private final int valuesPerSeries;
+    private String[] families;
+    private Labels[] labels;
+    private int[] hashes;
+    private int[] generations;
+    private long[] values;
+    private int size;
+    private int generation;
+
+    /**
+     * @param valuesPerSeries the number of values kept for each series
+     */
+    SeriesTable(int valuesPerSeries) {
+        if (valuesPerSeries < 0) {
+            throw new IllegalArgumentException("Values per series must not be negative");
+        }
+        this.valuesPerSeries = valuesPerSeries;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        families = new String[capacity];
+        labels = new Labels[capacity];
+        hashes = new int[capacity];
+        generations = new int[capacity];
+        Arrays.fill(generations, FREE);
+        values = new long[capacity * valuesPerSeries];
+    }
+
+    /**
+     * @return the number of series in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots, so slots are numbered from 0 to one less than this
+     */
+    int capacity() {
+        return families.length;
+    }
+
+    /**
+     * Starts a new generation. Series put from now on are stamped with it.
+     */
+    void nextGeneration() {
+        generation++;
+    }
+
+    /**
+     * @param family the metric family name of the series
+     * @param labelSet the labels of the series
+     * @return the slot of the series, or -1 if it is not in the table
+     */
+    int find(String family, Labels labelSet) {
+        int hash = hash(family, labelSet);
+        int mask = families.length - 1;
+        for (int slot = hash & mask; generations[slot] != FREE; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && labels[slot].equals(labelSet) && families[slot].equals(family)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the series, adding it if it is not in the table yet, and stamps it with the current generation.
+     * The values of a series that is added are all 0.
+     *
+     * @param family the metric family name of the series
+     * @param labelSet the labels of the series
+     * @return the slot of the series if it was already in the table, or {@code -(slot + 1)} if it was added
+     */
+    int put(String family, Labels labelSet) {
+        if (family == null || labelSet == null) {
+            throw new IllegalArgumentException("Family and labels must not be null");
+        }
+        int hash = hash(family, labelSet);
+        int mask = families.length - 1;
+        int slot = hash & mask;
+        for (; generations[slot] != FREE; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && labels[slot].equals(labelSet) && families[slot].equals(family)) {
+                generations[slot] = generation;
+                return slot;
+            }
+        }
+
+        if ((size + 1) * 4 > families.length * 3) {
+            grow();
+            return put(family, labelSet); // the slot has moved
+        }
+        families[slot] = family;
+        labels[slot] = labelSet;
+        hashes[slot] = hash;
+        generations[slot] = generation;
+        size++;
+        return -(slot + 1);
+    }
+
+    /**
+     * @param slot a slot that holds a series
+     * @return the metric family name of the series
+     */
+    String getFamily(int slot) {
+        return families[slot];
+    }
+
+    /**
+     * @param slot a slot that holds a series
+     * @return the labels of the series
+     */
+    Labels getLabels(int slot) {
+        return labels[slot];
+    }
+
+    /**
+     * @param slot a slot
+     * @return true if the slot holds a series
+     */
+    boolean isUsed(int slot) {
+        return generations[slot] != FREE;
+    }
+
+    /**
+     * @param slot a slot that holds a series
+     * @return how many generations ago the series was last put - 0 if it was put in the current generation
+     */
+    int getAge(int slot) {
+        return generation - generations[slot];
+    }
+
+    long getLong(int slot, int index) {
+        return values[slot * valuesPerSeries + index];
+    }
+
+    void setLong(int slot, int index, long value) {
+        values[slot * valuesPerSeries + index] = value;
+    }
+
+    double getDouble(int slot, int index) {
+        return Double.longBitsToDouble(values[slot * valuesPerSeries + index]);
+    }
+
+    void setDouble(int slot, int index, double value) {
+        values[slot * valuesPerSeries + index] = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Removes the series that have not been put in the last few generations.
+     *
+     * @param maxAge series that were last put more than this many generations ago are removed - 0 removes all
+     *               series that were not put in the current generation
+     * @param listener told about each series before it is removed, or null
+     * @return the number of series removed
+     */
+    int sweep(int maxAge, RemovalListener listener) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < families.length) {
+            if (generations[slot] != FREE && generation - generations[slot] > maxAge) {
+                if (listener != null) {
+                    listener.removed(slot);
+                }
+                remove(slot);
+                removed++;
+                // a series after the slot may have been moved into it, so look at the slot again
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes all series.
+     */
+    void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    // linear probing without tombstones - the series after the removed one are moved back to fill the hole
+    private void remove(int slot) {
+        int mask = families.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; generations[next] != FREE; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            // the series can fill the hole unless its home slot is cyclically between the hole and it
+            boolean canMove = (hole <= next) ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (canMove) {
+                move(next, hole);
+                hole = next;
+            }
+        }
+        families[hole] = null;
+        labels[hole] = null;
+        generations[hole] = FREE;
+        Arrays.fill(values, hole * valuesPerSeries, (hole + 1) * valuesPerSeries, 0L);
+        size--;
+    }
+
+    private void move(int from, int to) {
+        families[to] = families[from];
+        labels[to] = labels[from];
+        hashes[to] = hashes[from];
+        generations[to] = generations[from];
+        System.arraycopy(values, from * valuesPerSeries, values, to * valuesPerSeries, valuesPerSeries);
+    }
+
+    private void grow() {
+        String[] oldFamilies = families;
+        Labels[] oldLabels = labels;
+        int[] oldHashes = hashes;
+        int[] oldGenerations = generations;
+        long[] oldValues = values;
+        allocate(oldFamilies.length * 2);
+
+        int mask = families.length - 1;
+        for (int i = 0; i < oldFamilies.length; i++) {
+            if (oldGenerations[i] == FREE) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (generations[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            families[slot] = oldFamilies[i];
+            labels[slot] = oldLabels[i];
+            hashes[slot] = oldHashes[i];
+            generations[slot] = oldGenerations[i];
+            System.arraycopy(oldValues, i * valuesPerSeries, values, slot * valuesPerSeries, valuesPerSeries);
+        }
+    }
+
+    private static int hash(String family, Labels labelSet) {
+        int h = family.hashCode() * 31 + labelSet.hashCode();
+        h *= 0x9E3779B9; // spread the bits so that similar hashes don't crowd together
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,26 +1,110 @@
 package prometheus;
 
+import java.nio.charset.StandardCharsets;
+
 public class Util {
 
+    /**
+     * The most bytes {@link #writeDouble(double, byte[], int)} writes for one value.
+     */
+    public static final int MAX_DOUBLE_LENGTH = DoubleFormatter.MAX_LENGTH;
+
+    /**
+     * Converts a Prometheus sample value (including "NaN", "+Inf" and "-Inf") to a double.
+     *
+     * @param valueString the value
+     * @return the double value
+     * @throws NumberFormatException if the string is not a number
+     */
     public static double convertStringToDouble(String valueString) {
-        double doubleValue;
-        if (valueString.equalsIgnoreCase("NaN")) {
-            doubleValue = Double.NaN;
-        } else if (valueString.equalsIgnoreCase("+Inf")) {
-            doubleValue = Double.POSITIVE_INFINITY;
-        } else if (valueString.equalsIgnoreCase("-Inf")) {
-            doubleValue = Double.NEGATIVE_INFINITY;
-        } else {
-            doubleValue = Double.valueOf(valueString).doubleValue();
-        }
-        return doubleValue;
+        return FastDoubleParser.parseDouble(valueString, 0, valueString.length());
+    }
+
+    /**
+     * Like {@link #convertStringToDouble(String)} but converts a range of characters without needing a string.
+     *
+     * @param chars contains the value
+     * @param start index of the first character of the value
+     * @param end index just past the last character of the value
+     * @return the double value
+     * @throws NumberFormatException if the characters are not a number
+     */
+    public static double convertToDouble(CharSequence chars, int start, int end) {
+        return FastDoubleParser.parseDouble(chars, start, end);
+    }
+
+    /**
+     * Like {@link #convertStringToDouble(String)} but converts a range of UTF-8 bytes without needing a string.
+     *
+     * @param bytes contains the value
+     * @param start index of the first byte of the value
+     * @param end index just past the last byte of the value
+     * @return the double value
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    public static double convertToDouble(byte[] bytes, int start, int end) {
+        return FastDoubleParser.parseDouble(bytes, start, end);
+    }
+
+    /**
+     * Checks that a value can be converted by {@link #convertStringToDouble(String)}. Use this rather than
+     * catching the NumberFormatException where values that are not numbers are expected, since creating the
+     * exception is far more expensive than converting the value.
+     *
+     * @param valueString the value, may be null
+     * @return true if the value is a number (including "NaN", "+Inf" and "-Inf")
+     */
+    public static boolean isDouble(String valueString) {
+        return valueString != null && FastDoubleParser.isNumber(valueString, 0, valueString.length());
+    }
+
+    /**
+     * Like {@link #isDouble(String)} but checks a range of UTF-8 bytes.
+     *
+     * @param bytes contains the value
+     * @param start index of the first byte of the value
+     * @param end index just past the last byte of the value
+     * @return true if the value is a number
+     */
+    public static boolean isDouble(byte[] bytes, int start, int end) {
+        return FastDoubleParser.isNumber(bytes, start, end);
     }
 
+    /**
+     * Converts a double to the shortest decimal string that converts back to exactly the same double.
+     * Integral values have no fraction ("42" rather than "42.0"), very large and very small values use
+     * scientific notation ("1.5e-10"), and as the Prometheus spec requires, infinities are "+Inf" and "-Inf".
+     *
+     * @param value the value
+     * @return the value as a string
+     */
     public static String convertDoubleToString(double value) {
-        // Prometheus spec requires positive infinity to be denoted as "+Inf" and negative infinity as "-Inf"
-        if (Double.isInfinite(value)) {
-            return (value < 0.0) ? "-Inf" : "+Inf";
-        }
-        return String.format("%f", value);
+        byte[] buffer = new byte[DoubleFormatter.MAX_LENGTH];
+        int length = DoubleFormatter.format(value, buffer, 0);
+        return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Like {@link #convertDoubleToString(double)} but appends the characters without creating a string.
+     *
+     * @param str where the value is appended to
+     * @param value the value
+     * @return the given string builder
+     */
+    public static StringBuilder appendDouble(StringBuilder str, double value) {
+        return DoubleFormatter.format(value, str);
+    }
+
+    /**
+     * Like {@link #convertDoubleToString(double)} but writes the characters as ASCII bytes without creating a
+     * string. No value needs more than {@link #MAX_DOUBLE_LENGTH} bytes.
+     *
+     * @param value the value
+     * @param buffer where the bytes are written to
+     * @param offset where in the buffer the first byte is written
+     * @return the offset just past the last byte written
+     */
+    public static int writeDouble(double value, byte[] buffer, int offset) {
+        return DoubleFormatter.format(value, buffer, offset);
     }
 }
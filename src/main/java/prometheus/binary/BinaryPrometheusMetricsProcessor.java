@@ -1,15 +1,17 @@
 package prometheus.binary;
 
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
 
+import io.prometheus.client.Metrics;
+import io.prometheus.client.Metrics.Bucket;
+import io.prometheus.client.Metrics.Histogram;
 import io.prometheus.client.Metrics.LabelPair;
 import io.prometheus.client.Metrics.Metric;
 import io.prometheus.client.Metrics.MetricFamily;
 import io.prometheus.client.Metrics.Quantile;
 import io.prometheus.client.Metrics.Summary;
 import prometheus.PrometheusMetricsProcessor;
+import prometheus.types.Labels;
 import prometheus.types.MetricType;
 import prometheus.walkers.PrometheusMetricsWalker;
 
@@ -29,7 +31,7 @@ public class BinaryPrometheusMetricsProcessor extends PrometheusMetricsProcessor
     @Override
     protected prometheus.types.MetricFamily convert(MetricFamily family) {
         prometheus.types.MetricFamily.Builder convertedFamilyBuilder;
-        MetricType convertedFamilyType = MetricType.valueOf(family.getType().name());
+        MetricType convertedFamilyType = convertType(family.getType());
 
         convertedFamilyBuilder = new prometheus.types.MetricFamily.Builder();
         convertedFamilyBuilder.setName(family.getName());
@@ -44,51 +46,72 @@ public class BinaryPrometheusMetricsProcessor extends PrometheusMetricsProcessor
                             .setValue(metric.getCounter().getValue());
                     break;
                 case GAUGE:
+                    // untyped metrics are treated as gauges, as the text parser does with metrics without a TYPE
+                    double value = (family.getType() == Metrics.MetricType.UNTYPED)
+                            ? metric.getUntyped().getValue()
+                            : metric.getGauge().getValue();
                     convertedMetricBuilder = new prometheus.types.Gauge.Builder()
-                            .setValue(metric.getGauge().getValue());
+                            .setValue(value);
                     break;
                 case SUMMARY:
                     Summary summary = metric.getSummary();
-                    List<Quantile> pqList = summary.getQuantileList();
-                    List<prometheus.types.Summary.Quantile> hqList;
-                    hqList = new ArrayList<>(pqList.size());
-                    for (Quantile pq : pqList) {
-                        prometheus.types.Summary.Quantile hq;
-                        hq = new prometheus.types.Summary.Quantile(
-                                pq.getQuantile(), pq.getValue());
-                        hqList.add(hq);
+                    prometheus.types.Summary.Builder summaryBuilder = new prometheus.types.Summary.Builder()
+                            .setSampleCount(summary.getSampleCount())
+                            .setSampleSum(summary.getSampleSum());
+                    for (Quantile pq : summary.getQuantileList()) {
+                        summaryBuilder.addQuantile(pq.getQuantile(), pq.getValue());
                     }
-                    convertedMetricBuilder = new prometheus.types.Summary.Builder()
-                            .setSampleCount(metric.getSummary().getSampleCount())
-                            .setSampleSum(metric.getSummary().getSampleSum())
-                            .addQuantiles(hqList);
+                    convertedMetricBuilder = summaryBuilder;
                     break;
                 case HISTOGRAM:
-                    /* NO HISTOGRAM SUPPORT IN PROMETHEUS JAVA MODEL API 0.0.2. Uncomment when 0.0.3 is released
                     Histogram histo = metric.getHistogram();
-                    List<Bucket> pbList = histo.getBucketList();
-                    List<prometheus.types.Histogram.Bucket> hbList;
-                    hbList = new ArrayList<>(pbList.size());
-                    for (Bucket pb : pbList) {
-                        prometheus.types.Histogram.Bucket hb;
-                        hb = new prometheus.types.Histogram.Bucket(pb.getUpperBound(),
-                                pb.getCumulativeCount());
-                        hbList.add(hb);
+                    prometheus.types.Histogram.Builder histogramBuilder = new prometheus.types.Histogram.Builder()
+                            .setSampleCount(histo.hasSampleCountFloat() ? (long) histo.getSampleCountFloat()
+                                    : histo.getSampleCount())
+                            .setSampleSum(histo.getSampleSum());
+                    for (Bucket pb : histo.getBucketList()) {
+                        // float histograms give their counts as doubles instead
+                        histogramBuilder.addBucket(pb.getUpperBound(),
+                                pb.hasCumulativeCountFloat() ? (long) pb.getCumulativeCountFloat()
+                                        : pb.getCumulativeCount());
                     }
-                    convertedMetricBuilder = new prometheus.types.Histogram.Builder()
-                            .setSampleCount(metric.getHistogram().getSampleCount())
-                            .setSampleSum(metric.getHistogram().getSampleSum())
-                            .addBuckets(hbList);
-                    */
+                    convertedMetricBuilder = histogramBuilder;
                     break;
             }
             convertedMetricBuilder.setName(family.getName());
-            for (LabelPair labelPair : metric.getLabelList()) {
-                convertedMetricBuilder.addLabel(labelPair.getName(), labelPair.getValue());
+            if (metric.hasTimestampMs()) {
+                convertedMetricBuilder.setTimestamp(metric.getTimestampMs());
             }
+            int labelCount = metric.getLabelCount();
+            String[] names = new String[labelCount];
+            String[] values = new String[labelCount];
+            for (int i = 0; i < labelCount; i++) {
+                LabelPair labelPair = metric.getLabel(i);
+                names[i] = labelPair.getName();
+                values[i] = labelPair.getValue();
+            }
+            Labels labels = Labels.of(names, values, labelCount);
+            convertedMetricBuilder.setLabels((getLabelInterner() != null) ? getLabelInterner().intern(labels) : labels);
             convertedFamilyBuilder.addMetric(convertedMetricBuilder.build());
         }
 
         return convertedFamilyBuilder.build();
     }
+
+    static MetricType convertType(Metrics.MetricType type) {
+        switch (type) {
+            case COUNTER:
+                return MetricType.COUNTER;
+            case GAUGE:
+            case UNTYPED:
+                return MetricType.GAUGE;
+            case SUMMARY:
+                return MetricType.SUMMARY;
+            case HISTOGRAM:
+            case GAUGE_HISTOGRAM:
+                return MetricType.HISTOGRAM;
+            default:
+                throw new IllegalArgumentException("Unsupported metric type: " + type);
+        }
+    }
 }
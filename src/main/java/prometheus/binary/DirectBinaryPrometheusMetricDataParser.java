@@ -0,0 +1,364 @@
+package prometheus.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import io.prometheus.client.Metrics;
+import prometheus.PrometheusMetricDataParser;
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.LabelInterner;
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+import prometheus.types.Summary;
+
+/**
+ * Parses Prometheus binary metric data straight into {@link MetricFamily} objects.
+ *
+ * Unlike {@link BinaryPrometheusMetricDataParser}, this does not build the generated protocol buffer
+ * objects first only for {@link BinaryPrometheusMetricsProcessor#convert(Metrics.MetricFamily)} to copy
+ * them again - the wire format is decoded field by field with a {@link CodedInputStream} and each metric
+ * is built as soon as it has been read. The results are the same as those of the generated code.
+ */
+public class DirectBinaryPrometheusMetricDataParser extends PrometheusMetricDataParser<MetricFamily> {
+
+    // MetricFamily
+    private static final int FAMILY_NAME = tag(Metrics.MetricFamily.NAME_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int FAMILY_HELP = tag(Metrics.MetricFamily.HELP_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int FAMILY_TYPE = tag(Metrics.MetricFamily.TYPE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_VARINT);
+    private static final int FAMILY_METRIC = tag(Metrics.MetricFamily.METRIC_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
+    // Metric
+    private static final int METRIC_LABEL = tag(Metrics.Metric.LABEL_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_GAUGE = tag(Metrics.Metric.GAUGE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_COUNTER = tag(Metrics.Metric.COUNTER_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_SUMMARY = tag(Metrics.Metric.SUMMARY_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_UNTYPED = tag(Metrics.Metric.UNTYPED_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_HISTOGRAM = tag(Metrics.Metric.HISTOGRAM_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int METRIC_TIMESTAMP_MS = tag(Metrics.Metric.TIMESTAMP_MS_FIELD_NUMBER,
+            WireFormat.WIRETYPE_VARINT);
+
+    // LabelPair
+    private static final int LABEL_NAME = tag(Metrics.LabelPair.NAME_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int LABEL_VALUE = tag(Metrics.LabelPair.VALUE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
+    // Gauge, Counter and Untyped all have their value in the same field
+    private static final int VALUE = tag(Metrics.Gauge.VALUE_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED64);
+
+    // Summary
+    private static final int SUMMARY_SAMPLE_COUNT = tag(Metrics.Summary.SAMPLE_COUNT_FIELD_NUMBER,
+            WireFormat.WIRETYPE_VARINT);
+    private static final int SUMMARY_SAMPLE_SUM = tag(Metrics.Summary.SAMPLE_SUM_FIELD_NUMBER,
+            WireFormat.WIRETYPE_FIXED64);
+    private static final int SUMMARY_QUANTILE = tag(Metrics.Summary.QUANTILE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int QUANTILE_QUANTILE = tag(Metrics.Quantile.QUANTILE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_FIXED64);
+    private static final int QUANTILE_VALUE = tag(Metrics.Quantile.VALUE_FIELD_NUMBER,
+            WireFormat.WIRETYPE_FIXED64);
+
+    // Histogram
+    private static final int HISTOGRAM_SAMPLE_COUNT = tag(Metrics.Histogram.SAMPLE_COUNT_FIELD_NUMBER,
+            WireFormat.WIRETYPE_VARINT);
+    private static final int HISTOGRAM_SAMPLE_COUNT_FLOAT = tag(
+            Metrics.Histogram.SAMPLE_COUNT_FLOAT_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED64);
+    private static final int HISTOGRAM_SAMPLE_SUM = tag(Metrics.Histogram.SAMPLE_SUM_FIELD_NUMBER,
+            WireFormat.WIRETYPE_FIXED64);
+    private static final int HISTOGRAM_BUCKET = tag(Metrics.Histogram.BUCKET_FIELD_NUMBER,
+            WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int BUCKET_CUMULATIVE_COUNT = tag(Metrics.Bucket.CUMULATIVE_COUNT_FIELD_NUMBER,
+            WireFormat.WIRETYPE_VARINT);
+    private static final int BUCKET_CUMULATIVE_COUNT_FLOAT = tag(
+            Metrics.Bucket.CUMULATIVE_COUNT_FLOAT_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED64);
+    private static final int BUCKET_UPPER_BOUND = tag(Metrics.Bucket.UPPER_BOUND_FIELD_NUMBER,
+            WireFormat.WIRETYPE_FIXED64);
+
+    private CodedInputStream input;
+
+    // the labels of the metric being read
+    private String[] labelNames = new String[8];
+    private String[] labelValues = new String[8];
+    private int labelCount;
+
+    // whether the histogram being read gave its count as a double - like the generated Histogram message, its
+    // histogram fields may be split across several histogram sub-messages, which are merged
+    private boolean sampleCountFloatSeen;
+
+    /**
+     * Provides the input stream where the parser will look for metric data.
+     * NOTE: this object will not own this stream - it will never attempt to close it.
+     *
+     * @param inputStream the stream where the metric data can be found
+     */
+    public DirectBinaryPrometheusMetricDataParser(InputStream inputStream) {
+        super(inputStream);
+    }
+
+    @Override
+    public MetricFamily parse() throws IOException {
+        if (input == null) {
+            input = CodedInputStream.newInstance(getInputStream());
+        }
+        if (input.isAtEnd()) {
+            return null;
+        }
+
+        // the size limit of the coded stream applies to everything it reads, not just a single message
+        input.resetSizeCounter();
+        int limit = input.pushLimit(input.readRawVarint32());
+        MetricFamily family = readMetricFamily();
+        input.popLimit(limit);
+        return family;
+    }
+
+    private MetricFamily readMetricFamily() throws IOException {
+        String name = "";
+        String help = "";
+        Metrics.MetricType type = null;
+        List<Metric> metrics = new ArrayList<>();
+
+        // metrics that come before the name or type of their family - rare, as encoders write fields in order
+        List<byte[]> earlyMetrics = null;
+
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == FAMILY_NAME) {
+                name = input.readString();
+            } else if (tag == FAMILY_HELP) {
+                help = input.readString();
+            } else if (tag == FAMILY_TYPE) {
+                // like the generated code, ignore values this version of the data model doesn't know about
+                Metrics.MetricType knownType = Metrics.MetricType.forNumber(input.readEnum());
+                if (knownType != null) {
+                    type = knownType;
+                }
+            } else if (tag == FAMILY_METRIC) {
+                if (type != null && earlyMetrics == null && !name.isEmpty()) {
+                    int limit = input.pushLimit(input.readRawVarint32());
+                    metrics.add(readMetric(type, name));
+                    input.popLimit(limit);
+                } else {
+                    if (earlyMetrics == null) {
+                        earlyMetrics = new ArrayList<>();
+                    }
+                    earlyMetrics.add(input.readByteArray());
+                }
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+
+        if (type == null) {
+            type = Metrics.MetricType.COUNTER; // the default of the type field
+        }
+
+        if (earlyMetrics != null) {
+            // everything is known now, and no metric has been decoded yet
+            CodedInputStream streamInput = input;
+            try {
+                for (byte[] bytes : earlyMetrics) {
+                    input = CodedInputStream.newInstance(bytes);
+                    metrics.add(readMetric(type, name));
+                }
+            } finally {
+                input = streamInput;
+            }
+        }
+
+        MetricFamily.Builder familyBuilder = new MetricFamily.Builder()
+                .setName(name)
+                .setHelp(help)
+                .setType(BinaryPrometheusMetricsProcessor.convertType(type));
+        for (Metric metric : metrics) {
+            familyBuilder.addMetric(metric);
+        }
+        return familyBuilder.build();
+    }
+
+    // reads a Metric message up to the current limit
+    private Metric readMetric(Metrics.MetricType type, String name) throws IOException {
+        MetricType convertedType = BinaryPrometheusMetricsProcessor.convertType(type);
+        int valueTag = (type == Metrics.MetricType.UNTYPED) ? METRIC_UNTYPED
+                : (type == Metrics.MetricType.GAUGE) ? METRIC_GAUGE : METRIC_COUNTER;
+
+        Metric.Builder<?> builder;
+        switch (convertedType) {
+            case COUNTER:
+                builder = new Counter.Builder().setValue(0);
+                break;
+            case GAUGE:
+                builder = new Gauge.Builder().setValue(0);
+                break;
+            case SUMMARY:
+                builder = new Summary.Builder().setSampleSum(0);
+                break;
+            case HISTOGRAM:
+                builder = new Histogram.Builder().setSampleSum(0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported metric type: " + type);
+        }
+        builder.setName(name);
+
+        labelCount = 0;
+        sampleCountFloatSeen = false;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == METRIC_LABEL) {
+                readLabel();
+            } else if (tag == valueTag
+                    && (convertedType == MetricType.COUNTER || convertedType == MetricType.GAUGE)) {
+                readValue(builder);
+            } else if (tag == METRIC_SUMMARY && convertedType == MetricType.SUMMARY) {
+                readSummary((Summary.Builder) builder);
+            } else if (tag == METRIC_HISTOGRAM && convertedType == MetricType.HISTOGRAM) {
+                readHistogram((Histogram.Builder) builder);
+            } else if (tag == METRIC_TIMESTAMP_MS) {
+                builder.setTimestamp(input.readInt64());
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+
+        Labels labels = Labels.of(labelNames, labelValues, labelCount);
+        LabelInterner interner = getLabelInterner();
+        builder.setLabels((interner != null) ? interner.intern(labels) : labels);
+        return builder.build();
+    }
+
+    private void readLabel() throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        String name = "";
+        String value = "";
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == LABEL_NAME) {
+                name = input.readString();
+            } else if (tag == LABEL_VALUE) {
+                value = input.readString();
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        input.popLimit(limit);
+
+        if (labelCount == labelNames.length) {
+            labelNames = Arrays.copyOf(labelNames, labelCount * 2);
+            labelValues = Arrays.copyOf(labelValues, labelCount * 2);
+        }
+        labelNames[labelCount] = name;
+        labelValues[labelCount] = value;
+        labelCount++;
+    }
+
+    // reads a Gauge, Counter or Untyped message - as with the generated code, a repeated message is merged
+    private void readValue(Metric.Builder<?> builder) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == VALUE) {
+                double value = input.readDouble();
+                if (builder instanceof Counter.Builder) {
+                    ((Counter.Builder) builder).setValue(value);
+                } else {
+                    ((Gauge.Builder) builder).setValue(value);
+                }
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        input.popLimit(limit);
+    }
+
+    private void readSummary(Summary.Builder builder) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == SUMMARY_SAMPLE_COUNT) {
+                builder.setSampleCount(input.readUInt64());
+            } else if (tag == SUMMARY_SAMPLE_SUM) {
+                builder.setSampleSum(input.readDouble());
+            } else if (tag == SUMMARY_QUANTILE) {
+                int quantileLimit = input.pushLimit(input.readRawVarint32());
+                double quantile = 0;
+                double value = 0;
+                for (int quantileTag = input.readTag(); quantileTag != 0; quantileTag = input.readTag()) {
+                    if (quantileTag == QUANTILE_QUANTILE) {
+                        quantile = input.readDouble();
+                    } else if (quantileTag == QUANTILE_VALUE) {
+                        value = input.readDouble();
+                    } else if (!input.skipField(quantileTag)) {
+                        break;
+                    }
+                }
+                input.popLimit(quantileLimit);
+                builder.addQuantile(quantile, value);
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        input.popLimit(limit);
+    }
+
+    private void readHistogram(Histogram.Builder builder) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == HISTOGRAM_SAMPLE_COUNT) {
+                long sampleCount = input.readUInt64();
+                if (!sampleCountFloatSeen) {
+                    builder.setSampleCount(sampleCount);
+                }
+            } else if (tag == HISTOGRAM_SAMPLE_COUNT_FLOAT) {
+                // float histograms give their counts as doubles instead, which take precedence
+                sampleCountFloatSeen = true;
+                builder.setSampleCount((long) input.readDouble());
+            } else if (tag == HISTOGRAM_SAMPLE_SUM) {
+                builder.setSampleSum(input.readDouble());
+            } else if (tag == HISTOGRAM_BUCKET) {
+                int bucketLimit = input.pushLimit(input.readRawVarint32());
+                long cumulativeCount = 0;
+                double cumulativeCountFloat = 0;
+                boolean cumulativeCountFloatSeen = false;
+                double upperBound = 0;
+                for (int bucketTag = input.readTag(); bucketTag != 0; bucketTag = input.readTag()) {
+                    if (bucketTag == BUCKET_CUMULATIVE_COUNT) {
+                        cumulativeCount = input.readUInt64();
+                    } else if (bucketTag == BUCKET_CUMULATIVE_COUNT_FLOAT) {
+                        cumulativeCountFloat = input.readDouble();
+                        cumulativeCountFloatSeen = true;
+                    } else if (bucketTag == BUCKET_UPPER_BOUND) {
+                        upperBound = input.readDouble();
+                    } else if (!input.skipField(bucketTag)) {
+                        break;
+                    }
+                }
+                input.popLimit(bucketLimit);
+                builder.addBucket(upperBound,
+                        cumulativeCountFloatSeen ? (long) cumulativeCountFloat : cumulativeCount);
+            } else if (!input.skipField(tag)) {
+                break;
+            }
+        }
+        input.popLimit(limit);
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return (fieldNumber << 3) | wireType;
+    }
+}
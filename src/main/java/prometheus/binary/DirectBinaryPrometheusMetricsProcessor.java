@@ -0,0 +1,29 @@
+package prometheus.binary;
+
+import java.io.InputStream;
+
+import prometheus.PrometheusMetricsProcessor;
+import prometheus.types.MetricFamily;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * This will iterate over a list of Prometheus metrics that are given as binary protocol buffer data,
+ * decoding them straight into the common metric types.
+ *
+ * @see DirectBinaryPrometheusMetricDataParser
+ */
+public class DirectBinaryPrometheusMetricsProcessor extends PrometheusMetricsProcessor<MetricFamily> {
+    public DirectBinaryPrometheusMetricsProcessor(InputStream inputStream, PrometheusMetricsWalker theWalker) {
+        super(inputStream, theWalker);
+    }
+
+    @Override
+    public DirectBinaryPrometheusMetricDataParser createPrometheusMetricDataParser() {
+        return new DirectBinaryPrometheusMetricDataParser(getInputStream());
+    }
+
+    @Override
+    protected MetricFamily convert(MetricFamily metricFamily) {
+        return metricFamily; // no conversion necessary - our parser already uses the common API
+    }
+}
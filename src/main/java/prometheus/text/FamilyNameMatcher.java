@@ -0,0 +1,111 @@
+package prometheus.text;
+
+import prometheus.types.MetricType;
+
+/**
+ * Tells if the samples of a sample line belong to the metric family that is being parsed, and if so, which of
+ * the suffixes the samples of the family's type can have the sample name has. The sample name is compared to the
+ * family name and the suffix in place, so no names are built to compare it to.
+ *
+ * The matcher is reused for every metric family - {@link #reset(String, MetricType)} it when a new one starts.
+ */
+final class FamilyNameMatcher {
+
+    /**
+     * What follows the family name in a sample name.
+     */
+    enum Suffix {
+        NONE(""), //
+        COUNT("_count"), //
+        SUM("_sum"), //
+        BUCKET("_bucket");
+
+        private final String text;
+
+        private Suffix(String text) {
+            this.text = text;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        private int bit() {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final int ALL = Suffix.NONE.bit() | Suffix.COUNT.bit() | Suffix.SUM.bit() | Suffix.BUCKET.bit();
+
+    private String familyName = "";
+    private int allowed; // a bit for each suffix that samples of the family can have
+
+    /**
+     * Starts matching the samples of a new metric family.
+     *
+     * @param familyName the name of the metric family
+     * @param type the type of the metric family, which decides which suffixes are allowed. If null, samples with
+     *             any of the suffixes match.
+     */
+    void reset(String familyName, MetricType type) {
+        this.familyName = familyName;
+        if (type == null) {
+            allowed = ALL;
+            return;
+        }
+        switch (type) {
+            case COUNTER:
+            case GAUGE:
+                allowed = Suffix.NONE.bit();
+                break;
+            case SUMMARY:
+                allowed = Suffix.NONE.bit() | Suffix.COUNT.bit() | Suffix.SUM.bit();
+                break;
+            case HISTOGRAM:
+                allowed = Suffix.BUCKET.bit() | Suffix.COUNT.bit() | Suffix.SUM.bit();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    /**
+     * Stops matching - no sample names match until the matcher is {@link #reset(String, MetricType) reset}.
+     */
+    void clear() {
+        familyName = "";
+        allowed = 0;
+    }
+
+    /**
+     * @param sampleName the metric name of a sample
+     * @return the suffix the sample name has after the family name, or null if the sample does not belong to the
+     *         metric family
+     */
+    Suffix match(String sampleName) {
+        if (allowed == 0 || !sampleName.startsWith(familyName)) {
+            return null;
+        }
+        Suffix suffix;
+        switch (sampleName.length() - familyName.length()) {
+            case 0:
+                suffix = Suffix.NONE;
+                break;
+            case 4:
+                suffix = Suffix.SUM;
+                break;
+            case 6:
+                suffix = Suffix.COUNT;
+                break;
+            case 7:
+                suffix = Suffix.BUCKET;
+                break;
+            default:
+                return null;
+        }
+        if ((allowed & suffix.bit()) == 0 || !sampleName.endsWith(suffix.text)) {
+            return null;
+        }
+        return suffix;
+    }
+}
@@ -0,0 +1,33 @@
+package prometheus.text;
+
+/**
+ * A read-only view of the labels of a single sample as they appear in the text data.
+ *
+ * Views are reused by the parser - a view is only valid during the callback it is passed to.
+ * Copy out anything that needs to be kept.
+ */
+public interface LabelView {
+
+    /**
+     * @return the number of labels
+     */
+    int getLabelCount();
+
+    /**
+     * @param index index of the label, where 0 is the first one
+     * @return the name of the label
+     */
+    String getLabelName(int index);
+
+    /**
+     * @param index index of the label, where 0 is the first one
+     * @return the value of the label
+     */
+    String getLabelValue(int index);
+
+    /**
+     * @param labelName the name of the label to look for
+     * @return the value of the named label, or null if there is no label with that name
+     */
+    String getLabelValue(String labelName);
+}
@@ -0,0 +1,202 @@
+package prometheus.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads newline-terminated lines out of an input stream in large chunks (or out of data already in memory).
+ *
+ * A single growable byte buffer is reused for all lines. After a successful call to {@link #readLine()}
+ * the current line is found in {@link #getBuffer()} between {@link #getLineStart()} (inclusive) and
+ * {@link #getLineEnd()} (exclusive) - the terminating newline is not part of the line. That range is only
+ * valid until the next call to {@link #readLine()}.
+ *
+ * Text is only decoded when asked for via {@link #getLineAsString()} and lines that are pure ASCII
+ * (the vast majority of Prometheus text data) skip the UTF-8 decoder altogether.
+ *
+ * NOTE: this object will not own the stream - it will never attempt to close it. Because it reads ahead,
+ * nothing else should read from the stream once this object has started reading from it.
+ */
+public class LineReader {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private byte[] buffer;
+    private int position; // where the next unread line starts
+    private int limit; // end of the valid data in the buffer
+    private int scanned; // we know there is no newline between position and here
+    private int lineStart;
+    private int lineEnd;
+    private boolean eof;
+    private long lineCount;
+
+    public LineReader(InputStream inputStream) {
+        this(inputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param inputStream the stream where the lines are read from
+     * @param bufferSize the initial size of the buffer. The buffer will grow if a line is larger than this.
+     */
+    public LineReader(InputStream inputStream, int bufferSize) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("Stream must not be null");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.inputStream = inputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads lines out of data that is already in memory. The lines are read straight out of the given array -
+     * nothing is copied.
+     *
+     * @param data the data to read lines from
+     * @param start index of the first byte of the data
+     * @param end index just past the last byte of the data
+     */
+    public LineReader(byte[] data, int start, int end) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data must not be null");
+        }
+        if (start < 0 || end > data.length || start > end) {
+            throw new IllegalArgumentException("Invalid data range");
+        }
+        this.inputStream = null;
+        this.buffer = data;
+        this.position = start;
+        this.limit = end;
+        this.scanned = start;
+        this.lineStart = start;
+        this.lineEnd = start;
+        this.eof = true; // there is nothing more to read beyond the data we were given
+    }
+
+    /**
+     * Advances to the next line in the stream.
+     *
+     * @return true if a line was read, false if the end of the stream has been reached
+     * @throws IOException if failed to read from the stream
+     */
+    public boolean readLine() throws IOException {
+        while (true) {
+            // Prometheus end of line character is a newline
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    lineStart = position;
+                    lineEnd = i;
+                    position = i + 1;
+                    scanned = position;
+                    lineCount++;
+                    return true;
+                }
+            }
+            scanned = limit;
+
+            if (eof) {
+                if (position < limit) {
+                    // the last line in the stream was not terminated with a newline
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    lineCount++;
+                    return true;
+                }
+                return false;
+            }
+
+            fill();
+        }
+    }
+
+    /**
+     * Pushes back the current line so the next call to {@link #readLine()} will return it again.
+     */
+    public void unreadLine() {
+        if (position != lineStart) {
+            lineCount--;
+        }
+        position = lineStart;
+        scanned = lineStart;
+    }
+
+    /**
+     * @return the number of lines read so far - a line that is read again after {@link #unreadLine()} is
+     *         only counted once
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the buffer that contains the current line. Do not hold onto this - its content changes
+     *         and the buffer itself may be replaced when the next line is read.
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index in the {@link #getBuffer() buffer} of the first byte of the current line
+     */
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return the index in the {@link #getBuffer() buffer} just past the last byte of the current line
+     */
+    public int getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @return the current line decoded as a string
+     */
+    public String getLineAsString() {
+        return decode(buffer, lineStart, lineEnd);
+    }
+
+    /**
+     * Decodes the given range of UTF-8 bytes. ASCII data does not need to go through the UTF-8 decoder.
+     *
+     * @param bytes the UTF-8 data
+     * @param start index of the first byte to decode
+     * @param end index just past the last byte to decode
+     * @return the decoded string
+     */
+    static String decode(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private void fill() throws IOException {
+        // move the partial line we have so far to the front of the buffer to make room for more data
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scanned -= position;
+            position = 0;
+        }
+
+        // the partial line takes up the entire buffer; we need a bigger buffer
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = inputStream.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
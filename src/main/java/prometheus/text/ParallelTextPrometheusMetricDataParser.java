@@ -0,0 +1,234 @@
+package prometheus.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import prometheus.PrometheusMetricDataParser;
+import prometheus.types.MetricFamily;
+
+/**
+ * Parses Prometheus text metric data using multiple threads.
+ *
+ * All the data is first read from the input stream into memory. The data is then split into segments
+ * where each segment starts with a HELP or TYPE line that begins a new metric family, and the segments are
+ * parsed in parallel on a fork/join pool. Regardless of which segment finishes first, {@link #parse()}
+ * returns the metric families in the same order as they appear in the data - the same order a
+ * {@link TextPrometheusMetricDataParser} would return them.
+ *
+ * This is only worth it for large amounts of data since all the data must be held in memory.
+ */
+public class ParallelTextPrometheusMetricDataParser extends PrometheusMetricDataParser<MetricFamily> {
+    /**
+     * Metric families are grouped into segments of at least this many bytes so the cost of scheduling
+     * a segment on the pool does not outweigh the cost of parsing it.
+     */
+    public static final int DEFAULT_MINIMUM_SEGMENT_SIZE = 64 * 1024;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8; // some JVMs can't make arrays any larger
+
+    private final ForkJoinPool pool;
+    private final int minimumSegmentSize;
+
+    private List<ForkJoinTask<List<MetricFamily>>> segments; // null until the data has been read
+    private int nextSegment;
+    private List<MetricFamily> segmentFamilies;
+    private int nextFamily;
+    private long lineCount;
+
+    /**
+     * Provides the input stream where the parser will look for metric data.
+     * NOTE: this object will not own this stream - it should never attempt to close it.
+     *
+     * @param inputStream the stream where the metric data can be found
+     * @param pool the pool where the data is parsed
+     */
+    public ParallelTextPrometheusMetricDataParser(InputStream inputStream, ForkJoinPool pool) {
+        this(inputStream, pool, DEFAULT_MINIMUM_SEGMENT_SIZE);
+    }
+
+    /**
+     * Provides the input stream where the parser will look for metric data.
+     * NOTE: this object will not own this stream - it should never attempt to close it.
+     *
+     * @param inputStream the stream where the metric data can be found
+     * @param pool the pool where the data is parsed
+     * @param minimumSegmentSize the smallest amount of data, in bytes, that is parsed as a single unit of work
+     */
+    public ParallelTextPrometheusMetricDataParser(InputStream inputStream, ForkJoinPool pool,
+            int minimumSegmentSize) {
+        super(inputStream);
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+        this.minimumSegmentSize = minimumSegmentSize;
+    }
+
+    @Override
+    public MetricFamily parse() throws IOException {
+        if (segments == null) {
+            readAndSubmitSegments();
+        }
+
+        while (segmentFamilies == null || nextFamily == segmentFamilies.size()) {
+            if (nextSegment == segments.size()) {
+                return null;
+            }
+            segmentFamilies = join(segments.get(nextSegment));
+            segments.set(nextSegment++, null); // we no longer need it
+            nextFamily = 0;
+        }
+
+        return segmentFamilies.get(nextFamily++);
+    }
+
+    @Override
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    private void readAndSubmitSegments() throws IOException {
+        segments = new ArrayList<>();
+
+        // read all the data into memory - if the stream knows how much data there is (as it does for files),
+        // the buffer is made big enough up front, with a byte to spare to see the end of the stream
+        InputStream inputStream = getInputStream();
+        int available = inputStream.available();
+        byte[] data = new byte[(available < MAX_ARRAY_SIZE)
+                ? Math.max(LineReader.DEFAULT_BUFFER_SIZE, available + 1) : LineReader.DEFAULT_BUFFER_SIZE];
+        int length = 0;
+        for (int read = 0; read >= 0; read = inputStream.read(data, length, data.length - length)) {
+            length += read;
+            if (length == data.length) {
+                int size = grownSize(data.length);
+                if (size < 0) {
+                    if (inputStream.read() < 0) {
+                        break; // the data just fits
+                    }
+                    throw new IOException("The metric data is too large to be parsed in parallel - it is more than "
+                            + MAX_ARRAY_SIZE + " bytes");
+                }
+                data = Arrays.copyOf(data, size);
+            }
+        }
+
+        // split the data on the lines where the text parser would start a new metric family
+        int segmentStart = 0;
+        String familyName = null;
+        LineReader lineReader = new LineReader(data, 0, length);
+        while (lineReader.readLine()) {
+            String lineFamilyName = getFamilyName(data, lineReader.getLineStart(), lineReader.getLineEnd());
+            if (lineFamilyName != null && !lineFamilyName.equals(familyName)) {
+                if (familyName != null && lineReader.getLineStart() - segmentStart >= minimumSegmentSize) {
+                    submitSegment(data, segmentStart, lineReader.getLineStart());
+                    segmentStart = lineReader.getLineStart();
+                }
+                familyName = lineFamilyName;
+            }
+        }
+        lineCount = lineReader.getLineCount();
+        if (segmentStart < length) {
+            submitSegment(data, segmentStart, length);
+        }
+    }
+
+    /**
+     * @param size the size of a full buffer
+     * @return the size to grow the buffer to, or -1 if it can't be grown any further
+     */
+    static int grownSize(int size) {
+        if (size >= MAX_ARRAY_SIZE) {
+            return -1;
+        }
+        return (int) Math.min(size * 2L, MAX_ARRAY_SIZE);
+    }
+
+    private void submitSegment(final byte[] data, final int start, final int end) {
+        segments.add(pool.submit(new Callable<List<MetricFamily>>() {
+            @Override
+            public List<MetricFamily> call() throws IOException {
+                List<MetricFamily> families = new ArrayList<>();
+                TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(data, start, end);
+                parser.setLabelInterner(getLabelInterner());
+                parser.setParseMode(getParseMode());
+                parser.setParseErrors(getParseErrors()); // the counters can be shared by the segments
+                for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+                    families.add(family);
+                }
+                return families;
+            }
+        }));
+    }
+
+    private List<MetricFamily> join(ForkJoinTask<List<MetricFamily>> segment) throws IOException {
+        try {
+            return segment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the metric data to be parsed");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException("Failed to parse the metric data", e.getCause());
+        }
+    }
+
+    /**
+     * If the given line is a HELP or TYPE line, this returns the name of the metric family it describes.
+     * This must recognize these lines exactly like {@link TextPrometheusMetricDataParser} does.
+     *
+     * @return the metric family name, or null if the line is not a HELP or TYPE line
+     */
+    private String getFamilyName(byte[] line, int start, int end) {
+        // the parser trims the line first
+        while (start < end && (line[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (line[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end || line[start] != '#') {
+            return null;
+        }
+
+        // the line is split on spaces and tabs - "#", followed by "HELP" or "TYPE", followed by the name
+        int keywordStart = skipWhitespace(line, skipToken(line, start, end), end);
+        int keywordEnd = skipToken(line, keywordStart, end);
+        if (keywordEnd - keywordStart != 4 || !(isKeyword(line, keywordStart, 'H', 'E', 'L', 'P')
+                || isKeyword(line, keywordStart, 'T', 'Y', 'P', 'E'))) {
+            return null;
+        }
+        int nameStart = skipWhitespace(line, keywordEnd, end);
+        int nameEnd = skipToken(line, nameStart, end);
+        return (nameStart == nameEnd) ? null : LineReader.decode(line, nameStart, nameEnd);
+    }
+
+    private static boolean isKeyword(byte[] line, int start, char c0, char c1, char c2, char c3) {
+        return line[start] == c0 && line[start + 1] == c1 && line[start + 2] == c2 && line[start + 3] == c3;
+    }
+
+    private static int skipToken(byte[] line, int index, int end) {
+        while (index < end && line[index] != ' ' && line[index] != '\t') {
+            index++;
+        }
+        return index;
+    }
+
+    private static int skipWhitespace(byte[] line, int index, int end) {
+        while (index < end && (line[index] == ' ' || line[index] == '\t')) {
+            index++;
+        }
+        return index;
+    }
+}
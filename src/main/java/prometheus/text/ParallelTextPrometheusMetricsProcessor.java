@@ -0,0 +1,39 @@
+package prometheus.text;
+
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+
+import prometheus.PrometheusMetricsProcessor;
+import prometheus.types.MetricFamily;
+import prometheus.walkers.PrometheusMetricsWalker;
+
+/**
+ * This will iterate over a list of Prometheus metrics that are given as text data, parsing the text data
+ * in parallel. The walker is still notified of the metric families one at a time and in the order they
+ * appear in the text data.
+ *
+ * @see ParallelTextPrometheusMetricDataParser
+ */
+public class ParallelTextPrometheusMetricsProcessor extends PrometheusMetricsProcessor<MetricFamily> {
+    private final ForkJoinPool pool;
+
+    public ParallelTextPrometheusMetricsProcessor(InputStream inputStream, PrometheusMetricsWalker theWalker,
+            ForkJoinPool pool) {
+        super(inputStream, theWalker);
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public ParallelTextPrometheusMetricDataParser createPrometheusMetricDataParser() {
+        return new ParallelTextPrometheusMetricDataParser(getInputStream(), pool);
+    }
+
+    @Override
+    protected MetricFamily convert(MetricFamily metricFamily) {
+        return metricFamily; // no conversion necessary - our text parser already uses the common api
+    }
+
+}
@@ -0,0 +1,311 @@
+package prometheus.text;
+
+import java.util.Arrays;
+
+import prometheus.Util;
+
+/**
+ * Splits a single sample line of Prometheus text data into its metric name, labels and value.
+ * The line is tokenized in place - this works directly on the bytes of the line and is meant to be
+ * reused for every sample line so its scratch buffers are only allocated once.
+ *
+ * The results of {@link #tokenize(byte[], int, int)} are only valid until it is called again.
+ */
+final class SampleLineTokenizer implements LabelView {
+    // the states of the tokenizer - algorithm from parser.py
+    private static final int NAME = 0;
+    private static final int END_OF_NAME = 1;
+    private static final int START_OF_LABEL_NAME = 2;
+    private static final int LABEL_NAME = 3;
+    private static final int LABEL_VALUE_EQUALS = 4;
+    private static final int LABEL_VALUE_QUOTE = 5;
+    private static final int LABEL_VALUE = 6;
+    private static final int LABEL_VALUE_SLASH = 7;
+    private static final int NEXT_LABEL = 8;
+    private static final int END_OF_LABELS = 9;
+    private static final int VALUE = 10;
+
+    private String name;
+    private String value; // only decoded if asked for
+    private byte[] line;
+    private int valueStart;
+    private int valueEnd;
+    private long timestamp;
+    private String[] labelNames = new String[8];
+    private String[] labelValues = new String[8];
+    private int labelCount;
+    private byte[] unescaped = new byte[64];
+
+    /**
+     * Tokenizes the sample line found in the given range of bytes. The line must already be trimmed.
+     *
+     * @param line the buffer containing the UTF-8 encoded line
+     * @param start index of the first byte of the line
+     * @param end index just past the last byte of the line
+     * @return false if the line is not a valid sample line
+     */
+    boolean tokenize(byte[] line, int start, int end) {
+        labelCount = 0;
+
+        int state = NAME;
+        int nameEnd = end;
+        int labelNameStart = 0;
+        int labelNameEnd = 0;
+        int labelValueStart = 0;
+        boolean labelValueEscaped = false;
+        int valueStart = end;
+        int valueEnd = end;
+
+        scan: for (int c = start; c < end; c++) {
+            byte b = line[c];
+            switch (state) {
+                case NAME:
+                    if (b == '{') {
+                        nameEnd = c;
+                        state = START_OF_LABEL_NAME;
+                    } else if (b == ' ' || b == '\t') {
+                        nameEnd = c;
+                        state = END_OF_NAME;
+                    }
+                    break;
+                case END_OF_NAME:
+                    if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else if (b == '{') {
+                        state = START_OF_LABEL_NAME;
+                    } else {
+                        valueStart = c;
+                        state = VALUE;
+                    }
+                    break;
+                case START_OF_LABEL_NAME:
+                    if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else if (b == '}') {
+                        state = END_OF_LABELS;
+                    } else {
+                        labelNameStart = c;
+                        state = LABEL_NAME;
+                    }
+                    break;
+                case LABEL_NAME:
+                    if (b == '=') {
+                        labelNameEnd = c;
+                        state = LABEL_VALUE_QUOTE;
+                    } else if (b == '}') {
+                        state = END_OF_LABELS;
+                    } else if (b == ' ' || b == '\t') {
+                        labelNameEnd = c;
+                        state = LABEL_VALUE_EQUALS;
+                    }
+                    break;
+                case LABEL_VALUE_EQUALS:
+                    if (b == '=') {
+                        state = LABEL_VALUE_QUOTE;
+                    } else if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else {
+                        return false;
+                    }
+                    break;
+                case LABEL_VALUE_QUOTE:
+                    if (b == '"') {
+                        labelValueStart = c + 1;
+                        labelValueEscaped = false;
+                        state = LABEL_VALUE;
+                    } else if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else {
+                        return false;
+                    }
+                    break;
+                case LABEL_VALUE:
+                    if (b == '\\') {
+                        labelValueEscaped = true;
+                        state = LABEL_VALUE_SLASH;
+                    } else if (b == '"') {
+                        putLabel(LineReader.decode(line, labelNameStart, labelNameEnd),
+                                labelValueEscaped
+                                        ? unescapeLabelValue(line, labelValueStart, c)
+                                        : LineReader.decode(line, labelValueStart, c));
+                        state = NEXT_LABEL;
+                    }
+                    break;
+                case LABEL_VALUE_SLASH:
+                    state = LABEL_VALUE;
+                    break;
+                case NEXT_LABEL:
+                    if (b == ',') {
+                        labelNameStart = c + 1;
+                        state = LABEL_NAME;
+                    } else if (b == '}') {
+                        state = END_OF_LABELS;
+                    } else if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else {
+                        return false;
+                    }
+                    break;
+                case END_OF_LABELS:
+                    if (b == ' ' || b == '\t') {
+                        // do nothing
+                    } else {
+                        valueStart = c;
+                        state = VALUE;
+                    }
+                    break;
+                case VALUE:
+                    if (b == ' ' || b == '\t') {
+                        valueEnd = c;
+                        break scan;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state: " + state);
+            }
+        }
+
+        name = LineReader.decode(line, start, nameEnd);
+        this.value = null;
+        this.line = line;
+        this.valueStart = valueStart;
+        this.valueEnd = valueEnd;
+        timestamp = parseTimestamp(line, valueEnd, end);
+        return true;
+    }
+
+    /**
+     * @return the metric name of the sample
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of the sample as it appeared in the line
+     */
+    String getValue() {
+        if (value == null) {
+            value = LineReader.decode(line, valueStart, valueEnd);
+        }
+        return value;
+    }
+
+    /**
+     * Converts the value straight from the bytes of the line, without decoding it to a string first.
+     *
+     * @return the value of the sample
+     * @throws NumberFormatException if the value is not a number
+     */
+    double getDoubleValue() {
+        return Util.convertToDouble(line, valueStart, valueEnd);
+    }
+
+    /**
+     * @return true if the value is a number that {@link #getDoubleValue()} can convert
+     */
+    boolean isValueNumber() {
+        return Util.isDouble(line, valueStart, valueEnd);
+    }
+
+    /**
+     * @return the timestamp that followed the value, or {@link TextSampleSink#NO_TIMESTAMP} if there was none
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    @Override
+    public String getLabelName(int index) {
+        return labelNames[index];
+    }
+
+    @Override
+    public String getLabelValue(int index) {
+        return labelValues[index];
+    }
+
+    @Override
+    public String getLabelValue(String labelName) {
+        for (int i = 0; i < labelCount; i++) {
+            if (labelNames[i].equals(labelName)) {
+                return labelValues[i];
+            }
+        }
+        return null;
+    }
+
+    private void putLabel(String labelName, String labelValue) {
+        // a duplicate label replaces the value of the earlier one but keeps its position
+        for (int i = 0; i < labelCount; i++) {
+            if (labelNames[i].equals(labelName)) {
+                labelValues[i] = labelValue;
+                return;
+            }
+        }
+
+        if (labelCount == labelNames.length) {
+            labelNames = Arrays.copyOf(labelNames, labelCount * 2);
+            labelValues = Arrays.copyOf(labelValues, labelCount * 2);
+        }
+        labelNames[labelCount] = labelName;
+        labelValues[labelCount] = labelValue;
+        labelCount++;
+    }
+
+    // the timestamp is an optional integer that follows the value; anything else is not a timestamp
+    private long parseTimestamp(byte[] line, int start, int end) {
+        while (start < end && (line[start] == ' ' || line[start] == '\t')) {
+            start++;
+        }
+        boolean negative = start < end && line[start] == '-';
+        if (negative) {
+            start++;
+        }
+        if (start == end || end - start > 18) {
+            return TextSampleSink.NO_TIMESTAMP;
+        }
+
+        long result = 0;
+        for (int c = start; c < end; c++) {
+            int digit = line[c] - '0';
+            if (digit < 0 || digit > 9) {
+                return TextSampleSink.NO_TIMESTAMP;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    private String unescapeLabelValue(byte[] line, int start, int end) {
+        if (unescaped.length < end - start) {
+            unescaped = new byte[Math.max(end - start, unescaped.length * 2)];
+        }
+
+        int length = 0;
+        for (int c = start; c < end; c++) {
+            byte b = line[c];
+            if (b == '\\' && c + 1 < end) {
+                byte escaped = line[++c];
+                if (escaped == '\\') {
+                    unescaped[length++] = '\\';
+                } else if (escaped == 'n') {
+                    unescaped[length++] = '\n';
+                } else if (escaped == '"') {
+                    unescaped[length++] = '"';
+                } else {
+                    unescaped[length++] = '\\';
+                    unescaped[length++] = escaped;
+                }
+            } else {
+                unescaped[length++] = b;
+            }
+        }
+        return LineReader.decode(unescaped, 0, length);
+    }
+}
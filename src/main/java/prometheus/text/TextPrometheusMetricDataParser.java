@@ -1,6 +1,6 @@
 package prometheus.text;
 
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -9,11 +9,14 @@ import java.util.List;
 import java.util.Map;
 
 import org.jboss.logging.Logger;
+import prometheus.ParseErrors;
 import prometheus.PrometheusMetricDataParser;
 import prometheus.Util;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
+import prometheus.types.LabelInterner;
+import prometheus.types.Labels;
 import prometheus.types.Metric;
 import prometheus.types.MetricFamily;
 import prometheus.types.MetricType;
@@ -25,7 +28,8 @@ import prometheus.types.Summary;
 public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<MetricFamily> {
     private static final Logger log = Logger.getLogger(TextPrometheusMetricDataParser.class);
 
-    private String lastLineReadFromStream; // this is only set when we break from the while loop in parse()
+    private final LineReader lineReader;
+    private final SampleLineTokenizer tokenizer = new SampleLineTokenizer();
 
     /**
      * Provides the input stream where the parser will look for metric data.
@@ -35,6 +39,24 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
      */
     public TextPrometheusMetricDataParser(InputStream inputStream) {
         super(inputStream);
+        this.lineReader = new LineReader(inputStream);
+    }
+
+    /**
+     * Parses metric data that is already in memory, without copying it.
+     *
+     * @param data the metric data
+     * @param start index of the first byte of the metric data
+     * @param end index just past the last byte of the metric data
+     */
+    TextPrometheusMetricDataParser(byte[] data, int start, int end) {
+        super(new ByteArrayInputStream(data, start, end - start));
+        this.lineReader = new LineReader(data, start, end);
+    }
+
+    @Override
+    public long getLineCount() {
+        return lineReader.getLineCount();
     }
 
     private class ParserContext {
@@ -45,16 +67,34 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
         public String name = "";
         public String help = "";
         public MetricType type = null;
-        public List<String> allowedNames = new ArrayList<>();
+        public FamilyNameMatcher names = new FamilyNameMatcher();
         public List<TextSample> textSamples = new ArrayList<>();
+        public List<FamilyNameMatcher.Suffix> textSampleSuffixes = new ArrayList<>(); // one for each text sample
+
+        // when streaming to a sink, this tells us if the sink has been told about the metric family yet
+        public boolean sinkStarted;
+
+        // true if the metric family could not be understood - its samples are skipped
+        public boolean dropped;
 
         // starts a fresh metric family
         public void clear() {
             name = "";
             help = "";
             type = null;
-            allowedNames.clear();
+            names.clear();
             textSamples.clear();
+            textSampleSuffixes.clear();
+            sinkStarted = false;
+            dropped = false;
+        }
+
+        // make sure the sink knows about the metric family before it is given anything about it
+        public void startSinkMetricFamily(TextSampleSink sink) {
+            if (!sinkStarted) {
+                sinkStarted = true;
+                sink.startMetricFamily(name, type, help);
+            }
         }
 
         // complete the construction of the metric family
@@ -74,148 +114,218 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
             // For summary metrics, we need to combine all quantile samples, sum, and count.
             // For histogram metrics, we need to combine all bucket samples, sum, and count.
 
-            Map<Map<String, String>, Metric.Builder<?>> builders = new LinkedHashMap<>();
-
-            for (TextSample textSample : textSamples) {
-                try {
-                    switch (type) {
-                        case COUNTER:
-                            builders.put(textSample.getLabels(),
-                                    new Counter.Builder().setName(name)
-                                            .setValue(Util.convertStringToDouble(textSample.getValue()))
-                                            .addLabels(textSample.getLabels()));
-                            break;
-                        case GAUGE:
-                            builders.put(textSample.getLabels(),
-                                    new Gauge.Builder().setName(name)
-                                            .setValue(Util.convertStringToDouble(textSample.getValue()))
-                                            .addLabels(textSample.getLabels()));
-                            break;
-                        case SUMMARY:
-                            // Get the builder that we are using to build up the current metric. Remember we need to
-                            // get the builder for this specific metric identified with a unique set of labels.
-
-                            // First we need to remove any existing quantile label since it isn't a "real" label.
-                            // This is to ensure our lookup uses all but only "real" labels.
-                            String quantileValue = textSample.getLabels().remove("quantile"); // may be null
-
-                            Summary.Builder sBuilder = (Summary.Builder) builders.get(textSample.getLabels());
-                            if (sBuilder == null) {
-                                sBuilder = new Summary.Builder();
-                                builders.put(textSample.getLabels(), sBuilder);
-                            }
-                            sBuilder.setName(name);
-                            sBuilder.addLabels(textSample.getLabels());
-                            if (textSample.getName().endsWith("_count")) {
-                                sBuilder.setSampleCount((long)Util.convertStringToDouble(textSample.getValue()));
-                            } else if (textSample.getName().endsWith("_sum")) {
-                                sBuilder.setSampleSum(Util.convertStringToDouble(textSample.getValue()));
-                            } else {
-                                // This must be a quantile sample
-                                if (quantileValue == null) {
-                                    log.debugf("Summary quantile sample is missing the 'quantile' label: %s",
-                                            textSample.getLine());
-                                }
-                                sBuilder.addQuantile(Util.convertStringToDouble(quantileValue),
-                                        Util.convertStringToDouble(textSample.getValue()));
-                            }
-                            break;
-                        case HISTOGRAM:
-                            // Get the builder that we are using to build up the current metric. Remember we need to
-                            // get the builder for this specific metric identified with a unique set of labels.
-
-                            // First we need to remove any existing le label since it isn't a "real" label.
-                            // This is to ensure our lookup uses all but only "real" labels.
-                            String bucket = textSample.getLabels().remove("le"); // may be null
-
-                            Histogram.Builder hBuilder = (Histogram.Builder) builders.get(textSample.getLabels());
-                            if (hBuilder == null) {
-                                hBuilder = new Histogram.Builder();
-                                builders.put(textSample.getLabels(), hBuilder);
+            // The samples were checked as they were parsed, so their values are numbers and quantile and bucket
+            // samples have numeric quantile and le labels.
+
+            // Metrics are identified by their labels. With an interner, the metrics are keyed by (and given)
+            // the shared label set for their labels.
+            LabelInterner interner = getLabelInterner();
+            Map<Labels, Metric.Builder<?>> builders = new LinkedHashMap<>();
+
+            // The samples of a summary or histogram metric normally come one after the other, so the metric of
+            // a sample is usually the metric of the sample before it. That is checked by comparing labels in
+            // place; only when the labels change do we look the metric up (or start a new one) by its labels.
+            Labels seriesKey = null;
+            Metric.Builder<?> seriesBuilder = null;
+
+            for (int i = 0; i < textSamples.size(); i++) {
+                TextSample textSample = textSamples.get(i);
+                FamilyNameMatcher.Suffix suffix = textSampleSuffixes.get(i);
+                switch (type) {
+                    case COUNTER: {
+                        Labels key = intern(interner, textSample.getLabelSet());
+                        builders.put(key, new Counter.Builder().setName(name).setLabels(key)
+                                .setValue(Util.convertStringToDouble(textSample.getValue()))
+                                .setTimestamp(textSample.getTimestamp()));
+                        break;
+                    }
+                    case GAUGE: {
+                        Labels key = intern(interner, textSample.getLabelSet());
+                        builders.put(key, new Gauge.Builder().setName(name).setLabels(key)
+                                .setValue(Util.convertStringToDouble(textSample.getValue()))
+                                .setTimestamp(textSample.getTimestamp()));
+                        break;
+                    }
+                    case SUMMARY: {
+                        // Get the builder that we are using to build up the current metric. Remember we need to
+                        // get the builder for this specific metric identified with a unique set of labels.
+
+                        // First we need to leave out any quantile label since it isn't a "real" label.
+                        // This is to ensure our lookup uses all but only "real" labels.
+                        Labels labels = textSample.getLabelSet();
+                        String quantileValue = labels.get("quantile");
+                        if (seriesKey == null || !seriesKey.equalsWithout(labels, "quantile")) {
+                            seriesKey = intern(interner, labels.without("quantile"));
+                            seriesBuilder = builders.get(seriesKey);
+                            if (seriesBuilder == null) {
+                                seriesBuilder = new Summary.Builder().setName(name).setLabels(seriesKey);
+                                builders.put(seriesKey, seriesBuilder);
                             }
-                            hBuilder.setName(name);
-                            hBuilder.addLabels(textSample.getLabels());
-                            if (textSample.getName().endsWith("_count")) {
-                                hBuilder.setSampleCount((long)Util.convertStringToDouble(textSample.getValue()));
-                            } else if (textSample.getName().endsWith("_sum")) {
-                                hBuilder.setSampleSum(Util.convertStringToDouble(textSample.getValue()));
-                            } else {
-                                // This must be a bucket sample
-                                if (bucket == null) {
-                                    throw new Exception("Histogram bucket sample is missing the 'le' label");
-                                }
-                                hBuilder.addBucket(Util.convertStringToDouble(bucket),
-                                        (long)Util.convertStringToDouble(textSample.getValue()));
+                        }
+                        Summary.Builder sBuilder = (Summary.Builder) seriesBuilder;
+                        if (textSample.hasTimestamp()) {
+                            sBuilder.setTimestamp(textSample.getTimestamp()); // the last sample's time wins
+                        }
+                        if (suffix == FamilyNameMatcher.Suffix.COUNT) {
+                            sBuilder.setSampleCount((long)Util.convertStringToDouble(textSample.getValue()));
+                        } else if (suffix == FamilyNameMatcher.Suffix.SUM) {
+                            sBuilder.setSampleSum(Util.convertStringToDouble(textSample.getValue()));
+                        } else {
+                            // This must be a quantile sample
+                            sBuilder.addQuantile(Util.convertStringToDouble(quantileValue),
+                                    Util.convertStringToDouble(textSample.getValue()));
+                        }
+                        break;
+                    }
+                    case HISTOGRAM: {
+                        // Get the builder that we are using to build up the current metric. Remember we need to
+                        // get the builder for this specific metric identified with a unique set of labels.
+
+                        // First we need to leave out any le label since it isn't a "real" label.
+                        // This is to ensure our lookup uses all but only "real" labels.
+                        Labels labels = textSample.getLabelSet();
+                        String bucket = labels.get("le");
+                        if (seriesKey == null || !seriesKey.equalsWithout(labels, "le")) {
+                            seriesKey = intern(interner, labels.without("le"));
+                            seriesBuilder = builders.get(seriesKey);
+                            if (seriesBuilder == null) {
+                                seriesBuilder = new Histogram.Builder().setName(name).setLabels(seriesKey);
+                                builders.put(seriesKey, seriesBuilder);
                             }
-                            break;
+                        }
+                        Histogram.Builder hBuilder = (Histogram.Builder) seriesBuilder;
+                        if (textSample.hasTimestamp()) {
+                            hBuilder.setTimestamp(textSample.getTimestamp()); // the last sample's time wins
+                        }
+                        if (suffix == FamilyNameMatcher.Suffix.COUNT) {
+                            hBuilder.setSampleCount((long)Util.convertStringToDouble(textSample.getValue()));
+                        } else if (suffix == FamilyNameMatcher.Suffix.SUM) {
+                            hBuilder.setSampleSum(Util.convertStringToDouble(textSample.getValue()));
+                        } else {
+                            // This must be a bucket sample
+                            hBuilder.addBucket(Util.convertStringToDouble(bucket),
+                                    (long)Util.convertStringToDouble(textSample.getValue()));
+                        }
+                        break;
                     }
-                } catch (Exception e) {
-                    log.debugf(e, "Error processing sample. This metric sample will be ignored: %s",
-                            textSample.getLine());
                 }
             }
 
             // now that we've combined everything into individual metric builders, we can build all our metrics
             for (Metric.Builder<?> builder : builders.values()) {
-                try {
-                    metricFamilyBuilder.addMetric(builder.build());
-                } catch (Exception e) {
-                    log.debugf(e, "Error building metric for metric family [%s] - it will be ignored", name);
-                }
+                metricFamilyBuilder.addMetric(builder.build());
             }
 
             finishedMetricFamily = metricFamilyBuilder.build();
         }
     }
 
+    private static Labels intern(LabelInterner interner, Labels labels) {
+        return (interner != null) ? interner.intern(labels) : labels;
+    }
+
     @Override
     public MetricFamily parse() throws IOException {
+        ParserContext context = new ParserContext();
+        while (parseMetricFamily(context, null)) {
+            if (!context.name.isEmpty() && !context.dropped) {
+                // finish the metric family we previously were building up
+                context.finishMetricFamily();
+                return context.finishedMetricFamily;
+            }
+            context.clear(); // go on to the metric family after the one that was dropped
+        }
+        return null;
+    }
 
-        // determine the first line we should process. If we were previously called, we already
-        // read a line - start from that last line read. Otherwise, prime the pump and read
-        // the first line from the stream.
-        String line;
-        if (lastLineReadFromStream != null) {
-            line = lastLineReadFromStream;
-            lastLineReadFromStream = null;
-        } else {
-            line = readLine(getInputStream());
+    /**
+     * Parses all the remaining data in the stream and passes each sample to the given sink as soon as it is parsed.
+     * Unlike {@link #parse()}, no metric families or metrics are built. Only one sample line is held in memory at
+     * any time so the memory used does not grow with the size of the metric families.
+     *
+     * @param sink the object that is given each sample found in the stream
+     * @throws IOException if failed to read the data from the stream
+     */
+    public void parse(TextSampleSink sink) throws IOException {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink must not be null");
         }
 
-        if (line == null) {
-            return null;
+        ParserContext context = new ParserContext();
+        while (parseMetricFamily(context, sink)) {
+            if (!context.name.isEmpty() && !context.dropped) {
+                context.startSinkMetricFamily(sink); // in case the family had no samples
+                sink.endMetricFamily();
+            }
+            context.clear();
+        }
+    }
+
+    /**
+     * Reads the lines of a single metric family from the stream. If there is no sink, the samples are collected
+     * in the context so the metric family can be built from them afterwards. If there is a sink, the samples are
+     * passed to the sink as they are parsed and are not kept.
+     *
+     * Lines that are not valid are rejected before anything is done with them, without any exceptions being
+     * thrown (unless in strict mode) - see {@link #lineRejected(ParseErrors.Reason, byte[], int, int)}.
+     *
+     * @return false if there was no more data in the stream
+     */
+    private boolean parseMetricFamily(ParserContext context, TextSampleSink sink) throws IOException {
+        // Determine the first line we should process. If we were previously called, the line that ended
+        // the previous metric family was pushed back onto the line reader so we will start from that line.
+        if (!lineReader.readLine()) {
+            return false;
         }
 
         // do a quick check to see if we are getting passed in binary format rather than text
-        if (!line.isEmpty() && !new String(new char[] { line.charAt(0) }).matches("\\p{ASCII}*")) {
+        if (lineReader.getLineStart() < lineReader.getLineEnd()
+                && lineReader.getBuffer()[lineReader.getLineStart()] < 0) {
             throw new IOException("Doesn't look like the metric data is in text format");
         }
 
-        ParserContext context = new ParserContext();
+        // the original text of each sample is only needed for the debug messages about bad samples
+        boolean keepSampleLines = sink == null && log.isDebugEnabled();
 
-        while (line != null) {
-            line = line.trim();
-
-            try {
-                if (line.isEmpty()) {
-                    // ignore blank lines
-                } else if (line.charAt(0) == '#') {
-                    String[] parts = line.split("[ \t]+", 4); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
-                    if (parts.length < 2) {
-                        // ignore line - probably a comment
-                    } else if (parts[1].equals("HELP")) {
+        do {
+            byte[] buffer = lineReader.getBuffer();
+            int start = lineReader.getLineStart();
+            int end = lineReader.getLineEnd();
+
+            // trim the line
+            while (start < end && (buffer[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+
+            boolean sinkSampleReady = false;
+            double sinkSampleValue = 0;
+
+            if (start == end) {
+                // ignore blank lines
+            } else if (buffer[start] == '#') {
+                String line = LineReader.decode(buffer, start, end);
+                String[] parts = line.split("[ \t]+", 4); // 0 is #, 1 is HELP or TYPE, 2 is metric name, 3 is doc
+                if (parts.length < 2) {
+                    // ignore line - probably a comment
+                } else if (parts[1].equals("HELP")) {
+                    if (parts.length < 3) {
+                        lineRejected(ParseErrors.Reason.MALFORMED_LINE, line);
+                    } else {
                         if (!parts[2].equals(context.name)) {
                             // we are hitting a new metric family
                             if (!context.name.isEmpty()) {
                                 // break and we'll finish the metric family we previously were building up
-                                this.lastLineReadFromStream = line;
+                                lineReader.unreadLine();
                                 break;
                             }
                             // start anew
                             context.clear();
                             context.name = parts[2];
                             context.type = MetricType.GAUGE; // default in case we don't get a TYPE
-                            context.allowedNames.add(parts[2]);
+                            context.names.reset(parts[2], context.type);
                         }
 
                         if (parts.length == 4) {
@@ -223,191 +333,127 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
                         } else {
                             context.help = "";
                         }
-                    } else if (parts[1].equals("TYPE")) {
+                    }
+                } else if (parts[1].equals("TYPE")) {
+                    if (parts.length < 4) {
+                        lineRejected(ParseErrors.Reason.MALFORMED_LINE, line);
+                    } else {
                         if (!parts[2].equals(context.name)) {
                             if (!context.name.isEmpty()) {
                                 // break and we'll finish the metric family we previously were building up
-                                this.lastLineReadFromStream = line;
+                                lineReader.unreadLine();
                                 break;
                             }
                             // start anew
                             context.clear();
                             context.name = parts[2];
                         }
-                        context.type = MetricType.valueOf(parts[3].toUpperCase());
-                        context.allowedNames.clear();
-                        switch (context.type) {
-                            case COUNTER:
-                                context.allowedNames.add(context.name);
-                                break;
-                            case GAUGE:
-                                context.allowedNames.add(context.name);
-                                break;
-                            case SUMMARY:
-                                context.allowedNames.add(context.name + "_count");
-                                context.allowedNames.add(context.name + "_sum");
-                                context.allowedNames.add(context.name);
-                                break;
-                            case HISTOGRAM:
-                                context.allowedNames.add(context.name + "_count");
-                                context.allowedNames.add(context.name + "_sum");
-                                context.allowedNames.add(context.name + "_bucket");
-                                break;
+                        context.type = toMetricType(parts[3]);
+                        // if we don't know the type, we don't know which samples belong to the family - the
+                        // matcher then matches all that might, so they are all skipped
+                        context.names.reset(context.name, context.type);
+                        if (context.type == null) {
+                            context.dropped = true;
+                            familyDropped(ParseErrors.Reason.UNKNOWN_TYPE, context.name);
                         }
-                    } else {
-                        // ignore other tokens - probably a comment
                     }
                 } else {
-                    // parse the sample line that contains a single metric (or part of a metric as in summary/histo)
-                    TextSample sample = parseSampleLine(line);
-                    if (!context.allowedNames.contains(sample.getName())) {
-                        if (!context.name.isEmpty()) {
-                            // break and we'll finish the metric family we previously were building up
-                            this.lastLineReadFromStream = line;
-                            break;
-                        }
-                        context.clear();
-                        log.debugf("Ignoring an unexpected metric: " + line);
+                    // ignore other tokens - probably a comment
+                }
+            } else {
+                // parse the sample line that contains a single metric (or part of a metric as in summary/histo)
+                boolean tokenized = tokenizer.tokenize(buffer, start, end);
+                FamilyNameMatcher.Suffix suffix = (tokenized) ? context.names.match(tokenizer.getName()) : null;
+                if (!tokenized) {
+                    lineRejected(ParseErrors.Reason.MALFORMED_LINE, buffer, start, end);
+                } else if (suffix == null) {
+                    if (!context.name.isEmpty()) {
+                        // break and we'll finish the metric family we previously were building up
+                        lineReader.unreadLine();
+                        break;
+                    }
+                    context.clear();
+                    lineRejected(ParseErrors.Reason.UNEXPECTED_SAMPLE, buffer, start, end);
+                } else if (context.dropped) {
+                    // the samples of a dropped metric family were counted when the family was dropped
+                } else {
+                    ParseErrors.Reason invalid = checkSample(context.type, suffix);
+                    if (invalid != null) {
+                        lineRejected(invalid, buffer, start, end);
+                    } else if (sink != null) {
+                        // the sample is handed to the sink below, once we know the line is good
+                        sinkSampleValue = tokenizer.getDoubleValue();
+                        sinkSampleReady = true;
                     } else {
                         // add the sample to the family we are building up
-                        context.textSamples.add(sample);
+                        context.textSamples.add(
+                                createTextSample(keepSampleLines ? LineReader.decode(buffer, start, end) : null));
+                        context.textSampleSuffixes.add(suffix);
                     }
                 }
-            } catch (Exception e) {
-                log.debugf("Failed to process line - it will be ignored: %s", line);
+            }
+
+            if (sinkSampleReady) {
+                context.startSinkMetricFamily(sink);
+                sink.sample(tokenizer.getName(), tokenizer, sinkSampleValue, tokenizer.getTimestamp());
             }
 
             // go to the next line
-            line = readLine(getInputStream());
-        }
+        } while (lineReader.readLine());
 
-        if (!context.name.isEmpty()) {
-            // finish the metric family we previously were building up
-            context.finishMetricFamily();
+        return true;
+    }
+
+    /**
+     * Checks the sample line that was just tokenized can be turned into (a part of) a metric of the given type.
+     *
+     * @param suffix the suffix the sample name has after the family name
+     * @return why the sample is not valid, or null if it is valid
+     */
+    private ParseErrors.Reason checkSample(MetricType type, FamilyNameMatcher.Suffix suffix) {
+        if (!tokenizer.isValueNumber()) {
+            return ParseErrors.Reason.INVALID_VALUE;
         }
 
-        return context.finishedMetricFamily;
+        // these must match how finishMetricFamily tells quantile and bucket samples from the sum and count
+        if ((type == MetricType.SUMMARY || type == MetricType.HISTOGRAM)
+                && suffix != FamilyNameMatcher.Suffix.COUNT && suffix != FamilyNameMatcher.Suffix.SUM) {
+            String bound = tokenizer.getLabelValue((type == MetricType.SUMMARY) ? "quantile" : "le");
+            if (bound == null) {
+                return ParseErrors.Reason.MISSING_LABEL;
+            } else if (!Util.isDouble(bound)) {
+                return ParseErrors.Reason.INVALID_VALUE;
+            }
+        }
+        return null;
     }
 
-    private TextSample parseSampleLine(String line) {
-        // algorithm from parser.py
-        StringBuilder name = new StringBuilder();
-        StringBuilder labelname = new StringBuilder();
-        StringBuilder labelvalue = new StringBuilder();
-        StringBuilder value = new StringBuilder();
-        Map<String, String> labels = new LinkedHashMap<>();
-
-        String state = "name";
-
-        for (int c = 0; c < line.length(); c++) {
-            char charAt = line.charAt(c);
-            if (state.equals("name")) {
-                if (charAt == '{') {
-                    state = "startoflabelname";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    state = "endofname";
-                } else {
-                    name.append(charAt);
-                }
-            } else if (state.equals("endofname")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else if (charAt == '{') {
-                    state = "startoflabelname";
-                } else {
-                    value.append(charAt);
-                    state = "value";
-                }
-            } else if (state.equals("startoflabelname")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else {
-                    labelname.append(charAt);
-                    state = "labelname";
-                }
-            } else if (state.equals("labelname")) {
-                if (charAt == '=') {
-                    state = "labelvaluequote";
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    state = "labelvalueequals";
-                } else {
-                    labelname.append(charAt);
-                }
-            } else if (state.equals("labelvalueequals")) {
-                if (charAt == '=') {
-                    state = "labelvaluequote";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("labelvaluequote")) {
-                if (charAt == '"') {
-                    state = "labelvalue";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("labelvalue")) {
-                if (charAt == '\\') {
-                    state = "labelvalueslash";
-                } else if (charAt == '"') {
-                    labels.put(labelname.toString(), labelvalue.toString());
-                    labelname.setLength(0);
-                    labelvalue.setLength(0);
-                    state = "nextlabel";
-                } else {
-                    labelvalue.append(charAt);
-                }
-            } else if (state.equals("labelvalueslash")) {
-                state = "labelvalue";
-                if (charAt == '\\') {
-                    labelvalue.append('\\');
-                } else if (charAt == 'n') {
-                    labelvalue.append('\n');
-                } else if (charAt == '"') {
-                    labelvalue.append('"');
-                } else {
-                    labelvalue.append('\\').append(charAt);
-                }
-            } else if (state.equals("nextlabel")) {
-                if (charAt == ',') {
-                    state = "labelname";
-                } else if (charAt == '}') {
-                    state = "endoflabels";
-                } else if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    throw new IllegalStateException("Invalid line: " + line);
-                }
-            } else if (state.equals("endoflabels")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    // do nothing
-                } else {
-                    value.append(charAt);
-                    state = "value";
-                }
-            } else if (state.equals("value")) {
-                if (charAt == ' ' || charAt == '\t') {
-                    break; // timestamps are NOT supported - ignoring
-                } else {
-                    value.append(charAt);
-                }
-            }
+    // the metric type named in a TYPE line, or null if it is not a type we know
+    private static MetricType toMetricType(String typeName) {
+        if (typeName.equalsIgnoreCase("counter")) {
+            return MetricType.COUNTER;
+        } else if (typeName.equalsIgnoreCase("gauge") || typeName.equalsIgnoreCase("untyped")) {
+            // like the binary parsers, we treat untyped metrics as gauges
+            return MetricType.GAUGE;
+        } else if (typeName.equalsIgnoreCase("summary")) {
+            return MetricType.SUMMARY;
+        } else if (typeName.equalsIgnoreCase("histogram")) {
+            return MetricType.HISTOGRAM;
         }
+        return null;
+    }
 
-        TextSample sample = new TextSample.Builder()
+    // builds a sample out of the tokens of the sample line that was just tokenized
+    private TextSample createTextSample(String line) {
+        TextSample.Builder sampleBuilder = new TextSample.Builder()
                 .setLine(line)
-                .setName(name.toString())
-                .setValue(value.toString())
-                .addLabels(labels).build();
-
-        return sample;
+                .setName(tokenizer.getName())
+                .setValue(tokenizer.getValue())
+                .setTimestamp(tokenizer.getTimestamp());
+        for (int i = 0; i < tokenizer.getLabelCount(); i++) {
+            sampleBuilder.addLabel(tokenizer.getLabelName(i), tokenizer.getLabelValue(i));
+        }
+        return sampleBuilder.build();
     }
 
     private String unescapeHelp(String text) {
@@ -443,21 +489,4 @@ public class TextPrometheusMetricDataParser extends PrometheusMetricDataParser<M
         return result.toString();
     }
 
-    private String readLine(InputStream inputStream) throws IOException {
-        int lineChar;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        // Prometheus end of line character is a newline
-        for (lineChar = inputStream.read(); (lineChar != '\n' && lineChar != -1); lineChar = inputStream.read()) {
-            baos.write(lineChar);
-        }
-
-        if (lineChar == -1 && baos.size() == 0) {
-            // EOF
-            return null;
-        }
-
-        return baos.toString("UTF-8");
-    }
-
 }
@@ -0,0 +1,46 @@
+package prometheus.text;
+
+import prometheus.types.Metric;
+import prometheus.types.MetricType;
+
+/**
+ * Receives the samples of Prometheus text data one at a time, as soon as each sample line is parsed.
+ * See {@link TextPrometheusMetricDataParser#parse(TextSampleSink)}.
+ *
+ * Nothing is accumulated on behalf of a sink - samples are not combined into metrics and metric families are
+ * never built - so the memory needed to parse the data does not depend on how large the metric families are.
+ * In exchange, it is up to the sink to make sense of the samples of summaries and histograms
+ * (that is, the samples with the "quantile" or "le" labels and the "_sum", "_count" and "_bucket" suffixes).
+ */
+public interface TextSampleSink {
+
+    /**
+     * The timestamp passed to {@link #sample} when the sample line did not have a timestamp.
+     */
+    long NO_TIMESTAMP = Metric.NO_TIMESTAMP;
+
+    /**
+     * Called when a new metric family is found, before any of its samples are passed to the sink.
+     *
+     * @param name the name of the metric family
+     * @param type the type of the metrics in the family
+     * @param help the help description of the family
+     */
+    void startMetricFamily(String name, MetricType type, String help);
+
+    /**
+     * Called for each sample of the current metric family.
+     *
+     * @param name the name of the sample as found in the text data. For summaries and histograms this
+     *             may have one of the "_sum", "_count" or "_bucket" suffixes.
+     * @param labels the labels of the sample. This view is only valid during this call.
+     * @param value the value of the sample
+     * @param timestamp the timestamp of the sample in milliseconds since the epoch, or {@link #NO_TIMESTAMP}
+     */
+    void sample(String name, LabelView labels, double value, long timestamp);
+
+    /**
+     * Called when all the samples of the current metric family have been passed to the sink.
+     */
+    void endMetricFamily();
+}
@@ -0,0 +1,166 @@
+package prometheus.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The HTTP content encodings that metric data can be compressed with.
+ */
+public enum ContentEncoding {
+    IDENTITY("identity"), //
+    GZIP("gzip"), //
+    DEFLATE("deflate"), //
+    /**
+     * Only available if the zstd-jni library (com.github.luben:zstd-jni) is on the classpath.
+     */
+    ZSTD("zstd");
+
+    private static final int DECODER_BUFFER_SIZE = 8 * 1024;
+
+    // the zstd decoder, looked up reflectively since the library is optional; null if it is not available
+    private static final Constructor<? extends InputStream> zstdInputStream = findZstdInputStream();
+
+    private final String name;
+
+    private ContentEncoding(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name of the encoding as found in the Content-Encoding and Accept-Encoding headers
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if data in this encoding can be decoded
+     */
+    public boolean isAvailable() {
+        return this != ZSTD || zstdInputStream != null;
+    }
+
+    /**
+     * @return the value of an Accept-Encoding header listing all the available compressed encodings
+     */
+    public static String getAcceptEncoding() {
+        StringBuilder acceptEncoding = new StringBuilder();
+        for (ContentEncoding encoding : values()) {
+            if (encoding != IDENTITY && encoding.isAvailable()) {
+                if (acceptEncoding.length() > 0) {
+                    acceptEncoding.append(", ");
+                }
+                acceptEncoding.append(encoding.getName());
+            }
+        }
+        return acceptEncoding.toString();
+    }
+
+    /**
+     * @param name the value of a Content-Encoding header, may be null
+     * @return the encoding with the given name; null or empty means {@link #IDENTITY}
+     * @throws IOException if the encoding is not known or not available
+     */
+    public static ContentEncoding fromName(String name) throws IOException {
+        if (name == null || name.trim().isEmpty()) {
+            return IDENTITY;
+        }
+        for (ContentEncoding encoding : values()) {
+            if (encoding.name.equalsIgnoreCase(name.trim())) {
+                if (!encoding.isAvailable()) {
+                    throw new IOException("Content encoding is not available: " + name);
+                }
+                return encoding;
+            }
+        }
+        throw new IOException("Unsupported content encoding: " + name);
+    }
+
+    /**
+     * Wraps the given encoded data in a stream that decompresses it as it is read.
+     * Note that this may block to read the header of the encoded data.
+     *
+     * @param encoded the data in this encoding
+     * @return the decoded data
+     * @throws IOException if the header of the encoded data could not be read
+     */
+    public InputStream decode(InputStream encoded) throws IOException {
+        switch (this) {
+            case IDENTITY:
+                return encoded;
+            case GZIP:
+                return new GZIPInputStream(encoded, DECODER_BUFFER_SIZE);
+            case DEFLATE:
+                // this should be zlib-wrapped, but some servers send raw deflate data so look at the header
+                PushbackInputStream pushback = new PushbackInputStream(encoded, 2);
+                int cmf = pushback.read();
+                int flg = (cmf < 0) ? -1 : pushback.read();
+                if (flg >= 0) {
+                    pushback.unread(flg);
+                }
+                if (cmf >= 0) {
+                    pushback.unread(cmf);
+                }
+                boolean zlib = (cmf & 0x0F) == 8 && flg >= 0 && ((cmf << 8) | flg) % 31 == 0;
+                return inflate(pushback, new Inflater(!zlib));
+            case ZSTD:
+                if (zstdInputStream == null) {
+                    throw new IOException("Content encoding is not available: " + name);
+                }
+                try {
+                    return zstdInputStream.newInstance(encoded);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Failed to create zstd decoder", e.getCause());
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException("Failed to create zstd decoder", e);
+                }
+            default:
+                throw new IllegalStateException("Unknown encoding: " + this);
+        }
+    }
+
+    /**
+     * @param deflated the deflate data
+     * @param inflater decompresses the data - it is ended when the returned stream is closed
+     * @return the decompressed data
+     */
+    static InputStream inflate(InputStream deflated, Inflater inflater) {
+        return new DeflateInputStream(deflated, inflater);
+    }
+
+    // unlike a plain InflaterInputStream given its own inflater, this ends the inflater when it is closed, so its
+    // native memory is freed right away rather than when it is garbage collected
+    private static final class DeflateInputStream extends InflaterInputStream {
+        DeflateInputStream(InputStream in, Inflater inflater) {
+            super(in, inflater, DECODER_BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends InputStream> findZstdInputStream() {
+        try {
+            Class<?> clazz = Class.forName("com.github.luben.zstd.ZstdInputStream");
+            return ((Class<? extends InputStream>) clazz).getConstructor(InputStream.class);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package prometheus.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through memory mappings of it rather than through read system calls. Each read is a copy straight
+ * out of the mapped file.
+ *
+ * A single mapping can't be larger than 2GB, so the file is mapped in windows - one window at a time, in order,
+ * each window being mapped when the previous one has been read. Files of any size can therefore be read, and
+ * only the window being read needs to be kept mapped.
+ *
+ * The size of the file is fixed when the stream is opened. The file must not be truncated while it is read -
+ * files that are replaced by renaming a new file over them, as textfile collectors do, are safe to read. Reading a
+ * part of the file that was truncated away makes the JVM throw an InternalError (on some platforms the process
+ * gets a SIGBUS), possibly not until some time after the read, so it can't be turned into an IOException.
+ *
+ * Closing the stream does not unmap the file - there is no way to do that in Java 8. The mapping is released
+ * when it is garbage collected, and until then, on Windows, the file can't be deleted or replaced.
+ */
+public class MappedFileInputStream extends InputStream {
+    /**
+     * The default size of the windows the file is mapped in.
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+    private MappedByteBuffer window; // null until the first read
+    private long windowStart; // where in the file the window starts
+
+    /**
+     * @param file the file to read
+     * @throws IOException if the file could not be opened
+     */
+    public MappedFileInputStream(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param file the file to read
+     * @param windowSize the most bytes of the file that are mapped at a time
+     * @throws IOException if the file could not be opened
+     */
+    public MappedFileInputStream(File file, int windowSize) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File must not be null");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        this.windowSize = windowSize;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the size of the file, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureWindow()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureWindow()) {
+            return -1;
+        }
+        int read = Math.min(len, window.remaining());
+        window.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || !ensureWindow()) {
+            return 0L;
+        }
+        int skipped = (int) Math.min(n, window.remaining());
+        window.position(window.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long position = (window == null) ? 0L : windowStart + window.position();
+        return (int) Math.min(size - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null; // the mapping goes away once the buffer is garbage collected
+        channel.close();
+    }
+
+    // makes sure there is something left to read in the window; false if the whole file has been read
+    private boolean ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        long nextStart = (window == null) ? 0L : windowStart + window.capacity();
+        if (nextStart >= size) {
+            return false;
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, nextStart, Math.min(size - nextStart, windowSize));
+        windowStart = nextStart;
+        return true;
+    }
+}
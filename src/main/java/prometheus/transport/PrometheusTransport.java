@@ -0,0 +1,24 @@
+package prometheus.transport;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Fetches Prometheus metric data from an endpoint. A single transport is typically shared by all the scrapes of
+ * an endpoint (or of many endpoints) so it can reuse connections across scrapes - implementations must
+ * therefore be thread safe.
+ *
+ * @see prometheus.PrometheusScraper#setTransport(PrometheusTransport)
+ */
+public interface PrometheusTransport {
+
+    /**
+     * Requests the metric data found at the given URL.
+     *
+     * @param url the Prometheus endpoint
+     * @param acceptContentType the content types the caller can handle, in the form of an HTTP Accept header
+     * @return the response whose body is the metric data. The caller must close it when it is done with the data.
+     * @throws IOException if the data could not be requested
+     */
+    TransportResponse open(URL url, String acceptContentType) throws IOException;
+}
@@ -0,0 +1,225 @@
+package prometheus.transport;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The metric data returned by a {@link PrometheusTransport}.
+ *
+ * If the data was compressed on the wire, {@link #getInputStream()} decompresses it as it is read. While the data
+ * is read, this keeps track of how many bytes came over the wire and how long was spent waiting for them, and
+ * how many bytes they decoded to and how long it took to decode them.
+ *
+ * Closing the response releases the underlying connection, which may allow the transport to reuse it.
+ */
+public class TransportResponse implements Closeable {
+    private final CountingInputStream wireStream;
+    private final InputStream inputStream;
+    private final DecodingInputStream decodingStream; // null if the data is not encoded
+    private final String contentType;
+    private final ContentEncoding contentEncoding;
+
+    /**
+     * @param inputStream the metric data, not encoded. This object owns the stream and closes it when it is closed.
+     * @param contentType the content type of the metric data, or null if it is not known
+     */
+    public TransportResponse(InputStream inputStream, String contentType) {
+        this(inputStream, contentType, ContentEncoding.IDENTITY);
+    }
+
+    /**
+     * @param body the metric data as it comes over the wire. This object owns the stream and closes it when it is
+     *             closed.
+     * @param contentType the content type of the metric data, or null if it is not known
+     * @param contentEncoding how the body is encoded
+     */
+    public TransportResponse(InputStream body, String contentType, ContentEncoding contentEncoding) {
+        if (body == null) {
+            throw new IllegalArgumentException("Stream must not be null");
+        }
+        if (contentEncoding == null) {
+            throw new IllegalArgumentException("Content encoding must not be null");
+        }
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.wireStream = new CountingInputStream(body);
+        if (contentEncoding == ContentEncoding.IDENTITY) {
+            this.decodingStream = null;
+            this.inputStream = this.wireStream;
+        } else {
+            this.decodingStream = new DecodingInputStream(wireStream, contentEncoding);
+            this.inputStream = this.decodingStream;
+        }
+    }
+
+    /**
+     * @return the stream of (decoded) metric data
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return the content type of the metric data, or null if it is not known
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return how the metric data was encoded on the wire
+     */
+    public ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @return the number of bytes read off the wire so far
+     */
+    public long getWireBytes() {
+        return wireStream.count;
+    }
+
+    /**
+     * @return how long, in nanoseconds, was spent reading the bytes off the wire so far - this is mostly time spent
+     *         waiting for the data to come over the network
+     */
+    public long getTransferNanos() {
+        return wireStream.nanos;
+    }
+
+    /**
+     * @return the number of bytes of decoded metric data read so far
+     */
+    public long getDecodedBytes() {
+        return (decodingStream == null) ? wireStream.count : decodingStream.count;
+    }
+
+    /**
+     * @return how long, in nanoseconds, was spent decoding the metric data read so far - this does not include
+     *         the time spent waiting for the data to come over the wire
+     */
+    public long getDecodeNanos() {
+        return (decodingStream == null) ? 0L : decodingStream.nanos - wireStream.nanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Counts the bytes read through it and the time spent reading them, which is also how the time spent waiting
+     * on the network is kept out of the decoding time.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+        private long nanos;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int read = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Decodes the wire data, creating the decoder on first use so reading the header of the encoded data
+     * is timed like the rest of the decoding.
+     */
+    private static class DecodingInputStream extends InputStream {
+        private final InputStream wire;
+        private final ContentEncoding contentEncoding;
+        private InputStream decoder;
+        private long count;
+        private long nanos;
+
+        DecodingInputStream(InputStream wire, ContentEncoding contentEncoding) {
+            this.wire = wire;
+            this.contentEncoding = contentEncoding;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                int b = decoder().read();
+                if (b >= 0) {
+                    count++;
+                }
+                return b;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                int read = decoder().read(b, off, len);
+                if (read > 0) {
+                    count += read;
+                }
+                return read;
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (decoder == null) ? 0 : decoder.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decoder != null) {
+                decoder.close();
+            } else {
+                wire.close();
+            }
+        }
+
+        private InputStream decoder() throws IOException {
+            if (decoder == null) {
+                decoder = contentEncoding.decode(wire);
+            }
+            return decoder;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package prometheus.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+import org.jboss.logging.Logger;
+
+/**
+ * The default transport, built on the JDK's {@link URLConnection}. Any URL the JDK can open is supported,
+ * including file URLs.
+ *
+ * For HTTP and HTTPS endpoints, connections are kept alive and reused by later requests to the same endpoint
+ * once the previous response has been fully read and closed. The pool of idle connections is the JDK's own -
+ * the number of idle connections kept per endpoint is controlled by the "http.maxConnections" system property
+ * (5 by default) and HTTP/2 is not supported. Responses with a status other than 200 are failures.
+ *
+ * Unless disabled, the endpoint is told that compressed data is accepted (see
+ * {@link ContentEncoding#getAcceptEncoding()}) and compressed data is decompressed as it is read.
+ */
+public class URLConnectionTransport implements PrometheusTransport {
+    private static final Logger log = Logger.getLogger(URLConnectionTransport.class);
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10 * 1000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final String acceptEncoding; // null if compressed data is not accepted
+
+    public URLConnectionTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param connectTimeoutMillis how long to wait for a connection to be established, 0 means wait forever
+     * @param readTimeoutMillis how long to wait for more data to arrive, 0 means wait forever
+     */
+    public URLConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this(connectTimeoutMillis, readTimeoutMillis, true);
+    }
+
+    /**
+     * @param connectTimeoutMillis how long to wait for a connection to be established, 0 means wait forever
+     * @param readTimeoutMillis how long to wait for more data to arrive, 0 means wait forever
+     * @param acceptCompressed if false, the endpoint is not told that compressed data is accepted
+     */
+    public URLConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis, boolean acceptCompressed) {
+        if (connectTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Connect timeout must not be negative: " + connectTimeoutMillis);
+        }
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Read timeout must not be negative: " + readTimeoutMillis);
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.acceptEncoding = (acceptCompressed) ? ContentEncoding.getAcceptEncoding() : null;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    @Override
+    public TransportResponse open(URL url, String acceptContentType) throws IOException {
+        URLConnection conn = url.openConnection();
+        conn.setConnectTimeout(connectTimeoutMillis);
+        conn.setReadTimeout(readTimeoutMillis);
+        if (acceptContentType != null) {
+            conn.setRequestProperty("Accept", acceptContentType);
+        }
+        if (acceptEncoding != null) {
+            conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+
+        if (conn instanceof HttpURLConnection) {
+            HttpURLConnection httpConn = (HttpURLConnection) conn;
+            int status = httpConn.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                discardErrorStream(httpConn);
+                throw new IOException(String.format("Prometheus endpoint [%s] responded with HTTP status [%d %s]",
+                        url, status, httpConn.getResponseMessage()));
+            }
+        }
+
+        InputStream body = conn.getInputStream();
+        ContentEncoding contentEncoding;
+        try {
+            contentEncoding = ContentEncoding.fromName(conn.getContentEncoding());
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+        return new TransportResponse(body, conn.getContentType(), contentEncoding);
+    }
+
+    // the connection can only be reused once the body of the error response has been read
+    private void discardErrorStream(HttpURLConnection httpConn) {
+        try (InputStream errorStream = httpConn.getErrorStream()) {
+            if (errorStream != null) {
+                byte[] buffer = new byte[4096];
+                while (errorStream.read(buffer) >= 0) {
+                    // throw it away
+                }
+            }
+        } catch (IOException e) {
+            log.debugf(e, "Failed to read the error response from [%s]", httpConn.getURL());
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package prometheus.types;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import prometheus.Util;
 
 public class Histogram extends Metric {
+    private static final double[] NO_UPPER_BOUNDS = new double[0];
+    private static final long[] NO_COUNTS = new long[0];
 
     public static class Builder extends Metric.Builder<Builder> {
         private long sampleCount = 0;
         private double sampleSum = Double.NaN;
-        private List<Bucket> buckets;
+        private double[] upperBounds = NO_UPPER_BOUNDS;
+        private long[] cumulativeCounts = NO_COUNTS;
+        private int bucketCount;
 
         public Histogram build() {
             return new Histogram(this);
@@ -28,18 +33,21 @@ public class Histogram extends Metric {
         }
 
         public Builder addBucket(double upperBound, long cumulativeCount) {
-            if (buckets == null) {
-                buckets = new ArrayList<>();
+            if (bucketCount == upperBounds.length) {
+                int capacity = Math.max(8, bucketCount * 2);
+                upperBounds = Arrays.copyOf(upperBounds, capacity);
+                cumulativeCounts = Arrays.copyOf(cumulativeCounts, capacity);
             }
-            buckets.add(new Bucket(upperBound, cumulativeCount));
+            upperBounds[bucketCount] = upperBound;
+            cumulativeCounts[bucketCount] = cumulativeCount;
+            bucketCount++;
             return this;
         }
 
         public Builder addBuckets(List<Bucket> buckets) {
-            if (this.buckets == null) {
-                this.buckets = new ArrayList<>();
+            for (Bucket bucket : buckets) {
+                addBucket(bucket.getUpperBound(), bucket.getCumulativeCount());
             }
-            this.buckets.addAll(buckets);
             return this;
         }
     }
@@ -69,14 +77,21 @@ public class Histogram extends Metric {
 
     private final long sampleCount;
     private final double sampleSum;
-    private final List<Bucket> buckets;
+    // the buckets are kept in two arrays rather than as Bucket objects so they take up little memory
+    private final double[] upperBounds;
+    private final long[] cumulativeCounts;
 
     private Histogram(Builder builder) {
-        super(builder);
-        getLabels().remove("le");
+        super(builder, "le");
         this.sampleCount = builder.sampleCount;
         this.sampleSum = builder.sampleSum;
-        this.buckets = builder.buckets;
+        if (builder.bucketCount == 0) {
+            this.upperBounds = NO_UPPER_BOUNDS;
+            this.cumulativeCounts = NO_COUNTS;
+        } else {
+            this.upperBounds = Arrays.copyOf(builder.upperBounds, builder.bucketCount);
+            this.cumulativeCounts = Arrays.copyOf(builder.cumulativeCounts, builder.bucketCount);
+        }
     }
 
     public long getSampleCount() {
@@ -87,10 +102,48 @@ public class Histogram extends Metric {
         return sampleSum;
     }
 
+    /**
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return upperBounds.length;
+    }
+
+    /**
+     * @param index the index of the bucket, from 0 to {@link #getBucketCount()} - 1
+     * @return the upper bound of the bucket
+     */
+    public double getUpperBound(int index) {
+        return upperBounds[index];
+    }
+
+    /**
+     * @param index the index of the bucket, from 0 to {@link #getBucketCount()} - 1
+     * @return the cumulative count of the bucket
+     */
+    public long getCumulativeCount(int index) {
+        return cumulativeCounts[index];
+    }
+
+    /**
+     * The buckets as Bucket objects. Each Bucket object is created when it is asked for, so use
+     * {@link #getUpperBound(int)} and {@link #getCumulativeCount(int)} when going over many histograms.
+     *
+     * @return an unmodifiable view of the buckets
+     */
     public List<Bucket> getBuckets() {
-        if (buckets == null) {
-            return Collections.emptyList();
+        return new BucketList();
+    }
+
+    private final class BucketList extends AbstractList<Bucket> implements RandomAccess {
+        @Override
+        public Bucket get(int index) {
+            return new Bucket(upperBounds[index], cumulativeCounts[index]);
+        }
+
+        @Override
+        public int size() {
+            return upperBounds.length;
         }
-        return buckets;
     }
 }
@@ -0,0 +1,100 @@
+package prometheus.types;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out shared {@link Labels} instances so that metrics with the same labels - typically the same series
+ * scraped over and over again - all use the same label set, and the same label name and value strings.
+ *
+ * Give one interner to a scraper (or to several scrapers of similar targets) and keep it for as long as the
+ * scraper is used. So that series that come and go can't make it grow forever, the interner forgets
+ * everything once it holds more than its maximum number of label sets, and starts over.
+ *
+ * Interners are thread safe.
+ */
+public class LabelInterner {
+    /**
+     * The default maximum number of label sets an interner holds.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Labels, Labels> labelSets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    public LabelInterner() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the number of label sets, and separately of strings, held before everything is forgotten
+     */
+    public LabelInterner(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be at least 1");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param labels a label set
+     * @return the shared label set that is equal to the given one
+     */
+    public Labels intern(Labels labels) {
+        if (labels.isEmpty()) {
+            return Labels.EMPTY;
+        }
+        Labels shared = labelSets.get(labels);
+        if (shared != null) {
+            return shared;
+        }
+        if (labelSets.size() >= maxSize) {
+            clear();
+        }
+        Labels interned = labels.intern(this);
+        shared = labelSets.putIfAbsent(interned, interned);
+        return (shared != null) ? shared : interned;
+    }
+
+    /**
+     * @param names the label names
+     * @param values the label values, in the same order as the names
+     * @param count the number of labels
+     * @return the shared label set with the given labels
+     * @see Labels#of(String[], String[], int)
+     */
+    public Labels intern(String[] names, String[] values, int count) {
+        return intern(Labels.of(names, values, count));
+    }
+
+    /**
+     * @param str a label name or value
+     * @return the shared string that is equal to the given one
+     */
+    public String intern(String str) {
+        String shared = strings.get(str);
+        if (shared != null) {
+            return shared;
+        }
+        if (strings.size() >= maxSize) {
+            strings.clear();
+        }
+        shared = strings.putIfAbsent(str, str);
+        return (shared != null) ? shared : str;
+    }
+
+    /**
+     * @return the number of label sets the interner holds
+     */
+    public int size() {
+        return labelSets.size();
+    }
+
+    /**
+     * Forgets all label sets and strings.
+     */
+    public void clear() {
+        labelSets.clear();
+        strings.clear();
+    }
+}
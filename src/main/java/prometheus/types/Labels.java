@@ -0,0 +1,308 @@
+package prometheus.types;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable set of labels. The labels are kept sorted by name in two parallel arrays and the hash code is
+ * computed up front, so label sets are compact, cheap to compare and make good hash keys.
+ *
+ * Use a {@link LabelInterner} to share label set instances, and the strings in them, across scrapes.
+ */
+public final class Labels {
+    private static final String[] NO_STRINGS = new String[0];
+
+    /**
+     * The label set without any labels.
+     */
+    public static final Labels EMPTY = new Labels(NO_STRINGS, NO_STRINGS);
+
+    private final String[] names;
+    private final String[] values;
+    private final int hash;
+    private Map<String, String> map; // created when first asked for
+
+    // the names must be sorted and unique
+    Labels(String[] names, String[] values) {
+        this.names = names;
+        this.values = values;
+        int h = 1;
+        for (int i = 0; i < names.length; i++) {
+            h = 31 * (31 * h + names[i].hashCode()) + values[i].hashCode();
+        }
+        this.hash = h;
+    }
+
+    /**
+     * @param labels the label names and values
+     * @return the label set with the given labels
+     */
+    public static Labels of(Map<String, String> labels) {
+        if (labels == null || labels.isEmpty()) {
+            return EMPTY;
+        }
+        String[] names = new String[labels.size()];
+        String[] values = new String[labels.size()];
+        int count = 0;
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            names[count] = label.getKey();
+            values[count] = label.getValue();
+            count++;
+        }
+        return of(names, values, count);
+    }
+
+    /**
+     * Creates a label set out of the first count names and values of the given arrays. The arrays are not
+     * kept, so callers can reuse them. If a name is given more than once, the last value given for it is used.
+     *
+     * @param names the label names
+     * @param values the label values, in the same order as the names
+     * @param count the number of labels
+     * @return the label set with the given labels
+     */
+    public static Labels of(String[] names, String[] values, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        String[] sortedNames = Arrays.copyOf(names, count);
+        String[] sortedValues = Arrays.copyOf(values, count);
+        for (int i = 0; i < count; i++) {
+            if (sortedNames[i] == null || sortedValues[i] == null) {
+                throw new IllegalArgumentException("Label names and values must not be null");
+            }
+        }
+
+        // insertion sort - label sets are small, and this keeps labels with the same name in the order given
+        for (int i = 1; i < count; i++) {
+            String name = sortedNames[i];
+            String value = sortedValues[i];
+            int j = i - 1;
+            while (j >= 0 && sortedNames[j].compareTo(name) > 0) {
+                sortedNames[j + 1] = sortedNames[j];
+                sortedValues[j + 1] = sortedValues[j];
+                j--;
+            }
+            sortedNames[j + 1] = name;
+            sortedValues[j + 1] = value;
+        }
+
+        // drop all but the last of labels with the same name
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (i + 1 < count && sortedNames[i].equals(sortedNames[i + 1])) {
+                continue;
+            }
+            sortedNames[unique] = sortedNames[i];
+            sortedValues[unique] = sortedValues[i];
+            unique++;
+        }
+        if (unique < count) {
+            sortedNames = Arrays.copyOf(sortedNames, unique);
+            sortedValues = Arrays.copyOf(sortedValues, unique);
+        }
+        return new Labels(sortedNames, sortedValues);
+    }
+
+    /**
+     * @return the number of labels
+     */
+    public int size() {
+        return names.length;
+    }
+
+    public boolean isEmpty() {
+        return names.length == 0;
+    }
+
+    /**
+     * @param index index of the label - labels are sorted by name
+     * @return the name of the label
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index index of the label - labels are sorted by name
+     * @return the value of the label
+     */
+    public String getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param name the name of the label to look for
+     * @return the value of the named label, or null if there is no label with that name
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return (index >= 0) ? values[index] : null;
+    }
+
+    /**
+     * @param name the name of the label to leave out
+     * @return a label set with all of these labels except for the named one - this label set if it has no
+     *         label with that name
+     */
+    public Labels without(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return this;
+        }
+        if (names.length == 1) {
+            return EMPTY;
+        }
+        String[] otherNames = new String[names.length - 1];
+        String[] otherValues = new String[names.length - 1];
+        System.arraycopy(names, 0, otherNames, 0, index);
+        System.arraycopy(values, 0, otherValues, 0, index);
+        System.arraycopy(names, index + 1, otherNames, index, names.length - index - 1);
+        System.arraycopy(values, index + 1, otherValues, index, names.length - index - 1);
+        return new Labels(otherNames, otherValues);
+    }
+
+    /**
+     * Tells if this label set is what the given label set would be without the named label, without building
+     * that label set.
+     *
+     * @param other the label set to compare to
+     * @param name the name of the label of the other label set that is left out of the comparison
+     * @return true if this label set is equal to {@code other.without(name)}
+     */
+    public boolean equalsWithout(Labels other, String name) {
+        int otherIndex = other.indexOf(name);
+        if (otherIndex < 0) {
+            return equals(other);
+        }
+        if (names.length != other.names.length - 1) {
+            return false;
+        }
+        for (int i = 0; i < names.length; i++) {
+            int j = (i < otherIndex) ? i : i + 1;
+            if (!names[i].equals(other.names[j]) || !values[i].equals(other.values[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return an unmodifiable map of the label names to their values, iterated in the order of the names
+     */
+    public Map<String, String> asMap() {
+        Map<String, String> result = map;
+        if (result == null) {
+            result = new MapView();
+            map = result;
+        }
+        return result;
+    }
+
+    // a copy of this label set with the strings that the interner gives for the names and values
+    Labels intern(LabelInterner interner) {
+        String[] internedNames = new String[names.length];
+        String[] internedValues = new String[values.length];
+        for (int i = 0; i < names.length; i++) {
+            internedNames[i] = interner.intern(names[i]);
+            internedValues[i] = interner.intern(values[i]);
+        }
+        return new Labels(internedNames, internedValues);
+    }
+
+    private int indexOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = names.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = names[middle].compareTo(name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Labels)) {
+            return false;
+        }
+        Labels other = (Labels) obj;
+        return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    private final class MapView extends AbstractMap<String, String> {
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (key instanceof String) && indexOf((String) key) >= 0;
+        }
+
+        @Override
+        public String get(Object key) {
+            return (key instanceof String) ? Labels.this.get((String) key) : null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return names.length;
+                }
+
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < names.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (next >= names.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(names[next], values[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package prometheus.types;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -9,54 +8,141 @@ import java.util.Map;
  */
 public abstract class Metric {
 
+    /**
+     * The timestamp of metrics that were not given a timestamp. Most metrics do not have one, in which case
+     * the time they were scraped is their time.
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
     public abstract static class Builder<B extends Builder<?>> {
         private String name;
-        private Map<String, String> labels;
+        private String[] labelNames;
+        private String[] labelValues;
+        private int labelCount;
+        private Labels labelSet;
+        private long timestamp = NO_TIMESTAMP;
 
         public B setName(String name) {
             this.name = name;
             return (B) this;
         }
 
+        /**
+         * @param timestamp the time of the metric in milliseconds since the epoch, or {@link Metric#NO_TIMESTAMP}
+         * @return this builder
+         */
+        public B setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return (B) this;
+        }
+
         public B addLabel(String name, String value) {
-            if (labels == null) {
-                labels = new LinkedHashMap<>(); // used linked hash map to retain ordering
+            if (labelSet != null) {
+                unpackLabelSet();
+            }
+            if (labelNames == null) {
+                labelNames = new String[4];
+                labelValues = new String[4];
+            } else if (labelCount == labelNames.length) {
+                labelNames = Arrays.copyOf(labelNames, labelCount * 2);
+                labelValues = Arrays.copyOf(labelValues, labelCount * 2);
             }
-            labels.put(name, value);
+            labelNames[labelCount] = name;
+            labelValues[labelCount] = value;
+            labelCount++;
             return (B) this;
         }
 
         public B addLabels(Map<String, String> map) {
-            if (labels == null) {
-                labels = new LinkedHashMap<>(); // used linked hash map to retain ordering
+            for (Map.Entry<String, String> label : map.entrySet()) {
+                addLabel(label.getKey(), label.getValue());
             }
-            labels.putAll(map);
+            return (B) this;
+        }
+
+        /**
+         * Replaces any labels added so far with the given label set. The metric will share the label set
+         * rather than copy it, which is what makes {@link LabelInterner interned} label sets pay off.
+         *
+         * @param labelSet the labels of the metric
+         * @return this builder
+         */
+        public B setLabels(Labels labelSet) {
+            this.labelCount = 0;
+            this.labelSet = labelSet;
             return (B) this;
         }
 
         public abstract <T extends Metric> T build();
+
+        // labels are added to a label set given earlier, so it has to be turned into labels added one by one
+        private void unpackLabelSet() {
+            Labels set = labelSet;
+            labelSet = null;
+            labelCount = 0;
+            for (int i = 0; i < set.size(); i++) {
+                addLabel(set.getName(i), set.getValue(i));
+            }
+        }
+
+        private Labels buildLabels() {
+            if (labelSet != null) {
+                return labelSet;
+            }
+            return Labels.of(labelNames, labelValues, labelCount);
+        }
     }
 
     private final String name;
-    private final Map<String, String> labels;
+    private final Labels labels;
+    private final long timestamp;
 
     protected Metric(Builder<?> builder) {
+        this(builder, null);
+    }
+
+    /**
+     * @param builder the builder of the metric
+     * @param ignoredLabel the name of a label that is not one of the labels of the metric type (such as the
+     *                     bucket label of a histogram) and so is left out if it was given, or null
+     */
+    protected Metric(Builder<?> builder, String ignoredLabel) {
         if (builder.name == null) {
             throw new IllegalArgumentException("Need to set name");
         }
 
         this.name = builder.name;
-        this.labels = builder.labels;
+        Labels builtLabels = builder.buildLabels();
+        this.labels = (ignoredLabel != null) ? builtLabels.without(ignoredLabel) : builtLabels;
+        this.timestamp = builder.timestamp;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the time of the metric in milliseconds since the epoch, or {@link #NO_TIMESTAMP} if it has none
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean hasTimestamp() {
+        return timestamp != NO_TIMESTAMP;
+    }
+
+    /**
+     * @return the labels of the metric as an unmodifiable map, iterated in the order of the label names
+     */
     public Map<String, String> getLabels() {
-        if (labels == null) {
-            return Collections.emptyMap();
-        }
+        return labels.asMap();
+    }
+
+    /**
+     * @return the labels of the metric
+     */
+    public Labels getLabelSet() {
         return labels;
     }
 }
@@ -1,17 +1,21 @@
 package prometheus.types;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 import prometheus.Util;
 
 public class Summary extends Metric {
+    private static final double[] NO_DOUBLES = new double[0];
 
     public static class Builder extends Metric.Builder<Builder> {
         private long sampleCount = 0;
         private double sampleSum = Double.NaN;
-        private List<Quantile> quantiles;
+        private double[] quantiles = NO_DOUBLES;
+        private double[] values = NO_DOUBLES;
+        private int quantileCount;
 
         public Summary build() {
             return new Summary(this);
@@ -28,18 +32,21 @@ public class Summary extends Metric {
         }
 
         public Builder addQuantile(double quantile, double value) {
-            if (quantiles == null) {
-                quantiles = new ArrayList<>();
+            if (quantileCount == quantiles.length) {
+                int capacity = Math.max(4, quantileCount * 2);
+                quantiles = Arrays.copyOf(quantiles, capacity);
+                values = Arrays.copyOf(values, capacity);
             }
-            quantiles.add(new Quantile(quantile, value));
+            quantiles[quantileCount] = quantile;
+            values[quantileCount] = value;
+            quantileCount++;
             return this;
         }
 
         public Builder addQuantiles(List<Quantile> quantiles) {
-            if (this.quantiles == null) {
-                this.quantiles = new ArrayList<>();
+            for (Quantile quantile : quantiles) {
+                addQuantile(quantile.getQuantile(), quantile.getValue());
             }
-            this.quantiles.addAll(quantiles);
             return this;
         }
     }
@@ -70,14 +77,21 @@ public class Summary extends Metric {
 
     private final long sampleCount;
     private final double sampleSum;
-    private final List<Quantile> quantiles;
+    // the quantiles are kept in two arrays rather than as Quantile objects so they take up little memory
+    private final double[] quantiles;
+    private final double[] values;
 
     private Summary(Builder builder) {
-        super(builder);
-        getLabels().remove("quantile");
+        super(builder, "quantile");
         this.sampleCount = builder.sampleCount;
         this.sampleSum = builder.sampleSum;
-        this.quantiles = builder.quantiles;
+        if (builder.quantileCount == 0) {
+            this.quantiles = NO_DOUBLES;
+            this.values = NO_DOUBLES;
+        } else {
+            this.quantiles = Arrays.copyOf(builder.quantiles, builder.quantileCount);
+            this.values = Arrays.copyOf(builder.values, builder.quantileCount);
+        }
     }
 
     public long getSampleCount() {
@@ -88,10 +102,48 @@ public class Summary extends Metric {
         return sampleSum;
     }
 
+    /**
+     * @return the number of quantiles
+     */
+    public int getQuantileCount() {
+        return quantiles.length;
+    }
+
+    /**
+     * @param index the index of the quantile, from 0 to {@link #getQuantileCount()} - 1
+     * @return the quantile, such as 0.99
+     */
+    public double getQuantile(int index) {
+        return quantiles[index];
+    }
+
+    /**
+     * @param index the index of the quantile, from 0 to {@link #getQuantileCount()} - 1
+     * @return the value at the quantile
+     */
+    public double getQuantileValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * The quantiles as Quantile objects. Each Quantile object is created when it is asked for, so use
+     * {@link #getQuantile(int)} and {@link #getQuantileValue(int)} when going over many summaries.
+     *
+     * @return an unmodifiable view of the quantiles
+     */
     public List<Quantile> getQuantiles() {
-        if (quantiles == null) {
-            return Collections.emptyList();
+        return new QuantileList();
+    }
+
+    private final class QuantileList extends AbstractList<Quantile> implements RandomAccess {
+        @Override
+        public Quantile get(int index) {
+            return new Quantile(quantiles[index], values[index]);
+        }
+
+        @Override
+        public int size() {
+            return quantiles.length;
         }
-        return quantiles;
     }
 }
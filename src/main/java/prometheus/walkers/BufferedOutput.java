@@ -0,0 +1,123 @@
+package prometheus.walkers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import prometheus.Util;
+
+/**
+ * A buffer the streaming walkers write their documents into. Unlike a {@link java.io.BufferedWriter} or a
+ * {@link java.io.PrintStream} it is not synchronized, and numbers are appended without creating strings.
+ *
+ * Walkers can't throw checked exceptions, so I/O errors are thrown as {@link UncheckedIOException}s.
+ */
+final class BufferedOutput {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+    private final char[] buffer;
+    private final byte[] number = new byte[Math.max(Util.MAX_DOUBLE_LENGTH, 20)];
+    private int position;
+
+    BufferedOutput(Writer writer, int bufferSize) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer must not be null");
+        }
+        if (bufferSize < number.length) {
+            throw new IllegalArgumentException("Buffer size must be at least " + number.length);
+        }
+        this.writer = writer;
+        this.buffer = new char[bufferSize];
+    }
+
+    BufferedOutput append(char c) {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = c;
+        return this;
+    }
+
+    /**
+     * Appends the string as it is - callers must escape anything that needs escaping.
+     */
+    BufferedOutput append(String str) {
+        int length = str.length();
+        int start = 0;
+        while (start < length) {
+            if (position == buffer.length) {
+                drain();
+            }
+            int count = Math.min(length - start, buffer.length - position);
+            str.getChars(start, start + count, buffer, position);
+            position += count;
+            start += count;
+        }
+        return this;
+    }
+
+    /**
+     * Appends the value the way {@link Util#convertDoubleToString(double)} converts it.
+     */
+    BufferedOutput append(double value) {
+        return appendNumber(Util.writeDouble(value, number, 0));
+    }
+
+    BufferedOutput append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value));
+        }
+        int length = 0;
+        if (value < 0) {
+            number[length++] = '-';
+            value = -value;
+        }
+        int end = length + digitCount(value);
+        for (int i = end - 1; i >= length; i--) {
+            number[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return appendNumber(end);
+    }
+
+    /**
+     * Writes everything appended so far to the writer and flushes the writer.
+     */
+    void flush() {
+        drain();
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BufferedOutput appendNumber(int length) {
+        if (buffer.length - position < length) {
+            drain();
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (char) number[i];
+        }
+        return this;
+    }
+
+    private void drain() {
+        try {
+            writer.write(buffer, 0, position);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        position = 0;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
@@ -1,129 +1,200 @@
 package prometheus.walkers;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
-import prometheus.Util;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
-import prometheus.types.Histogram.Bucket;
+import prometheus.types.Labels;
 import prometheus.types.MetricFamily;
 import prometheus.types.Summary;
-import prometheus.types.Summary.Quantile;
 
+/**
+ * Writes the metric data as a JSON document. The document is written to a buffer which is passed on to the
+ * stream or writer whenever it fills up, and flushed when the walk finishes. The stream or writer is not closed.
+ */
 public class JSONPrometheusMetricsWalker implements PrometheusMetricsWalker {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final BufferedOutput out;
+
+    /**
+     * Writes the JSON document to stdout.
+     */
+    public JSONPrometheusMetricsWalker() {
+        this(System.out);
+    }
+
+    /**
+     * @param outputStream where the JSON document is written to, encoded in UTF-8
+     */
+    public JSONPrometheusMetricsWalker(OutputStream outputStream) {
+        this(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param writer where the JSON document is written to
+     */
+    public JSONPrometheusMetricsWalker(Writer writer) {
+        this(writer, BufferedOutput.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param writer where the JSON document is written to
+     * @param bufferSize how many characters are buffered before they are passed on to the writer
+     */
+    public JSONPrometheusMetricsWalker(Writer writer, int bufferSize) {
+        this.out = new BufferedOutput(writer, bufferSize);
+    }
 
     @Override
     public void walkStart() {
-        System.out.println("[");
+        out.append("[\n");
     }
 
     @Override
     public void walkFinish(int familiesProcessed, int metricsProcessed) {
         if (familiesProcessed > 0) {
-            System.out.println("    ]");
-            System.out.println("  }");
+            out.append("    ]\n");
+            out.append("  }\n");
         }
-        System.out.println("]");
+        out.append("]\n");
+        out.flush();
     }
 
     @Override
     public void walkMetricFamily(MetricFamily familyInfo, int index) {
         if (index > 0) {
-            System.out.printf("    ]\n");
-            System.out.printf("  },\n");
+            out.append("    ]\n");
+            out.append("  },\n");
         }
 
-        System.out.printf("  {\n");
-        System.out.printf("    \"name\":\"%s\",\n", familyInfo.getName());
-        System.out.printf("    \"help\":\"%s\",\n", familyInfo.getHelp());
-        System.out.printf("    \"type\":\"%s\",\n", familyInfo.getType());
-        System.out.printf("    \"metrics\":[\n");
+        out.append("  {\n");
+        out.append("    \"name\":");
+        appendString(familyInfo.getName());
+        out.append(",\n    \"help\":");
+        appendString(familyInfo.getHelp());
+        out.append(",\n    \"type\":\"").append(familyInfo.getType().toString()).append("\",\n");
+        out.append("    \"metrics\":[\n");
     }
 
     @Override
     public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
-        System.out.printf("      {\n");
-        outputLabels(metric.getLabels());
-        System.out.printf("        \"value\":\"%s\"\n", Util.convertDoubleToString(metric.getValue()));
-        if ((index + 1) == family.getMetrics().size()) {
-            System.out.printf("      }\n");
-        } else {
-            System.out.printf("      },\n"); // there are more coming
-        }
+        out.append("      {\n");
+        outputLabels(metric.getLabelSet());
+        out.append("        \"value\":\"").append(metric.getValue()).append("\"\n");
+        outputMetricEnd(family, index);
     }
 
     @Override
     public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
-        System.out.printf("      {\n");
-        outputLabels(metric.getLabels());
-        System.out.printf("        \"value\":\"%s\"\n", Util.convertDoubleToString(metric.getValue()));
-        if ((index + 1) == family.getMetrics().size()) {
-            System.out.printf("      }\n");
-        } else {
-            System.out.printf("      },\n"); // there are more coming
-        }
+        out.append("      {\n");
+        outputLabels(metric.getLabelSet());
+        out.append("        \"value\":\"").append(metric.getValue()).append("\"\n");
+        outputMetricEnd(family, index);
     }
 
     @Override
     public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
-        System.out.printf("      {\n");
-        outputLabels(metric.getLabels());
-        if (!metric.getQuantiles().isEmpty()) {
-            System.out.printf("        \"quantiles\":{\n");
-            Iterator<Quantile> iter = metric.getQuantiles().iterator();
-            while (iter.hasNext()) {
-                Quantile quantile = iter.next();
-                System.out.printf("          \"%f\":\"%f\"%s\n",
-                        quantile.getQuantile(), quantile.getValue(), (iter.hasNext()) ? "," : "");
+        out.append("      {\n");
+        outputLabels(metric.getLabelSet());
+        int quantileCount = metric.getQuantileCount();
+        if (quantileCount > 0) {
+            out.append("        \"quantiles\":{\n");
+            for (int i = 0; i < quantileCount; i++) {
+                out.append("          \"").append(metric.getQuantile(i)).append("\":\"")
+                        .append(metric.getQuantileValue(i)).append('"');
+                out.append((i + 1 < quantileCount) ? ",\n" : "\n");
             }
-            System.out.printf("        },\n");
-        }
-        System.out.printf("        \"count\":\"%d\",\n", metric.getSampleCount());
-        System.out.printf("        \"sum\":\"%s\"\n", Util.convertDoubleToString(metric.getSampleSum()));
-        if ((index + 1) == family.getMetrics().size()) {
-            System.out.printf("      }\n");
-        } else {
-            System.out.printf("      },\n"); // there are more coming
+            out.append("        },\n");
         }
+        out.append("        \"count\":\"").append(metric.getSampleCount()).append("\",\n");
+        out.append("        \"sum\":\"").append(metric.getSampleSum()).append("\"\n");
+        outputMetricEnd(family, index);
     }
 
     @Override
     public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
-        System.out.printf("      {\n");
-        outputLabels(metric.getLabels());
-        if (!metric.getBuckets().isEmpty()) {
-            System.out.printf("        \"buckets\":{\n");
-            Iterator<Bucket> iter = metric.getBuckets().iterator();
-            while (iter.hasNext()) {
-                Bucket bucket = iter.next();
-                System.out.printf("          \"%f\":\"%d\"%s\n",
-                        bucket.getUpperBound(), bucket.getCumulativeCount(), (iter.hasNext()) ? "," : "");
+        out.append("      {\n");
+        outputLabels(metric.getLabelSet());
+        int bucketCount = metric.getBucketCount();
+        if (bucketCount > 0) {
+            out.append("        \"buckets\":{\n");
+            for (int i = 0; i < bucketCount; i++) {
+                out.append("          \"").append(metric.getUpperBound(i)).append("\":\"")
+                        .append(metric.getCumulativeCount(i)).append('"');
+                out.append((i + 1 < bucketCount) ? ",\n" : "\n");
             }
-            System.out.printf("        },\n");
+            out.append("        },\n");
         }
-        System.out.printf("        \"count\":\"%d\",\n", metric.getSampleCount());
-        System.out.printf("        \"sum\":\"%s\"\n", Util.convertDoubleToString(metric.getSampleSum()));
+        out.append("        \"count\":\"").append(metric.getSampleCount()).append("\",\n");
+        out.append("        \"sum\":\"").append(metric.getSampleSum()).append("\"\n");
+        outputMetricEnd(family, index);
+    }
+
+    private void outputMetricEnd(MetricFamily family, int index) {
         if ((index + 1) == family.getMetrics().size()) {
-            System.out.printf("      }\n");
+            out.append("      }\n");
         } else {
-            System.out.printf("      },\n"); // there are more coming
+            out.append("      },\n"); // there are more coming
         }
     }
 
-    private void outputLabels(Map<String, String> labels) {
-        if (labels == null || labels.isEmpty()) {
+    private void outputLabels(Labels labels) {
+        if (labels.isEmpty()) {
             return;
         }
-        System.out.printf("        \"labels\":{\n");
-        Iterator<Entry<String, String>> iter = labels.entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<String, String> labelPair = iter.next();
-            String comma = (iter.hasNext()) ? "," : "";
-            System.out.printf("          \"%s\":\"%s\"%s\n", labelPair.getKey(), labelPair.getValue(), comma);
+        out.append("        \"labels\":{\n");
+        for (int i = 0; i < labels.size(); i++) {
+            out.append("          ");
+            appendString(labels.getName(i));
+            out.append(':');
+            appendString(labels.getValue(i));
+            out.append((i + 1 < labels.size()) ? ",\n" : "\n");
+        }
+        out.append("        },\n");
+    }
+
+    // appends the string as a quoted JSON string; a null string is written as an empty one
+    private void appendString(String str) {
+        out.append('"');
+        if (str != null) {
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                out.append('\\');
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        out.append(c);
+                        break;
+                    case '\n':
+                        out.append('n');
+                        break;
+                    case '\r':
+                        out.append('r');
+                        break;
+                    case '\t':
+                        out.append('t');
+                        break;
+                    case '\b':
+                        out.append('b');
+                        break;
+                    case '\f':
+                        out.append('f');
+                        break;
+                    default:
+                        out.append("u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+                        break;
+                }
+            }
         }
-        System.out.printf("        },\n");
+        out.append('"');
     }
 }
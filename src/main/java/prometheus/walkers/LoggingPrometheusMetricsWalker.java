@@ -4,6 +4,7 @@ import java.util.Map;
 
 import org.jboss.logging.Logger;
 import org.jboss.logging.Logger.Level;
+import prometheus.Util;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
@@ -44,37 +45,49 @@ public class LoggingPrometheusMetricsWalker implements PrometheusMetricsWalker {
 
     @Override
     public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
-        log.logf(getLogLevel(), "COUNTER: %s%s=%f",
+        if (!log.isEnabled(getLogLevel())) {
+            return; // don't bother formatting the values
+        }
+        log.logf(getLogLevel(), "COUNTER: %s%s=%s",
                 metric.getName(),
                 buildLabelListString(metric.getLabels()),
-                metric.getValue());
+                Util.convertDoubleToString(metric.getValue()));
     }
 
     @Override
     public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
-        log.logf(getLogLevel(), "GAUGE: %s%s=%f",
+        if (!log.isEnabled(getLogLevel())) {
+            return; // don't bother formatting the values
+        }
+        log.logf(getLogLevel(), "GAUGE: %s%s=%s",
                 metric.getName(),
                 buildLabelListString(metric.getLabels()),
-                metric.getValue());
+                Util.convertDoubleToString(metric.getValue()));
     }
 
     @Override
     public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
-        log.logf(getLogLevel(), "SUMMARY: %s%s: count=%d, sum=%f, quantiles=%s",
+        if (!log.isEnabled(getLogLevel())) {
+            return; // don't bother formatting the values
+        }
+        log.logf(getLogLevel(), "SUMMARY: %s%s: count=%d, sum=%s, quantiles=%s",
                 metric.getName(),
                 buildLabelListString(metric.getLabels()),
                 metric.getSampleCount(),
-                metric.getSampleSum(),
+                Util.convertDoubleToString(metric.getSampleSum()),
                 metric.getQuantiles());
     }
 
     @Override
     public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
-        log.logf(getLogLevel(), "HISTOGRAM: %s%s: count=%d, sum=%f, buckets=%s",
+        if (!log.isEnabled(getLogLevel())) {
+            return; // don't bother formatting the values
+        }
+        log.logf(getLogLevel(), "HISTOGRAM: %s%s: count=%d, sum=%s, buckets=%s",
                 metric.getName(),
                 buildLabelListString(metric.getLabels()),
                 metric.getSampleCount(),
-                metric.getSampleSum(),
+                Util.convertDoubleToString(metric.getSampleSum()),
                 metric.getBuckets());
     }
 
@@ -2,6 +2,7 @@ package prometheus.walkers;
 
 import java.net.URL;
 
+import prometheus.Util;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
@@ -46,41 +47,41 @@ public class SimplePrometheusMetricsWalker implements PrometheusMetricsWalker {
 
     @Override
     public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
-        System.out.printf("  +%2d. %s%s [%f]\n",
+        System.out.printf("  +%2d. %s%s [%s]\n",
                 index,
                 metric.getName(),
                 buildLabelListString(metric.getLabels(), "{", "}"),
-                metric.getValue());
+                Util.convertDoubleToString(metric.getValue()));
     }
 
     @Override
     public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
-        System.out.printf("  +%2d. %s%s [%f]\n",
+        System.out.printf("  +%2d. %s%s [%s]\n",
                 index,
                 metric.getName(),
                 buildLabelListString(metric.getLabels(), "{", "}"),
-                metric.getValue());
+                Util.convertDoubleToString(metric.getValue()));
     }
 
     @Override
     public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
-        System.out.printf("  +%2d. %s%s [%d/%f] {%s}\n",
+        System.out.printf("  +%2d. %s%s [%d/%s] {%s}\n",
                 index,
                 metric.getName(),
                 buildLabelListString(metric.getLabels(), "{", "}"),
                 metric.getSampleCount(),
-                metric.getSampleSum(),
+                Util.convertDoubleToString(metric.getSampleSum()),
                 metric.getQuantiles());
     }
 
     @Override
     public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
-        System.out.printf("  +%2d. %s%s [%d/%f] {%s}\n",
+        System.out.printf("  +%2d. %s%s [%d/%s] {%s}\n",
                 index,
                 metric.getName(),
                 buildLabelListString(metric.getLabels(), "{", "}"),
                 metric.getSampleCount(),
-                metric.getSampleSum(),
+                Util.convertDoubleToString(metric.getSampleSum()),
                 metric.getBuckets());
     }
 }
@@ -1,118 +1,202 @@
 package prometheus.walkers;
 
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
-import prometheus.Util;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
-import prometheus.types.Histogram.Bucket;
+import prometheus.types.Labels;
 import prometheus.types.MetricFamily;
 import prometheus.types.MetricType;
 import prometheus.types.Summary;
-import prometheus.types.Summary.Quantile;
 
+/**
+ * Writes the metric data as an XML document. Like the {@link JSONPrometheusMetricsWalker}, the document is
+ * written to a fixed size buffer which is passed on to the stream or writer whenever it fills up, so exports
+ * of any size can be streamed to a file or socket. The stream or writer is flushed, but not closed, when the
+ * walk finishes.
+ */
 public class XMLPrometheusMetricsWalker implements PrometheusMetricsWalker {
 
     private final URL url;
+    private final BufferedOutput out;
 
+    /**
+     * Writes the XML document to stdout.
+     */
     public XMLPrometheusMetricsWalker() {
         this(null);
     }
 
     /**
-     * Use this constructor if you know the URL where the metric data came from.
+     * Use this constructor if you know the URL where the metric data came from. The XML document is written to
+     * stdout.
      *
-     * @param metricFamilies
      * @param url the protocol endpoint that supplied the Prometheus metric data
      */
     public XMLPrometheusMetricsWalker(URL url) {
+        this(url, System.out);
+    }
+
+    /**
+     * @param url the protocol endpoint that supplied the Prometheus metric data, or null if not known
+     * @param outputStream where the XML document is written to, encoded in UTF-8
+     */
+    public XMLPrometheusMetricsWalker(URL url, OutputStream outputStream) {
+        this(url, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param url the protocol endpoint that supplied the Prometheus metric data, or null if not known
+     * @param writer where the XML document is written to
+     */
+    public XMLPrometheusMetricsWalker(URL url, Writer writer) {
+        this(url, writer, BufferedOutput.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param url the protocol endpoint that supplied the Prometheus metric data, or null if not known
+     * @param writer where the XML document is written to
+     * @param bufferSize how many characters are buffered before they are passed on to the writer
+     */
+    public XMLPrometheusMetricsWalker(URL url, Writer writer, int bufferSize) {
         this.url = url;
+        this.out = new BufferedOutput(writer, bufferSize);
     }
 
     @Override
     public void walkStart() {
-        System.out.printf("<metricFamilies>\n");
+        out.append("<metricFamilies>\n");
 
         // only provide the URL endpoint element if we know the URL where the metrics came from
         if (url != null) {
-            System.out.printf("  <url>%s</url>\n", url);
+            out.append("  <url>");
+            appendText(url.toString());
+            out.append("</url>\n");
         }
     }
 
     @Override
     public void walkFinish(int familiesProcessed, int metricsProcessed) {
         if (familiesProcessed > 0) {
-            System.out.printf("  </metricFamily>\n");
+            out.append("  </metricFamily>\n");
         }
-        System.out.println("</metricFamilies>");
+        out.append("</metricFamilies>\n");
+        out.flush();
     }
 
     @Override
     public void walkMetricFamily(MetricFamily family, int index) {
         if (index > 0) {
-            System.out.printf("  </metricFamily>\n");
+            out.append("  </metricFamily>\n");
         }
 
-        System.out.printf("  <metricFamily>\n");
-        System.out.printf("    <name>%s</name>\n", family.getName());
-        System.out.printf("    <type>%s</type>\n", family.getType());
-        System.out.printf("    <help>%s</help>\n", family.getHelp());
+        out.append("  <metricFamily>\n");
+        out.append("    <name>");
+        appendText(family.getName());
+        out.append("</name>\n");
+        out.append("    <type>").append(family.getType().toString()).append("</type>\n");
+        out.append("    <help>");
+        appendText(family.getHelp());
+        out.append("</help>\n");
     }
 
     @Override
     public void walkCounterMetric(MetricFamily family, Counter metric, int index) {
-        System.out.printf("    <metric>\n");
-        System.out.printf("      <name>%s</name>\n", family.getName());
-        System.out.printf("      <type>%s</type>\n", MetricType.COUNTER);
-        System.out.printf("      <labels>%s</labels>\n", buildLabelListString(metric.getLabels(), null, null));
-        System.out.printf("      <value>%s</value>\n", Util.convertDoubleToString(metric.getValue()));
-        System.out.printf("    </metric>\n");
+        outputMetricStart(family, MetricType.COUNTER, metric.getLabelSet());
+        out.append("      <value>").append(metric.getValue()).append("</value>\n");
+        out.append("    </metric>\n");
     }
 
     @Override
     public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
-        System.out.printf("    <metric>\n");
-        System.out.printf("      <name>%s</name>\n", family.getName());
-        System.out.printf("      <type>%s</type>\n", MetricType.GAUGE);
-        System.out.printf("      <labels>%s</labels>\n", buildLabelListString(metric.getLabels(), null, null));
-        System.out.printf("      <value>%s</value>\n", Util.convertDoubleToString(metric.getValue()));
-        System.out.printf("    </metric>\n");
+        outputMetricStart(family, MetricType.GAUGE, metric.getLabelSet());
+        out.append("      <value>").append(metric.getValue()).append("</value>\n");
+        out.append("    </metric>\n");
     }
 
     @Override
     public void walkSummaryMetric(MetricFamily family, Summary metric, int index) {
-        System.out.printf("    <metric>\n");
-        System.out.printf("      <name>%s</name>\n", family.getName());
-        System.out.printf("      <type>%s</type>\n", MetricType.SUMMARY);
-        System.out.printf("      <labels>%s</labels>\n", buildLabelListString(metric.getLabels(), null, null));
-        System.out.printf("      <count>%d</count>\n", metric.getSampleCount());
-        System.out.printf("      <sum>%s</sum>\n", Util.convertDoubleToString(metric.getSampleSum()));
-        if (!metric.getQuantiles().isEmpty()) {
-            System.out.printf("      <quantiles>\n");
-            for (Quantile quantile : metric.getQuantiles()) {
-                System.out.printf("        <quantile>%s</quantile>\n", quantile);
+        outputMetricStart(family, MetricType.SUMMARY, metric.getLabelSet());
+        out.append("      <count>").append(metric.getSampleCount()).append("</count>\n");
+        out.append("      <sum>").append(metric.getSampleSum()).append("</sum>\n");
+        if (metric.getQuantileCount() > 0) {
+            out.append("      <quantiles>\n");
+            for (int i = 0; i < metric.getQuantileCount(); i++) {
+                out.append("        <quantile>").append(metric.getQuantile(i)).append(':')
+                        .append(metric.getQuantileValue(i)).append("</quantile>\n");
             }
-            System.out.printf("      </quantiles>\n");
+            out.append("      </quantiles>\n");
         }
-        System.out.printf("    </metric>\n");
+        out.append("    </metric>\n");
     }
 
     @Override
     public void walkHistogramMetric(MetricFamily family, Histogram metric, int index) {
-        System.out.printf("    <metric>\n");
-        System.out.printf("      <name>%s</name>\n", family.getName());
-        System.out.printf("      <type>%s</type>\n", MetricType.HISTOGRAM);
-        System.out.printf("      <labels>%s</labels>\n", buildLabelListString(metric.getLabels(), null, null));
-        System.out.printf("      <count>%d</count>\n", metric.getSampleCount());
-        System.out.printf("      <sum>%s</sum>\n", Util.convertDoubleToString(metric.getSampleSum()));
-        if (!metric.getBuckets().isEmpty()) {
-            System.out.printf("      <buckets>\n");
-            for (Bucket bucket : metric.getBuckets()) {
-                System.out.printf("        <bucket>%s</bucket>\n", bucket);
+        outputMetricStart(family, MetricType.HISTOGRAM, metric.getLabelSet());
+        out.append("      <count>").append(metric.getSampleCount()).append("</count>\n");
+        out.append("      <sum>").append(metric.getSampleSum()).append("</sum>\n");
+        if (metric.getBucketCount() > 0) {
+            out.append("      <buckets>\n");
+            for (int i = 0; i < metric.getBucketCount(); i++) {
+                out.append("        <bucket>").append(metric.getUpperBound(i)).append(':')
+                        .append(metric.getCumulativeCount(i)).append("</bucket>\n");
+            }
+            out.append("      </buckets>\n");
+        }
+        out.append("    </metric>\n");
+    }
+
+    private void outputMetricStart(MetricFamily family, MetricType type, Labels labels) {
+        out.append("    <metric>\n");
+        out.append("      <name>");
+        appendText(family.getName());
+        out.append("</name>\n");
+        out.append("      <type>").append(type.toString()).append("</type>\n");
+
+        // the same name=value,name=value list that buildLabelListString builds
+        out.append("      <labels>");
+        for (int i = 0; i < labels.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendText(labels.getName(i));
+            out.append('=');
+            appendText(labels.getValue(i));
+        }
+        out.append("</labels>\n");
+    }
+
+    // appends the string as XML character data; characters XML can't represent are replaced
+    private void appendText(String str) {
+        if (str == null) {
+            return;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '\t':
+                case '\n':
+                case '\r':
+                    out.append(c);
+                    break;
+                default:
+                    out.append((c < 0x20 || c == 0xFFFE || c == 0xFFFF) ? '\uFFFD' : c);
+                    break;
             }
-            System.out.printf("      </bucket>\n");
         }
-        System.out.printf("    </metric>\n");
     }
 }
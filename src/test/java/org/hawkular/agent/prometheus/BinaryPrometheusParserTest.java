@@ -17,6 +17,8 @@
 
 package prometheus;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -30,9 +32,14 @@ import org.junit.Assert;
 import org.junit.Test;
 import prometheus.binary.BinaryPrometheusMetricDataParser;
 import prometheus.binary.BinaryPrometheusMetricsProcessor;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.MetricType;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
 import prometheus.walkers.LoggingPrometheusMetricsWalker;
 import prometheus.walkers.PrometheusMetricsWalker;
 
+import io.prometheus.client.Metrics;
 import io.prometheus.client.Metrics.MetricFamily;
 
 public class BinaryPrometheusParserTest {
@@ -111,4 +118,48 @@ public class BinaryPrometheusParserTest {
         List<prometheus.types.MetricFamily> allFamilies = scraper.scrape();
         Assert.assertEquals(71, allFamilies.size());
     }
+
+    @Test
+    public void testHistogramsAndUntyped() throws Exception {
+        Metrics.Metric.Builder histogram = Metrics.Metric.newBuilder()
+                .addLabel(Metrics.LabelPair.newBuilder().setName("path").setValue("/api"))
+                .setHistogram(Metrics.Histogram.newBuilder()
+                        .setSampleCount(7)
+                        .setSampleSum(533.25)
+                        .addBucket(Metrics.Bucket.newBuilder().setUpperBound(100).setCumulativeCount(5))
+                        .addBucket(Metrics.Bucket.newBuilder().setUpperBound(1000).setCumulativeCount(6))
+                        .addBucket(Metrics.Bucket.newBuilder().setUpperBound(Double.POSITIVE_INFINITY)
+                                .setCumulativeCount(7)));
+        Metrics.Metric.Builder untyped = Metrics.Metric.newBuilder()
+                .setUntyped(Metrics.Untyped.newBuilder().setValue(42));
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Metrics.MetricFamily.newBuilder().setName("request_size_bytes").setHelp("Request sizes")
+                .setType(Metrics.MetricType.HISTOGRAM).addMetric(histogram).build().writeDelimitedTo(data);
+        Metrics.MetricFamily.newBuilder().setName("some_untyped").setType(Metrics.MetricType.UNTYPED)
+                .addMetric(untyped).build().writeDelimitedTo(data);
+
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        new BinaryPrometheusMetricsProcessor(new ByteArrayInputStream(data.toByteArray()), collector).walk();
+        List<prometheus.types.MetricFamily> families = collector.getAllMetricFamilies();
+        Assert.assertEquals(2, families.size());
+
+        prometheus.types.MetricFamily family = families.get(0);
+        Assert.assertEquals(MetricType.HISTOGRAM, family.getType());
+        Assert.assertEquals(1, family.getMetrics().size());
+        Histogram converted = (Histogram) family.getMetrics().get(0);
+        Assert.assertEquals("request_size_bytes", converted.getName());
+        Assert.assertEquals("/api", converted.getLabels().get("path"));
+        Assert.assertEquals(7, converted.getSampleCount());
+        Assert.assertEquals(533.25, converted.getSampleSum(), 0);
+        Assert.assertEquals(3, converted.getBuckets().size());
+        Assert.assertEquals(100, converted.getBuckets().get(0).getUpperBound(), 0);
+        Assert.assertEquals(5, converted.getBuckets().get(0).getCumulativeCount());
+        Assert.assertEquals(Double.POSITIVE_INFINITY, converted.getBuckets().get(2).getUpperBound(), 0);
+        Assert.assertEquals(7, converted.getBuckets().get(2).getCumulativeCount());
+
+        family = families.get(1);
+        Assert.assertEquals(MetricType.GAUGE, family.getType());
+        Assert.assertEquals(42, ((Gauge) family.getMetrics().get(0)).getValue(), 0);
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+
+public class DeltaScraperTest {
+
+    /**
+     * Scrapes the given text data, one after the other.
+     */
+    private static class FakeScraper extends PrometheusScraper {
+        private final List<String> scrapes;
+
+        FakeScraper(String... scrapes) throws IOException {
+            super(new URL("http://localhost:1/metrics"), PrometheusDataFormat.TEXT);
+            this.scrapes = new ArrayList<>(Arrays.asList(scrapes));
+        }
+
+        @Override
+        protected OpenConnectionDetails openConnection(URL endpointUrl) throws IOException {
+            if (scrapes.isEmpty()) {
+                throw new IOException("Nothing more to scrape");
+            }
+            byte[] data = scrapes.remove(0).getBytes(StandardCharsets.UTF_8);
+            return new OpenConnectionDetails(new ByteArrayInputStream(data), "text/plain");
+        }
+    }
+
+    /**
+     * Writes down what it is told.
+     */
+    private static class RecordingListener implements DeltaListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void deltaStart() {
+            events.clear();
+        }
+
+        @Override
+        public void seriesAdded(MetricFamily family, Metric metric) {
+            events.add("added " + family.getName() + metric.getLabelSet());
+        }
+
+        @Override
+        public void seriesChanged(MetricFamily family, Metric metric) {
+            events.add("changed " + family.getName() + metric.getLabelSet());
+        }
+
+        @Override
+        public void counterReset(MetricFamily family, Metric metric) {
+            events.add("reset " + family.getName() + metric.getLabelSet());
+        }
+
+        @Override
+        public void seriesRemoved(String familyName, Labels labels) {
+            events.add("removed " + familyName + labels);
+        }
+
+        @Override
+        public void deltaFinish(int added, int changed, int removed, int unchanged) {
+            events.add(String.format("finish %d/%d/%d/%d", added, changed, removed, unchanged));
+        }
+    }
+
+    @Test
+    public void testDeltas() throws Exception {
+        DeltaScraper scraper = new DeltaScraper(new FakeScraper(
+                "# TYPE requests counter\n"
+                        + "requests{code=\"200\"} 10\n"
+                        + "requests{code=\"500\"} 2\n"
+                        + "# TYPE temperature gauge\n"
+                        + "temperature 20\n"
+                        + "# TYPE latency histogram\n"
+                        + "latency_bucket{le=\"1\"} 1\n"
+                        + "latency_bucket{le=\"+Inf\"} 2\n"
+                        + "latency_sum 1.5\n"
+                        + "latency_count 2\n",
+                "# TYPE requests counter\n"
+                        + "requests{code=\"200\"} 12\n"
+                        + "requests{code=\"404\"} 1\n"
+                        + "# TYPE temperature gauge\n"
+                        + "temperature 20\n"
+                        + "# TYPE latency histogram\n"
+                        + "latency_bucket{le=\"1\"} 2\n" // only a bucket and the sum change
+                        + "latency_bucket{le=\"+Inf\"} 2\n"
+                        + "latency_sum 1.25\n"
+                        + "latency_count 2\n",
+                "# TYPE requests counter\n"
+                        + "requests{code=\"200\"} 3\n"
+                        + "requests{code=\"404\"} 1\n"
+                        + "# TYPE temperature gauge\n"
+                        + "temperature 19\n"
+                        + "# TYPE latency histogram\n"
+                        + "latency_bucket{le=\"1\"} 0\n"
+                        + "latency_bucket{le=\"+Inf\"} 0\n"
+                        + "latency_sum 0\n"
+                        + "latency_count 0\n"));
+        RecordingListener listener = new RecordingListener();
+
+        scraper.scrape(listener);
+        Assert.assertEquals(Arrays.asList(
+                "added requests{code=200}",
+                "added requests{code=500}",
+                "added temperature{}",
+                "added latency{}",
+                "finish 4/0/0/0"), listener.events);
+        Assert.assertEquals(4, scraper.getSeriesCount());
+
+        scraper.scrape(listener);
+        Assert.assertEquals(Arrays.asList(
+                "changed requests{code=200}",
+                "added requests{code=404}",
+                "changed latency{}",
+                "removed requests{code=500}",
+                "finish 1/2/1/1"), listener.events);
+        Assert.assertEquals(4, scraper.getSeriesCount());
+
+        scraper.scrape(listener);
+        Assert.assertEquals(Arrays.asList(
+                "reset requests{code=200}",
+                "changed temperature{}",
+                "reset latency{}",
+                "finish 0/3/0/1"), listener.events);
+
+        // a failed scrape reports nothing as removed
+        try {
+            scraper.scrape(listener);
+            Assert.fail("The scrape should have failed");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(4, scraper.getSeriesCount());
+
+        scraper.reset();
+        Assert.assertEquals(0, scraper.getSeriesCount());
+    }
+
+    @Test
+    public void testUnreadableDataRemovesNothing() throws Exception {
+        DeltaScraper scraper = new DeltaScraper(new FakeScraper(
+                "# TYPE a gauge\na 1\n# TYPE b gauge\nb 2\n",
+                "\u0080 not text"));
+        RecordingListener listener = new RecordingListener();
+        scraper.scrape(listener);
+        scraper.scrape(listener);
+        Assert.assertEquals(Arrays.asList("finish 0/0/0/0"), listener.events);
+        Assert.assertEquals(2, scraper.getSeriesCount());
+    }
+}
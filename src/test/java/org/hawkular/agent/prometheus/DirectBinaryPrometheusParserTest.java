@@ -0,0 +1,318 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.binary.BinaryPrometheusMetricsProcessor;
+import prometheus.binary.DirectBinaryPrometheusMetricsProcessor;
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.types.Summary;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Timestamp;
+
+import io.prometheus.client.Metrics;
+
+/**
+ * Makes sure the direct decoder gives exactly the same results as the generated protocol buffer code.
+ */
+public class DirectBinaryPrometheusParserTest {
+
+    private static String describe(List<MetricFamily> families) {
+        StringBuilder str = new StringBuilder();
+        for (MetricFamily family : families) {
+            str.append(family.getName()).append('|').append(family.getHelp()).append('|').append(family.getType())
+                    .append('\n');
+            for (Metric metric : family.getMetrics()) {
+                str.append("  ").append(metric.getClass().getSimpleName()).append(' ').append(metric.getName())
+                        .append(metric.getLabels()).append('@').append(metric.getTimestamp());
+                if (metric instanceof Counter) {
+                    str.append(' ').append(((Counter) metric).getValue());
+                } else if (metric instanceof Gauge) {
+                    str.append(' ').append(((Gauge) metric).getValue());
+                } else if (metric instanceof Summary) {
+                    Summary summary = (Summary) metric;
+                    str.append(' ').append(summary.getSampleCount()).append(' ').append(summary.getSampleSum());
+                    for (Summary.Quantile quantile : summary.getQuantiles()) {
+                        str.append(' ').append(quantile.getQuantile()).append('=').append(quantile.getValue());
+                    }
+                } else {
+                    Histogram histogram = (Histogram) metric;
+                    str.append(' ').append(histogram.getSampleCount()).append(' ').append(histogram.getSampleSum());
+                    for (Histogram.Bucket bucket : histogram.getBuckets()) {
+                        str.append(' ').append(bucket.getUpperBound()).append('=').append(bucket.getCumulativeCount());
+                    }
+                }
+                str.append('\n');
+            }
+        }
+        return str.toString();
+    }
+
+    private static void assertSameResults(byte[] data, int expectedFamilies) {
+        CollectorPrometheusMetricsWalker generated = new CollectorPrometheusMetricsWalker();
+        new BinaryPrometheusMetricsProcessor(new ByteArrayInputStream(data), generated).walk();
+        CollectorPrometheusMetricsWalker direct = new CollectorPrometheusMetricsWalker();
+        new DirectBinaryPrometheusMetricsProcessor(new ByteArrayInputStream(data), direct).walk();
+
+        Assert.assertEquals(expectedFamilies, generated.getAllMetricFamilies().size());
+        Assert.assertEquals(describe(generated.getAllMetricFamilies()), describe(direct.getAllMetricFamilies()));
+    }
+
+    @Test
+    public void testTestData() throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.data")) {
+            byte[] buffer = new byte[4096];
+            for (int read = testData.read(buffer); read != -1; read = testData.read(buffer)) {
+                data.write(buffer, 0, read);
+            }
+        }
+        assertSameResults(data.toByteArray(), 71);
+    }
+
+    @Test
+    public void testRandomData() throws Exception {
+        Random random = new Random(2016);
+        for (int round = 0; round < 50; round++) {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            int families = random.nextInt(20);
+            for (int i = 0; i < families; i++) {
+                randomFamily(random, i).writeDelimitedTo(data);
+            }
+            assertSameResults(data.toByteArray(), families);
+        }
+    }
+
+    @Test
+    public void testFieldsOutOfOrder() throws Exception {
+        // concatenated messages are merged, so this puts the metrics in front of the name and type
+        Metrics.MetricFamily family = randomFamily(new Random(1), 0);
+        Assert.assertTrue(family.getMetricCount() > 0);
+        byte[] metricsOnly = family.toBuilder().clearName().clearHelp().clearType().build().toByteArray();
+        byte[] rest = family.toBuilder().clearMetric().build().toByteArray();
+
+        // a type this version of the data model doesn't know about must be ignored
+        ByteArrayOutputStream unknownType = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(unknownType);
+        output.writeString(Metrics.MetricFamily.NAME_FIELD_NUMBER, "future");
+        output.writeEnum(Metrics.MetricFamily.TYPE_FIELD_NUMBER, Metrics.MetricType.GAUGE_VALUE);
+        output.writeEnum(Metrics.MetricFamily.TYPE_FIELD_NUMBER, 99);
+        output.writeString(Metrics.MetricFamily.UNIT_FIELD_NUMBER, "seconds");
+        output.writeMessage(Metrics.MetricFamily.METRIC_FIELD_NUMBER, Metrics.Metric.newBuilder()
+                .setGauge(Metrics.Gauge.newBuilder().setValue(2.5)).build());
+        output.flush();
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        output = CodedOutputStream.newInstance(data);
+        output.writeUInt32NoTag(metricsOnly.length + rest.length);
+        output.writeRawBytes(metricsOnly);
+        output.writeRawBytes(rest);
+        output.writeUInt32NoTag(unknownType.size());
+        output.writeRawBytes(unknownType.toByteArray());
+        output.flush();
+
+        assertSameResults(data.toByteArray(), 2);
+    }
+
+    @Test
+    public void testRepeatedHistograms() throws Exception {
+        // a metric's histogram may be split across several histogram fields, which are merged
+        ByteArrayOutputStream split = new ByteArrayOutputStream();
+        split.write(Metrics.Metric.newBuilder().setHistogram(Metrics.Histogram.newBuilder().setSampleCount(7)
+                .setSampleSum(1.5).addBucket(Metrics.Bucket.newBuilder().setUpperBound(1).setCumulativeCount(3)))
+                .build().toByteArray());
+        split.write(Metrics.Metric.newBuilder().setHistogram(Metrics.Histogram.newBuilder().setSampleSum(2.5)
+                .addBucket(Metrics.Bucket.newBuilder().setUpperBound(2).setCumulativeCount(5)))
+                .build().toByteArray());
+
+        // float counts of zero are still float counts, and win over integer counts given in a later field
+        ByteArrayOutputStream splitFloat = new ByteArrayOutputStream();
+        splitFloat.write(Metrics.Metric.newBuilder().setHistogram(Metrics.Histogram.newBuilder()
+                .setSampleCountFloat(0)
+                .addBucket(Metrics.Bucket.newBuilder().setUpperBound(1).setCumulativeCount(4)
+                        .setCumulativeCountFloat(0)))
+                .build().toByteArray());
+        splitFloat.write(Metrics.Metric.newBuilder().setHistogram(Metrics.Histogram.newBuilder().setSampleCount(9))
+                .build().toByteArray());
+
+        ByteArrayOutputStream family = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(family);
+        output.writeString(Metrics.MetricFamily.NAME_FIELD_NUMBER, "latency");
+        output.writeEnum(Metrics.MetricFamily.TYPE_FIELD_NUMBER, Metrics.MetricType.HISTOGRAM_VALUE);
+        output.writeByteArray(Metrics.MetricFamily.METRIC_FIELD_NUMBER, split.toByteArray());
+        output.writeByteArray(Metrics.MetricFamily.METRIC_FIELD_NUMBER, splitFloat.toByteArray());
+        output.flush();
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        output = CodedOutputStream.newInstance(data);
+        output.writeUInt32NoTag(family.size());
+        output.writeRawBytes(family.toByteArray());
+        output.flush();
+
+        assertSameResults(data.toByteArray(), 1);
+
+        CollectorPrometheusMetricsWalker direct = new CollectorPrometheusMetricsWalker();
+        new DirectBinaryPrometheusMetricsProcessor(new ByteArrayInputStream(data.toByteArray()), direct).walk();
+        List<Metric> metrics = direct.getAllMetricFamilies().get(0).getMetrics();
+        Histogram histogram = (Histogram) metrics.get(0);
+        Assert.assertEquals(7, histogram.getSampleCount());
+        Assert.assertEquals(2.5, histogram.getSampleSum(), 0.0);
+        Assert.assertEquals(2, histogram.getBuckets().size());
+        Assert.assertEquals(5, histogram.getBuckets().get(1).getCumulativeCount());
+        histogram = (Histogram) metrics.get(1);
+        Assert.assertEquals(0, histogram.getSampleCount());
+        Assert.assertEquals(0, histogram.getBuckets().get(0).getCumulativeCount());
+    }
+
+    @Test
+    public void testLargeFamily() throws Exception {
+        // bigger than the buffer of the coded stream
+        Metrics.MetricFamily.Builder family = Metrics.MetricFamily.newBuilder().setName("big")
+                .setType(Metrics.MetricType.GAUGE);
+        for (int i = 0; i < 10000; i++) {
+            family.addMetric(Metrics.Metric.newBuilder()
+                    .addLabel(Metrics.LabelPair.newBuilder().setName("instance").setValue("host-" + i))
+                    .setGauge(Metrics.Gauge.newBuilder().setValue(i)));
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        family.build().writeDelimitedTo(data);
+        family.build().writeDelimitedTo(data);
+        assertSameResults(data.toByteArray(), 2);
+    }
+
+    private static Metrics.MetricFamily randomFamily(Random random, int index) {
+        Metrics.MetricType type = Metrics.MetricType.forNumber(random.nextInt(6));
+        Metrics.MetricFamily.Builder family = Metrics.MetricFamily.newBuilder().setType(type);
+        if (random.nextInt(10) > 0) {
+            family.setName("family_" + index);
+        }
+        if (random.nextBoolean()) {
+            family.setHelp("Help for \"family\" " + index + " \u00e9\u4e2d");
+        }
+        if (random.nextInt(5) == 0) {
+            family.setUnit("bytes");
+        }
+
+        int metrics = random.nextInt(10);
+        for (int i = 0; i < metrics; i++) {
+            Metrics.Metric.Builder metric = Metrics.Metric.newBuilder();
+            int labels = random.nextInt(4);
+            for (int j = 0; j < labels; j++) {
+                Metrics.LabelPair.Builder label = Metrics.LabelPair.newBuilder().setName("label_" + j);
+                if (random.nextInt(5) > 0) {
+                    label.setValue("value " + random.nextInt(100) + ((j == 2) ? " \u2603" : ""));
+                }
+                metric.addLabel(label);
+            }
+            if (random.nextInt(4) == 0) {
+                metric.setTimestampMs(random.nextLong());
+            }
+
+            // mostly the field that goes with the type, sometimes others or none
+            int kind = (random.nextInt(5) == 0) ? random.nextInt(6) : type.getNumber();
+            switch (kind) {
+                case Metrics.MetricType.COUNTER_VALUE:
+                    Metrics.Counter.Builder counter = Metrics.Counter.newBuilder();
+                    if (random.nextInt(10) > 0) {
+                        counter.setValue(randomValue(random));
+                    }
+                    if (random.nextInt(4) == 0) {
+                        counter.setCreatedTimestamp(Timestamp.newBuilder().setSeconds(random.nextInt()));
+                        counter.setExemplar(Metrics.Exemplar.newBuilder().setValue(1.5)
+                                .addLabel(Metrics.LabelPair.newBuilder().setName("trace_id").setValue("abc")));
+                    }
+                    metric.setCounter(counter);
+                    break;
+                case Metrics.MetricType.GAUGE_VALUE:
+                    metric.setGauge(Metrics.Gauge.newBuilder().setValue(randomValue(random)));
+                    break;
+                case Metrics.MetricType.UNTYPED_VALUE:
+                    metric.setUntyped(Metrics.Untyped.newBuilder().setValue(randomValue(random)));
+                    break;
+                case Metrics.MetricType.SUMMARY_VALUE:
+                    Metrics.Summary.Builder summary = Metrics.Summary.newBuilder()
+                            .setSampleCount(random.nextInt(1000));
+                    if (random.nextInt(10) > 0) {
+                        summary.setSampleSum(randomValue(random));
+                    }
+                    int quantiles = random.nextInt(4);
+                    for (int j = 0; j < quantiles; j++) {
+                        summary.addQuantile(Metrics.Quantile.newBuilder().setQuantile(random.nextDouble())
+                                .setValue(randomValue(random)));
+                    }
+                    metric.setSummary(summary);
+                    break;
+                default:
+                    Metrics.Histogram.Builder histogram = Metrics.Histogram.newBuilder();
+                    boolean floats = random.nextInt(4) == 0;
+                    if (floats) {
+                        histogram.setSampleCountFloat(random.nextInt(1000) + 0.5);
+                    } else {
+                        histogram.setSampleCount(random.nextInt(1000));
+                    }
+                    histogram.setSampleSum(randomValue(random));
+                    int buckets = random.nextInt(6);
+                    for (int j = 0; j < buckets; j++) {
+                        Metrics.Bucket.Builder bucket = Metrics.Bucket.newBuilder()
+                                .setUpperBound((j == buckets - 1) ? Double.POSITIVE_INFINITY : j * 0.25);
+                        if (floats) {
+                            bucket.setCumulativeCountFloat(j * 10.5);
+                        } else {
+                            bucket.setCumulativeCount(j * 10);
+                        }
+                        histogram.addBucket(bucket);
+                    }
+                    if (random.nextInt(4) == 0) {
+                        // native histogram fields aren't used, but must be skipped properly
+                        histogram.setSchema(3).setZeroThreshold(1e-128).addPositiveDelta(-2).addPositiveDelta(5)
+                                .addPositiveSpan(Metrics.BucketSpan.newBuilder().setOffset(-1).setLength(2));
+                    }
+                    metric.setHistogram(histogram);
+                    break;
+            }
+            family.addMetric(metric);
+        }
+        return family.build();
+    }
+
+    private static double randomValue(Random random) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return Double.NaN;
+            case 1:
+                return Double.POSITIVE_INFINITY;
+            case 2:
+                return -random.nextInt(100);
+            default:
+                return random.nextDouble() * 1000;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DoubleFormatterTest {
+
+    private String format(double value) {
+        String str = Util.convertDoubleToString(value);
+
+        // the other flavors must write exactly the same characters
+        Assert.assertEquals(str, Util.appendDouble(new StringBuilder("x"), value).substring(1));
+        byte[] buffer = new byte[Util.MAX_DOUBLE_LENGTH + 2];
+        int end = Util.writeDouble(value, buffer, 1);
+        Assert.assertEquals(str, new String(buffer, 1, end - 1, StandardCharsets.ISO_8859_1));
+        return str;
+    }
+
+    private void assertFormatted(double value) {
+        String str = format(value);
+        Assert.assertEquals(str, Double.doubleToRawLongBits(value),
+                Double.doubleToRawLongBits(Double.parseDouble(str)));
+
+        // there must be no shorter decimal that converts back to the same value
+        BigDecimal decimal = new BigDecimal(str).stripTrailingZeros();
+        int digits = decimal.precision();
+        if (digits > 1) {
+            MathContext shorter = new MathContext(digits - 1, RoundingMode.FLOOR);
+            Assert.assertNotEquals(str, value, decimal.round(shorter).doubleValue(), 0);
+            shorter = new MathContext(digits - 1, RoundingMode.CEILING);
+            Assert.assertNotEquals(str, value, decimal.round(shorter).doubleValue(), 0);
+        }
+    }
+
+    @Test
+    public void testSpecialValues() {
+        Assert.assertEquals("NaN", format(Double.NaN));
+        Assert.assertEquals("+Inf", format(Double.POSITIVE_INFINITY));
+        Assert.assertEquals("-Inf", format(Double.NEGATIVE_INFINITY));
+        Assert.assertEquals("0", format(0.0));
+        Assert.assertEquals("-0", format(-0.0));
+    }
+
+    @Test
+    public void testLayout() {
+        Assert.assertEquals("1", format(1));
+        Assert.assertEquals("-1", format(-1));
+        Assert.assertEquals("162030", format(162030));
+        Assert.assertEquals("0.5", format(0.5));
+        Assert.assertEquals("0.1", format(0.1));
+        Assert.assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        Assert.assertEquals("1.5", format(1.5));
+        Assert.assertEquals("123.456", format(123.456));
+        Assert.assertEquals("0.000001", format(1e-6));
+        Assert.assertEquals("1e-7", format(1e-7));
+        Assert.assertEquals("1.5e-10", format(1.5e-10));
+        Assert.assertEquals("100000000000000000000", format(1e20));
+        Assert.assertEquals("1e+21", format(1e21));
+        Assert.assertEquals("1e+23", format(1e23));
+        Assert.assertEquals("9007199254740992", format(9007199254740992.0));
+        Assert.assertEquals("1.7976931348623157e+308", format(Double.MAX_VALUE));
+        Assert.assertEquals("2.2250738585072014e-308", format(Double.MIN_NORMAL));
+        Assert.assertEquals("5e-324", format(Double.MIN_VALUE));
+        Assert.assertEquals("-1.0000000000000002", format(-Math.nextUp(1.0)));
+    }
+
+    @Test
+    public void testEdgeCases() {
+        double[] values = { Double.MIN_VALUE, 2 * Double.MIN_VALUE, 3 * Double.MIN_VALUE, Double.MIN_NORMAL,
+                Math.nextDown(Double.MIN_NORMAL), Math.nextUp(Double.MIN_NORMAL), Double.MAX_VALUE,
+                Math.nextDown(Double.MAX_VALUE), 2e-3, 1e23, 8.41e21, 5.0e-324, 9007199254740993.0,
+                Math.pow(2, -44), Math.pow(2, 63), Math.pow(2, 64), 4.8726570057e288, 1.0E-5, 0.001, 1e-7,
+                123456789012345680.0, 1.1, 2.2, 3.3 };
+        for (double value : values) {
+            assertFormatted(value);
+            assertFormatted(-value);
+        }
+        for (int e = -324; e <= 308; e++) {
+            assertFormatted(Double.parseDouble("1e" + e));
+        }
+        for (int t = 1; t <= 10000; t++) {
+            assertFormatted(t * Double.MIN_VALUE);
+        }
+        for (int e = -1074; e <= 1023; e++) {
+            assertFormatted(Math.scalb(1.0, e));
+        }
+    }
+
+    @Test
+    public void testRandomValues() {
+        Random random = new Random(12345);
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertFormatted(value);
+            }
+            assertFormatted(random.nextDouble() * 1000);
+            assertFormatted(random.nextInt(1000000));
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastDoubleParserTest {
+
+    private void assertParsed(String value) {
+        long expected = Double.doubleToRawLongBits(Double.parseDouble(value));
+        Assert.assertEquals(value, expected,
+                Double.doubleToRawLongBits(FastDoubleParser.parseDouble(value, 0, value.length())));
+
+        // also parse out of the middle of a larger buffer
+        byte[] bytes = ("x" + value + "y").getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(value, expected,
+                Double.doubleToRawLongBits(FastDoubleParser.parseDouble(bytes, 1, bytes.length - 1)));
+    }
+
+    private void assertNotANumber(String value) {
+        try {
+            FastDoubleParser.parseDouble(value, 0, value.length());
+            Assert.fail("Should not have parsed: " + value);
+        } catch (NumberFormatException expected) {
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try {
+            FastDoubleParser.parseDouble(bytes, 0, bytes.length);
+            Assert.fail("Should not have parsed: " + value);
+        } catch (NumberFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testSpecialValues() {
+        String[] nans = { "NaN", "nan", "NAN" };
+        for (String nan : nans) {
+            Assert.assertTrue(Double.isNaN(FastDoubleParser.parseDouble(nan, 0, nan.length())));
+        }
+        Assert.assertEquals(Double.POSITIVE_INFINITY, FastDoubleParser.parseDouble("+Inf", 0, 4), 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, FastDoubleParser.parseDouble("+inf", 0, 4), 0);
+        Assert.assertEquals(Double.NEGATIVE_INFINITY, FastDoubleParser.parseDouble("-Inf", 0, 4), 0);
+        Assert.assertEquals(Double.NEGATIVE_INFINITY, FastDoubleParser.parseDouble("-INF", 0, 4), 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, FastDoubleParser.parseDouble("Infinity", 0, 8), 0);
+    }
+
+    @Test
+    public void testEdgeCases() {
+        String[] values = { "0", "-0", "+0", "0.0", "-0.0", "0e0", "0e-400", "-0e400", "1", "-1", "1.", ".5",
+                "123456789", "1.5e10", "1.5E-10", "1e+5", "144320", "0.05", "0.5", "4.9e-324",
+                "2.4703282292062327e-324", "2.4703282292062328e-324", "2.2250738585072011e-308", "2.2250738585072014e-308",
+                "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308", "1e309", "1e-400",
+                "9007199254740993", "9007199254740992", "9007199254740991", "18446744073709551615",
+                "18446744073709551616", "9999999999999999999", "99999999999999999999", "12345678901234567890123",
+                "0.1", "0.2", "0.3", "3.141592653589793238462643383279", "2.718281828459045",
+                "0.00000000000000000000000000000000000001", "1e22", "1e23", "1e-22", "1e-23", "5e-324",
+                "7.2057594037927933e16", "1.00000000000000011102230246251565404236316680908203125",
+                "1.00000000000000011102230246251565404236316680908203124",
+                "1.00000000000000011102230246251565404236316680908203126", "1448997445238699",
+                "9007199254740993.0000000000000000001", "0.000000000000000000000000000000000000000001e40",
+                "1234567890123456789e-10", "1e99999999", "1e-99999999", "00000000000000000000000001.5",
+                "1.5d", "1.5f", " 1.5", "1.5 ", "0x1.8p1" };
+        for (String value : values) {
+            assertParsed(value);
+        }
+    }
+
+    @Test
+    public void testNotANumber() {
+        String[] values = { "", "-", "+", ".", "e5", "1e", "1e+", "1.2.3", "Inf", "inf", "abc", "1,5", "--1",
+                "+-1", "NaNa", "\u0661" };
+        for (String value : values) {
+            assertNotANumber(value);
+        }
+    }
+
+    @Test
+    public void testFuzz() {
+        Random random = new Random(20161018L);
+
+        // the shortest representation of random doubles, which are mostly 16 or 17 digits
+        for (int i = 0; i < 200000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                assertParsed(Double.toString(value));
+            }
+        }
+
+        // random digits with random exponents, including ones that need more than 19 digits to decide
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            str.setLength(0);
+            if (random.nextBoolean()) {
+                str.append('-');
+            }
+            int digits = 1 + random.nextInt((i % 10 == 0) ? 40 : 20);
+            int point = random.nextInt(digits + 1);
+            for (int d = 0; d < digits; d++) {
+                if (d == point) {
+                    str.append('.');
+                }
+                str.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                str.append('e').append(random.nextInt(700) - 350);
+            }
+            assertParsed(str.toString());
+        }
+
+        // values exactly halfway between two doubles must round to even
+        for (int i = 0; i < 20000; i++) {
+            double value = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            double next = Math.nextUp(value);
+            assertParsed(new BigDecimal(value).add(new BigDecimal(next)).divide(BigDecimal.valueOf(2)).toString());
+        }
+
+        // integers, which is what most counters are
+        for (int i = 0; i < 100000; i++) {
+            assertParsed(Long.toString(random.nextLong() >>> random.nextInt(64)));
+        }
+    }
+}
@@ -16,9 +16,13 @@
  */
 package prometheus;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import prometheus.types.Histogram;
+import prometheus.types.Labels;
 
 public class HistogramTest {
     @Test
@@ -45,4 +49,55 @@ public class HistogramTest {
         Assert.assertEquals(1, histogram.getLabels().size());
         Assert.assertEquals("111", histogram.getLabels().get("one"));
     }
+
+    @Test
+    public void testLabels() {
+        Labels labels = Labels.of(new String[] { "one", "le" }, new String[] { "111", "0.5" }, 2);
+        Histogram histogram = new Histogram.Builder().setName("foo").setLabels(labels).addLabel("two", "222")
+                .build();
+
+        // the bucket label is not a label of the histogram, and the given label set is left alone
+        Assert.assertEquals(2, histogram.getLabels().size());
+        Assert.assertNull(histogram.getLabels().get("le"));
+        Assert.assertEquals("222", histogram.getLabelSet().get("two"));
+        Assert.assertEquals("0.5", labels.get("le"));
+
+        try {
+            histogram.getLabels().remove("one");
+            Assert.fail("Labels must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        Histogram shared = new Histogram.Builder().setName("foo").setLabels(labels.without("le")).build();
+        Assert.assertEquals(histogram.getLabelSet().without("two"), shared.getLabelSet());
+    }
+
+    @Test
+    public void testBucketArrays() {
+        Histogram.Builder builder = new Histogram.Builder().setName("foo");
+        for (int i = 0; i < 30; i++) {
+            builder.addBucket(i, i * 10);
+        }
+        Histogram histogram = builder.addBuckets(Arrays.asList(new Histogram.Bucket(Double.POSITIVE_INFINITY, 500)))
+                .build();
+        Assert.assertEquals(31, histogram.getBucketCount());
+        Assert.assertEquals(7, histogram.getUpperBound(7), 0);
+        Assert.assertEquals(70, histogram.getCumulativeCount(7));
+        Assert.assertEquals(Double.POSITIVE_INFINITY, histogram.getUpperBound(30), 0);
+        Assert.assertEquals(500, histogram.getCumulativeCount(30));
+
+        List<Histogram.Bucket> buckets = histogram.getBuckets();
+        Assert.assertEquals(31, buckets.size());
+        Assert.assertEquals(290, buckets.get(29).getCumulativeCount());
+        Assert.assertEquals("+Inf:500", buckets.get(30).toString());
+        try {
+            buckets.add(new Histogram.Bucket(1, 1));
+            Assert.fail("Buckets must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        Histogram empty = new Histogram.Builder().setName("foo").build();
+        Assert.assertEquals(0, empty.getBucketCount());
+        Assert.assertTrue(empty.getBuckets().isEmpty());
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.walkers.JSONPrometheusMetricsWalker;
+
+public class JSONPrometheusMetricsWalkerTest {
+
+    private String walk(String textData, int bufferSize) throws Exception {
+        StringWriter writer = new StringWriter();
+        InputStream testData = new ByteArrayInputStream(textData.getBytes(StandardCharsets.UTF_8));
+        new TextPrometheusMetricsProcessor(testData, new JSONPrometheusMetricsWalker(writer, bufferSize)).walk();
+        return writer.toString();
+    }
+
+    @Test
+    public void testDocument() throws Exception {
+        String textData = "# HELP http_requests_total The \"total\" number of requests\\nby path\n"
+                + "# TYPE http_requests_total counter\n"
+                + "http_requests_total{path=\"/a\\\\b\",code=\"200\"} 1027\n"
+                + "http_requests_total{path=\"/\\\"quoted\\\"\",code=\"500\"} 3\n"
+                + "# TYPE rpc_duration_seconds summary\n"
+                + "rpc_duration_seconds{quantile=\"0.5\"} 0.0000125\n"
+                + "rpc_duration_seconds_sum 1.5e-10\n"
+                + "rpc_duration_seconds_count 2693\n"
+                + "# TYPE request_size_bytes histogram\n"
+                + "request_size_bytes_bucket{le=\"100\"} 5\n"
+                + "request_size_bytes_bucket{le=\"+Inf\"} 7\n"
+                + "request_size_bytes_sum 533.25\n"
+                + "request_size_bytes_count 7\n";
+
+        String expected = "[\n"
+                + "  {\n"
+                + "    \"name\":\"http_requests_total\",\n"
+                + "    \"help\":\"The \\\"total\\\" number of requests\\nby path\",\n"
+                + "    \"type\":\"COUNTER\",\n"
+                + "    \"metrics\":[\n"
+                + "      {\n"
+                + "        \"labels\":{\n"
+                + "          \"code\":\"200\",\n"
+                + "          \"path\":\"/a\\\\b\"\n"
+                + "        },\n"
+                + "        \"value\":\"1027\"\n"
+                + "      },\n"
+                + "      {\n"
+                + "        \"labels\":{\n"
+                + "          \"code\":\"500\",\n"
+                + "          \"path\":\"/\\\"quoted\\\"\"\n"
+                + "        },\n"
+                + "        \"value\":\"3\"\n"
+                + "      }\n"
+                + "    ]\n"
+                + "  },\n"
+                + "  {\n"
+                + "    \"name\":\"rpc_duration_seconds\",\n"
+                + "    \"help\":\"\",\n"
+                + "    \"type\":\"SUMMARY\",\n"
+                + "    \"metrics\":[\n"
+                + "      {\n"
+                + "        \"quantiles\":{\n"
+                + "          \"0.5\":\"0.0000125\"\n"
+                + "        },\n"
+                + "        \"count\":\"2693\",\n"
+                + "        \"sum\":\"1.5e-10\"\n"
+                + "      }\n"
+                + "    ]\n"
+                + "  },\n"
+                + "  {\n"
+                + "    \"name\":\"request_size_bytes\",\n"
+                + "    \"help\":\"\",\n"
+                + "    \"type\":\"HISTOGRAM\",\n"
+                + "    \"metrics\":[\n"
+                + "      {\n"
+                + "        \"buckets\":{\n"
+                + "          \"100\":\"5\",\n"
+                + "          \"+Inf\":\"7\"\n"
+                + "        },\n"
+                + "        \"count\":\"7\",\n"
+                + "        \"sum\":\"533.25\"\n"
+                + "      }\n"
+                + "    ]\n"
+                + "  }\n"
+                + "]\n";
+
+        Assert.assertEquals(expected, walk(textData, 8192));
+
+        // a buffer that has to be drained many times must not change anything
+        Assert.assertEquals(expected, walk(textData, 32));
+    }
+
+    @Test
+    public void testControlCharacters() throws Exception {
+        String textData = "# TYPE weird gauge\nweird{label=\"tab\there \u0001 caf\u00e9\"} -0.5\n";
+        String json = walk(textData, 8192);
+        Assert.assertTrue(json, json.contains("\"label\":\"tab\\there \\u0001 caf\u00e9\""));
+        Assert.assertTrue(json, json.contains("\"value\":\"-0.5\""));
+    }
+
+    @Test
+    public void testOutputStream() throws Exception {
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.txt")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new TextPrometheusMetricsProcessor(testData, new JSONPrometheusMetricsWalker(out)).walk();
+            String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            Assert.assertTrue(json.startsWith("[\n  {\n"));
+            Assert.assertTrue(json.endsWith("    ]\n  }\n]\n"));
+        }
+    }
+}
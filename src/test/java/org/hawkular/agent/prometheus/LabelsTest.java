@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.binary.BinaryPrometheusMetricsProcessor;
+import prometheus.binary.DirectBinaryPrometheusMetricsProcessor;
+import prometheus.text.ParallelTextPrometheusMetricsProcessor;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.types.LabelInterner;
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+public class LabelsTest {
+
+    @Test
+    public void testSortedAndUnique() {
+        Labels labels = Labels.of(new String[] { "b", "a", "c", "a" }, new String[] { "2", "1", "3", "4" }, 4);
+        Assert.assertEquals(3, labels.size());
+        Assert.assertEquals("a", labels.getName(0));
+        Assert.assertEquals("4", labels.getValue(0)); // the last one given wins
+        Assert.assertEquals("b", labels.getName(1));
+        Assert.assertEquals("c", labels.getName(2));
+        Assert.assertEquals("2", labels.get("b"));
+        Assert.assertNull(labels.get("d"));
+        Assert.assertNull(labels.get(null));
+        Assert.assertEquals("{a=4, b=2, c=3}", labels.toString());
+
+        Assert.assertSame(Labels.EMPTY, Labels.of(new String[0], new String[0], 0));
+        Assert.assertSame(Labels.EMPTY, Labels.of((Map<String, String>) null));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("job", "x");
+        map.put("instance", "y");
+        Labels fromMap = Labels.of(map);
+        Labels fromArrays = Labels.of(new String[] { "instance", "job" }, new String[] { "y", "x" }, 2);
+        Assert.assertEquals(fromMap, fromArrays);
+        Assert.assertEquals(fromMap.hashCode(), fromArrays.hashCode());
+        Assert.assertNotEquals(fromMap, Labels.of(new String[] { "instance", "job" }, new String[] { "y", "z" }, 2));
+        Assert.assertNotEquals(fromMap, Labels.of(new String[] { "job" }, new String[] { "x" }, 1));
+    }
+
+    @Test
+    public void testEqualsWithout() {
+        Labels bucket = Labels.of(new String[] { "job", "le", "path" }, new String[] { "x", "0.5", "/" }, 3);
+        Labels series = Labels.of(new String[] { "job", "path" }, new String[] { "x", "/" }, 2);
+        Assert.assertTrue(series.equalsWithout(bucket, "le"));
+        Assert.assertTrue(series.equalsWithout(series, "le")); // the sum and count have no le label
+        Assert.assertFalse(series.equalsWithout(bucket, "quantile"));
+        Assert.assertFalse(series.equalsWithout(bucket, "job"));
+        Assert.assertFalse(Labels.EMPTY.equalsWithout(bucket, "le"));
+        Assert.assertTrue(Labels.EMPTY.equalsWithout(Labels.of(new String[] { "le" }, new String[] { "1" }, 1), "le"));
+        Assert.assertFalse(Labels.of(new String[] { "job", "path" }, new String[] { "x", "/a" }, 2)
+                .equalsWithout(bucket, "le"));
+    }
+
+    @Test
+    public void testMapView() {
+        Labels labels = Labels.of(new String[] { "b", "a" }, new String[] { "2", "1" }, 2);
+        Map<String, String> map = labels.asMap();
+        Assert.assertSame(map, labels.asMap());
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals("1", map.get("a"));
+        Assert.assertTrue(map.containsKey("b"));
+        Assert.assertFalse(map.containsKey("c"));
+        Assert.assertEquals(Arrays.asList("a", "b"), new ArrayList<>(map.keySet()));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "1");
+        expected.put("b", "2");
+        Assert.assertEquals(expected, map);
+        Assert.assertEquals(expected.hashCode(), map.hashCode());
+
+        try {
+            map.put("c", "3");
+            Assert.fail("The map view must not be modifiable");
+        } catch (UnsupportedOperationException expectedException) {
+        }
+    }
+
+    @Test
+    public void testArraysAreCopied() {
+        String[] names = { "a" };
+        String[] values = { "1" };
+        Labels labels = Labels.of(names, values, 1);
+        values[0] = "2";
+        Assert.assertEquals("1", labels.get("a"));
+    }
+
+    @Test
+    public void testInterner() {
+        LabelInterner interner = new LabelInterner();
+        Labels first = interner.intern(new String[] { "a", "b" }, new String[] { "1", "2" }, 2);
+        Labels second = interner.intern(new String[] { "b", "a" }, new String[] { new String("2"), "1" }, 2);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, interner.size());
+        Assert.assertSame(Labels.EMPTY, interner.intern(Labels.EMPTY));
+
+        // the strings are shared too
+        Labels other = interner.intern(new String[] { "a" }, new String[] { new String("2") }, 1);
+        Assert.assertSame(first.getValue(1), other.getValue(0));
+    }
+
+    @Test
+    public void testInternerForgetsWhenFull() {
+        LabelInterner interner = new LabelInterner(2);
+        Labels a = interner.intern(new String[] { "a" }, new String[] { "1" }, 1);
+        interner.intern(new String[] { "b" }, new String[] { "1" }, 1);
+        Assert.assertEquals(2, interner.size());
+        interner.intern(new String[] { "c" }, new String[] { "1" }, 1);
+        Assert.assertEquals(1, interner.size());
+        Assert.assertNotSame(a, interner.intern(new String[] { "a" }, new String[] { "1" }, 1));
+    }
+
+    @Test
+    public void testRepeatedTextScrapesShareLabels() throws Exception {
+        LabelInterner interner = new LabelInterner();
+        List<MetricFamily> first = scrapeText(interner, false);
+        List<MetricFamily> second = scrapeText(interner, true);
+        assertSameLabels(first, second);
+
+        // interning does not change what is found, other than the order of the labels
+        List<MetricFamily> plain = scrapeText(null, false);
+        assertEqualLabels(plain, first);
+    }
+
+    @Test
+    public void testRepeatedBinaryScrapesShareLabels() throws Exception {
+        LabelInterner interner = new LabelInterner();
+        List<MetricFamily> first = scrapeBinary(interner, false);
+        List<MetricFamily> second = scrapeBinary(interner, true);
+        assertSameLabels(first, second);
+
+        List<MetricFamily> plain = scrapeBinary(null, true);
+        assertEqualLabels(plain, first);
+    }
+
+    private static void assertSameLabels(List<MetricFamily> first, List<MetricFamily> second) {
+        Assert.assertEquals(first.size(), second.size());
+        int metrics = 0;
+        for (int i = 0; i < first.size(); i++) {
+            List<Metric> firstMetrics = first.get(i).getMetrics();
+            List<Metric> secondMetrics = second.get(i).getMetrics();
+            Assert.assertEquals(firstMetrics.size(), secondMetrics.size());
+            for (int j = 0; j < firstMetrics.size(); j++) {
+                if (!firstMetrics.get(j).getLabels().isEmpty()) {
+                    Assert.assertSame(firstMetrics.get(j).getLabels(), secondMetrics.get(j).getLabels());
+                    metrics++;
+                }
+            }
+        }
+        Assert.assertTrue(metrics > 0);
+    }
+
+    private static void assertEqualLabels(List<MetricFamily> expected, List<MetricFamily> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            List<Metric> expectedMetrics = expected.get(i).getMetrics();
+            List<Metric> actualMetrics = actual.get(i).getMetrics();
+            Assert.assertEquals(expectedMetrics.size(), actualMetrics.size());
+            for (int j = 0; j < expectedMetrics.size(); j++) {
+                Assert.assertEquals(expectedMetrics.get(j).getLabels(), actualMetrics.get(j).getLabels());
+            }
+        }
+    }
+
+    private List<MetricFamily> scrapeText(LabelInterner interner, boolean parallel) throws Exception {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.txt")) {
+            PrometheusMetricsProcessor<MetricFamily> processor = parallel
+                    ? new ParallelTextPrometheusMetricsProcessor(testData, collector,
+                            ForkJoinPool.commonPool())
+                    : new TextPrometheusMetricsProcessor(testData, collector);
+            processor.setLabelInterner(interner);
+            processor.walk();
+        }
+        return collector.getAllMetricFamilies();
+    }
+
+    private List<MetricFamily> scrapeBinary(LabelInterner interner, boolean direct) throws Exception {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.data")) {
+            PrometheusMetricsProcessor<?> processor = direct
+                    ? new DirectBinaryPrometheusMetricsProcessor(testData, collector)
+                    : new BinaryPrometheusMetricsProcessor(testData, collector);
+            processor.setLabelInterner(interner);
+            processor.walk();
+        }
+        return collector.getAllMetricFamilies();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.text.LineReader;
+
+public class LineReaderTest {
+
+    private LineReader createLineReader(String data, int bufferSize) {
+        return new LineReader(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    @Test
+    public void testReadLines() throws Exception {
+        // a tiny buffer makes sure we handle lines spanning multiple reads and lines larger than the buffer
+        for (int bufferSize : new int[] { 1, 3, 8, LineReader.DEFAULT_BUFFER_SIZE }) {
+            LineReader lineReader = createLineReader("first\n\nthird line is longer\nlast", bufferSize);
+            Assert.assertTrue(lineReader.readLine());
+            Assert.assertEquals("first", lineReader.getLineAsString());
+            Assert.assertTrue(lineReader.readLine());
+            Assert.assertEquals("", lineReader.getLineAsString());
+            Assert.assertTrue(lineReader.readLine());
+            Assert.assertEquals("third line is longer", lineReader.getLineAsString());
+            Assert.assertTrue(lineReader.readLine());
+            Assert.assertEquals("last", lineReader.getLineAsString());
+            Assert.assertFalse(lineReader.readLine());
+            Assert.assertFalse(lineReader.readLine());
+        }
+    }
+
+    @Test
+    public void testTrailingNewline() throws Exception {
+        LineReader lineReader = createLineReader("one\ntwo\n", 4);
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("one", lineReader.getLineAsString());
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("two", lineReader.getLineAsString());
+        Assert.assertFalse(lineReader.readLine());
+
+        Assert.assertFalse(createLineReader("", 4).readLine());
+    }
+
+    @Test
+    public void testUnreadLine() throws Exception {
+        LineReader lineReader = createLineReader("one\ntwo\nthree", 2);
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("two", lineReader.getLineAsString());
+        lineReader.unreadLine();
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("two", lineReader.getLineAsString());
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("three", lineReader.getLineAsString());
+        lineReader.unreadLine();
+        lineReader.unreadLine();
+        Assert.assertEquals(2, lineReader.getLineCount());
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("three", lineReader.getLineAsString());
+        Assert.assertFalse(lineReader.readLine());
+        Assert.assertEquals(3, lineReader.getLineCount());
+    }
+
+    @Test
+    public void testUtf8() throws Exception {
+        LineReader lineReader = createLineReader("caf\u00e9 \u20ac\nplain", 2);
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("caf\u00e9 \u20ac", lineReader.getLineAsString());
+        Assert.assertTrue(lineReader.readLine());
+        Assert.assertEquals("plain", lineReader.getLineAsString());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import prometheus.binary.DirectBinaryPrometheusMetricsProcessor;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.transport.MappedFileInputStream;
+import prometheus.types.MetricFamily;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+public class MappedFileInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File resource(String name) throws URISyntaxException {
+        return new File(getClass().getClassLoader().getResource(name).toURI());
+    }
+
+    private static byte[] readAll(InputStream in, int chunkSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[chunkSize];
+        for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWindows() throws Exception {
+        byte[] data = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+        File file = folder.newFile();
+        Files.write(file.toPath(), data);
+
+        // window sizes that do and don't divide the file, and reads that do and don't span windows
+        for (int windowSize : new int[] { 1, 4, 7, 36, 100 }) {
+            try (MappedFileInputStream in = new MappedFileInputStream(file, windowSize)) {
+                Assert.assertEquals(36, in.getSize());
+                Assert.assertEquals(36, in.available());
+                for (byte b : data) {
+                    Assert.assertEquals(b, in.read());
+                }
+                Assert.assertEquals(0, in.available());
+                Assert.assertEquals(-1, in.read());
+            }
+            try (MappedFileInputStream in = new MappedFileInputStream(file, windowSize)) {
+                Assert.assertArrayEquals(data, readAll(in, 3));
+            }
+            try (MappedFileInputStream in = new MappedFileInputStream(file, windowSize)) {
+                Assert.assertEquals('0', in.read());
+                Assert.assertEquals(1, in.skip(1));
+                Assert.assertEquals('2', in.read());
+                Assert.assertEquals(33, in.available());
+                long skipped = 0;
+                while (skipped < 32) {
+                    skipped += in.skip(32 - skipped);
+                }
+                Assert.assertEquals('z', in.read());
+                Assert.assertEquals(-1, in.read());
+                Assert.assertEquals(0, in.skip(10));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        try (MappedFileInputStream in = new MappedFileInputStream(folder.newFile())) {
+            Assert.assertEquals(0, in.available());
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(-1, in.read(new byte[10], 0, 10));
+            Assert.assertEquals(0, in.read(new byte[10], 0, 0));
+        }
+    }
+
+    @Test
+    public void testParseAcrossWindows() throws Exception {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        try (MappedFileInputStream in = new MappedFileInputStream(resource("prometheus.txt"), 1000)) {
+            new TextPrometheusMetricsProcessor(in, collector).walk();
+        }
+        Assert.assertEquals(72, collector.getAllMetricFamilies().size());
+
+        collector = new CollectorPrometheusMetricsWalker();
+        try (MappedFileInputStream in = new MappedFileInputStream(resource("prometheus.data"), 1000)) {
+            new DirectBinaryPrometheusMetricsProcessor(in, collector).walk();
+        }
+        Assert.assertEquals(71, collector.getAllMetricFamilies().size());
+    }
+
+    @Test
+    public void testScrapeFile() throws Exception {
+        for (boolean memoryMapFiles : new boolean[] { true, false }) {
+            PrometheusScraper scraper = new PrometheusScraper(resource("prometheus.txt"), PrometheusDataFormat.TEXT);
+            Assert.assertFalse(scraper.isMemoryMapFiles());
+            scraper.setMemoryMapFiles(memoryMapFiles);
+            List<MetricFamily> families = scraper.scrape();
+            Assert.assertEquals(72, families.size());
+            Assert.assertEquals(resource("prometheus.txt").length(), scraper.getLastScrapeStats().getWireBytes());
+
+            scraper.setTextParserPool(ForkJoinPool.commonPool());
+            Assert.assertEquals(72, scraper.scrape().size());
+
+            scraper = new PrometheusScraper(resource("prometheus.data"), PrometheusDataFormat.BINARY);
+            scraper.setMemoryMapFiles(memoryMapFiles);
+            Assert.assertEquals(71, scraper.scrape().size());
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.text.ParallelTextPrometheusMetricDataParser;
+import prometheus.text.TextPrometheusMetricDataParser;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+import prometheus.types.Summary;
+import prometheus.walkers.CollectorPrometheusMetricsWalker;
+
+public class ParseModeTest {
+
+    private static final String BAD_DATA = "# TYPE requests counter\n"
+            + "requests{code=\"200\"} 10\n"
+            + "requests{code=\"500\" 2\n" // malformed
+            + "requests{code=\"404\"} lots\n" // not a number
+            + "# TYPE latency summary\n"
+            + "latency{quantile=\"0.5\"} 0.1\n"
+            + "latency 0.2\n" // no quantile
+            + "latency{quantile=\"median\"} 0.3\n" // quantile is not a number
+            + "latency_sum 4.5\n"
+            + "latency_count 30\n"
+            + "# TYPE sizes histogram\n"
+            + "sizes_bucket 1\n" // no le
+            + "sizes_bucket{le=\"+Inf\"} 4\n"
+            + "sizes_sum 7\n"
+            + "sizes_count 4\n"
+            + "# TYPE info stateset\n" // not a type we know
+            + "info{info=\"a\"} 1\n"
+            + "info{info=\"b\"} 0\n"
+            + "# TYPE\n" // malformed
+            + "# TYPE temperature untyped\n"
+            + "temperature NaN\n"
+            + "stray 1\n"; // not in any family
+
+    private static ByteArrayInputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertBadDataErrors(ParseErrors errors) {
+        Assert.assertEquals(7, errors.getLinesRejected());
+        Assert.assertEquals(1, errors.getFamiliesDropped());
+        Assert.assertEquals(2, errors.getCount(ParseErrors.Reason.MALFORMED_LINE));
+        Assert.assertEquals(2, errors.getCount(ParseErrors.Reason.INVALID_VALUE));
+        Assert.assertEquals(2, errors.getCount(ParseErrors.Reason.MISSING_LABEL));
+        Assert.assertEquals(1, errors.getCount(ParseErrors.Reason.UNEXPECTED_SAMPLE));
+        Assert.assertEquals(1, errors.getCount(ParseErrors.Reason.UNKNOWN_TYPE));
+        Assert.assertEquals(0, errors.getCount(ParseErrors.Reason.UNREADABLE_DATA));
+    }
+
+    private static void assertBadDataFamilies(List<MetricFamily> families) {
+        Assert.assertEquals(4, families.size());
+
+        MetricFamily requests = families.get(0);
+        Assert.assertEquals(1, requests.getMetrics().size());
+        Assert.assertEquals(10, ((Counter) requests.getMetrics().get(0)).getValue(), 0);
+
+        Summary latency = (Summary) families.get(1).getMetrics().get(0);
+        Assert.assertEquals(1, latency.getQuantileCount());
+        Assert.assertEquals(30, latency.getSampleCount());
+
+        Histogram sizes = (Histogram) families.get(2).getMetrics().get(0);
+        Assert.assertEquals(1, sizes.getBucketCount());
+        Assert.assertEquals(4, sizes.getSampleCount());
+
+        MetricFamily temperature = families.get(3);
+        Assert.assertEquals("temperature", temperature.getName());
+        Assert.assertEquals(MetricType.GAUGE, temperature.getType());
+        Assert.assertTrue(Double.isNaN(((Gauge) temperature.getMetrics().get(0)).getValue()));
+    }
+
+    @Test
+    public void testLenient() throws Exception {
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(stream(BAD_DATA));
+        Assert.assertEquals(ParseMode.LENIENT, parser.getParseMode());
+        List<MetricFamily> families = new ArrayList<>();
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            families.add(family);
+        }
+        assertBadDataFamilies(families);
+        assertBadDataErrors(parser.getParseErrors());
+    }
+
+    @Test
+    public void testLenientParallel() throws Exception {
+        ParallelTextPrometheusMetricDataParser parser = new ParallelTextPrometheusMetricDataParser(stream(BAD_DATA),
+                ForkJoinPool.commonPool(), 1);
+        List<MetricFamily> families = new ArrayList<>();
+        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+            families.add(family);
+        }
+        assertBadDataFamilies(families);
+        assertBadDataErrors(parser.getParseErrors());
+    }
+
+    @Test
+    public void testLenientProcessor() {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        TextPrometheusMetricsProcessor processor = new TextPrometheusMetricsProcessor(stream(BAD_DATA), collector);
+        processor.walk();
+        assertBadDataFamilies(collector.getAllMetricFamilies());
+        assertBadDataErrors(processor.getParseErrors());
+    }
+
+    @Test
+    public void testGoodDataHasNoErrors() throws Exception {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        TextPrometheusMetricsProcessor processor = new TextPrometheusMetricsProcessor(
+                getClass().getClassLoader().getResourceAsStream("prometheus.txt"), collector);
+        processor.walk();
+        Assert.assertTrue(processor.getParseErrors().toString(), processor.getParseErrors().isEmpty());
+        Assert.assertEquals(72, collector.getAllMetricFamilies().size());
+    }
+
+    @Test
+    public void testStrict() throws Exception {
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(stream(BAD_DATA));
+        parser.setParseMode(ParseMode.STRICT);
+        try {
+            parser.parse();
+            Assert.fail("The malformed line should have failed the parse");
+        } catch (PrometheusParseException expected) {
+            Assert.assertEquals(ParseErrors.Reason.MALFORMED_LINE, expected.getReason());
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("requests{code=\"500\" 2"));
+        }
+        Assert.assertEquals(1, parser.getParseErrors().getLinesRejected());
+
+        parser = new TextPrometheusMetricDataParser(stream("# TYPE info stateset\ninfo 1\n"));
+        parser.setParseMode(ParseMode.STRICT);
+        try {
+            parser.parse();
+            Assert.fail("The unknown type should have failed the parse");
+        } catch (PrometheusParseException expected) {
+            Assert.assertEquals(ParseErrors.Reason.UNKNOWN_TYPE, expected.getReason());
+        }
+    }
+
+    @Test
+    public void testStrictProcessor() {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        TextPrometheusMetricsProcessor processor = new TextPrometheusMetricsProcessor(
+                stream("# TYPE a gauge\na 1\n# TYPE b gauge\nb{x=\"1\"} one\n"), collector);
+        processor.setParseMode(ParseMode.STRICT);
+        try {
+            processor.walk();
+            Assert.fail("The bad value should have failed the walk");
+        } catch (UncheckedIOException expected) {
+            Assert.assertEquals(ParseErrors.Reason.INVALID_VALUE,
+                    ((PrometheusParseException) expected.getCause()).getReason());
+        }
+    }
+
+    @Test
+    public void testUnreadableData() {
+        CollectorPrometheusMetricsWalker collector = new CollectorPrometheusMetricsWalker();
+        TextPrometheusMetricsProcessor processor = new TextPrometheusMetricsProcessor(
+                new ByteArrayInputStream(new byte[] { (byte) 0x80, 1, 2, 3 }), collector);
+        processor.walk();
+        Assert.assertEquals(1, processor.getParseErrors().getCount(ParseErrors.Reason.UNREADABLE_DATA));
+        Assert.assertEquals(1, processor.getParseErrors().getFamiliesDropped());
+    }
+
+    @Test
+    public void testWalkerExceptionsArePassedOn() {
+        for (ParseMode parseMode : ParseMode.values()) {
+            final IllegalStateException failure = new IllegalStateException("walker bug");
+            CollectorPrometheusMetricsWalker walker = new CollectorPrometheusMetricsWalker() {
+                @Override
+                public void walkGaugeMetric(MetricFamily family, Gauge metric, int index) {
+                    throw failure;
+                }
+            };
+            TextPrometheusMetricsProcessor processor = new TextPrometheusMetricsProcessor(
+                    stream("# TYPE requests counter\nrequests 10\n# TYPE temperature gauge\ntemperature 21\n"),
+                    walker);
+            processor.setParseMode(parseMode);
+            try {
+                processor.walk();
+                Assert.fail("The walker's exception should have been passed on in " + parseMode + " mode");
+            } catch (IllegalStateException e) {
+                Assert.assertSame(failure, e);
+            }
+            // it is not an error in the data, and the walk did not finish
+            Assert.assertEquals(0, processor.getParseErrors().getFamiliesDropped());
+            Assert.assertNull(walker.getAllMetricFamilies());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.types.Counter;
+import prometheus.types.Gauge;
+import prometheus.types.Histogram;
+import prometheus.types.Labels;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+import prometheus.types.Summary;
+
+public class RateEngineTest {
+
+    private static final Labels OK = Labels.of(new String[] { "code" }, new String[] { "200" }, 1);
+
+    private static List<MetricFamily> scrape(double requests, long count, double sum) {
+        MetricFamily counters = new MetricFamily.Builder().setName("requests").setType(MetricType.COUNTER)
+                .addMetric(new Counter.Builder().setName("requests").setLabels(OK).setValue(requests).build())
+                .build();
+        MetricFamily histograms = new MetricFamily.Builder().setName("latency").setType(MetricType.HISTOGRAM)
+                .addMetric(new Histogram.Builder().setName("latency").setSampleCount(count).setSampleSum(sum)
+                        .addBucket(Double.POSITIVE_INFINITY, count).build())
+                .build();
+        MetricFamily gauges = new MetricFamily.Builder().setName("temperature").setType(MetricType.GAUGE)
+                .addMetric(new Gauge.Builder().setName("temperature").setValue(20).build())
+                .build();
+        return Arrays.asList(counters, histograms, gauges);
+    }
+
+    @Test
+    public void testRates() {
+        RateEngine engine = new RateEngine();
+        engine.update(scrape(100, 10, 5.0), 10000L);
+        Assert.assertEquals(2, engine.getSeriesCount()); // gauges are not tracked
+        Assert.assertTrue(Double.isNaN(engine.getRate("requests", OK)));
+        Assert.assertTrue(Double.isNaN(engine.getIncrease("latency_count", Labels.EMPTY)));
+
+        engine.update(scrape(130, 16, 6.5), 25000L);
+        Assert.assertEquals(30, engine.getIncrease("requests", OK), 0);
+        Assert.assertEquals(2, engine.getRate("requests", OK), 1e-9);
+        Assert.assertEquals(6, engine.getIncrease("latency_count", Labels.EMPTY), 0);
+        Assert.assertEquals(0.4, engine.getRate("latency_count", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(0.4, engine.getRate("latency", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(1.5, engine.getIncrease("latency_sum", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(0.1, engine.getRate("latency_sum", Labels.EMPTY), 1e-9);
+        Assert.assertTrue(Double.isNaN(engine.getRate("requests", Labels.EMPTY)));
+        Assert.assertTrue(Double.isNaN(engine.getRate("temperature", Labels.EMPTY)));
+
+        // a scrape at the same time changes nothing
+        engine.update(scrape(500, 50, 50), 25000L);
+        Assert.assertEquals(2, engine.getRate("requests", OK), 1e-9);
+
+        // resets - the counters start again from zero
+        engine.update(scrape(10, 2, 0.5), 35000L);
+        Assert.assertEquals(10, engine.getIncrease("requests", OK), 0);
+        Assert.assertEquals(1, engine.getRate("requests", OK), 1e-9);
+        Assert.assertEquals(2, engine.getIncrease("latency_count", Labels.EMPTY), 0);
+        Assert.assertEquals(0.5, engine.getIncrease("latency_sum", Labels.EMPTY), 0);
+        Assert.assertEquals(1, engine.getResets("requests", OK));
+        Assert.assertEquals(1, engine.getResets("latency_sum", Labels.EMPTY));
+    }
+
+    @Test
+    public void testStaleSeries() {
+        RateEngine engine = new RateEngine();
+        engine.setMaxMissedScrapes(1);
+        engine.update(scrape(100, 10, 5.0), 10000L);
+        engine.update(scrape(110, 10, 5.0), 20000L);
+        Assert.assertEquals(2, engine.getSeriesCount());
+
+        List<MetricFamily> onlyRequests = scrape(120, 10, 5.0).subList(0, 1);
+        engine.update(onlyRequests, 30000L);
+        Assert.assertEquals(2, engine.getSeriesCount()); // missed one scrape
+        Assert.assertEquals(0, engine.getIncrease("latency_count", Labels.EMPTY), 0);
+        engine.update(onlyRequests, 40000L);
+        Assert.assertEquals(1, engine.getSeriesCount()); // missed two scrapes
+        Assert.assertTrue(Double.isNaN(engine.getIncrease("latency_count", Labels.EMPTY)));
+        Assert.assertEquals(0, engine.getIncrease("requests", OK), 0);
+
+        engine.clear();
+        Assert.assertEquals(0, engine.getSeriesCount());
+    }
+
+    @Test
+    public void testWalkTimestampedSamples() {
+        RateEngine engine = new RateEngine();
+        String[] scrapes = {
+                "# TYPE rpc summary\n"
+                        + "rpc{quantile=\"0.5\"} 0.1 1000\n"
+                        + "rpc_sum 10 1000\n"
+                        + "rpc_count 100 1000\n",
+                "# TYPE rpc summary\n"
+                        + "rpc{quantile=\"0.5\"} 0.1 3000\n"
+                        + "rpc_sum 14 3000\n"
+                        + "rpc_count 150 3000\n" };
+        for (String scrape : scrapes) {
+            new TextPrometheusMetricsProcessor(new ByteArrayInputStream(scrape.getBytes(StandardCharsets.UTF_8)),
+                    engine).walk();
+        }
+        Assert.assertEquals(25, engine.getRate("rpc_count", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(2, engine.getRate("rpc_sum", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(0, engine.getResets("rpc", Labels.EMPTY));
+    }
+
+    @Test
+    public void testSummaryQuantilesAreIgnored() {
+        RateEngine engine = new RateEngine();
+        for (int i = 1; i <= 2; i++) {
+            MetricFamily family = new MetricFamily.Builder().setName("rpc").setType(MetricType.SUMMARY)
+                    .addMetric(new Summary.Builder().setName("rpc").setSampleCount(i * 10).setSampleSum(i)
+                            .addQuantile(0.5, 100 / i).build())
+                    .build();
+            engine.update(Arrays.asList(family), i * 1000L);
+        }
+        Assert.assertEquals(10, engine.getRate("rpc_count", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(1, engine.getRate("rpc_sum", Labels.EMPTY), 1e-9);
+    }
+    // the data up to the cut, after which reading fails as if the connection broke
+    private static InputStream cutOff(String data, int cut) {
+        final ByteArrayInputStream in = new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8), 0, cut);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return b;
+            }
+        };
+    }
+
+    @Test
+    public void testScrapeCutOff() throws Exception {
+        final String[] scrapes = {
+                "# TYPE a counter\na 10 1000\n# TYPE b counter\nb 100 1000\n",
+                "# TYPE a counter\na 20 2000\n# TYPE b counter\nb 200 2000\n",
+                "# TYPE a counter\na 40 3000\n# TYPE b counter\nb 400 3000\n" };
+        final int cut = scrapes[1].indexOf("b 200");
+        PrometheusScraper scraper = new PrometheusScraper(new URL("http://localhost:1/metrics"),
+                PrometheusDataFormat.TEXT) {
+            private int scrape;
+
+            @Override
+            protected OpenConnectionDetails openConnection(URL endpointUrl) throws IOException {
+                // the second scrape is cut off before the sample of the second family
+                String data = scrapes[scrape];
+                InputStream in = (scrape++ == 1) ? cutOff(data, cut)
+                        : new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+                return new OpenConnectionDetails(in, "text/plain");
+            }
+        };
+
+        RateEngine engine = new RateEngine();
+        engine.scrape(scraper);
+        engine.scrape(scraper);
+        Assert.assertEquals(1, scraper.getLastScrapeStats().getParseErrors()
+                .getCount(ParseErrors.Reason.UNREADABLE_DATA));
+        Assert.assertEquals(10, engine.getRate("a", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(2, engine.getSeriesCount()); // b is not forgotten
+
+        engine.scrape(scraper);
+        Assert.assertEquals(20, engine.getRate("a", Labels.EMPTY), 1e-9);
+        Assert.assertEquals(150, engine.getRate("b", Labels.EMPTY), 1e-9);
+
+        // walked, the engine can't tell the scrape was cut off and forgets the series after the cut
+        RateEngine walked = new RateEngine();
+        new TextPrometheusMetricsProcessor(new ByteArrayInputStream(scrapes[0].getBytes(StandardCharsets.UTF_8)),
+                walked).walk();
+        new TextPrometheusMetricsProcessor(cutOff(scrapes[1], cut), walked).walk();
+        Assert.assertEquals(1, walked.getSeriesCount());
+    }
+}
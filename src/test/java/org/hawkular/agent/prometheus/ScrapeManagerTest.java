@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.types.MetricFamily;
+
+public class ScrapeManagerTest {
+
+    private PrometheusScraper fileScraper(String fileName) throws Exception {
+        URL testData = getClass().getClassLoader().getResource(fileName);
+        return new PrometheusScraper(new File(testData.toURI()), PrometheusDataFormat.TEXT);
+    }
+
+    @Test
+    public void testScrapeTargets() throws Exception {
+        final CountDownLatch scrapes = new CountDownLatch(2);
+        final Set<String> scraped = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        ScrapeManager manager = new ScrapeManager.Builder()
+                .setMaxConcurrentScrapes(2)
+                .setListener(new ScrapeListener() {
+                    @Override
+                    public void scrapeSucceeded(ScrapeTarget target, List<MetricFamily> metricFamilies) {
+                        Assert.assertFalse(metricFamilies.isEmpty());
+                        if (scraped.add(target.getId())) {
+                            scrapes.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void scrapeFailed(ScrapeTarget target, Throwable error) {
+                    }
+                })
+                .build();
+        try {
+            manager.addTarget(new ScrapeTarget.Builder().setId("histogram")
+                    .setScraper(fileScraper("prometheus-histogram.txt")).setIntervalMillis(500).build());
+            manager.addTarget(new ScrapeTarget.Builder().setId("three-counters")
+                    .setScraper(fileScraper("prometheus-three-counters.txt")).setIntervalMillis(500).build());
+            Assert.assertEquals(2, manager.getTargets().size());
+            Assert.assertEquals(0, manager.getStatus("histogram").getScrapeCount());
+            Assert.assertNull(manager.getStatus("wotgorilla?"));
+
+            try {
+                manager.addTarget(new ScrapeTarget.Builder().setId("histogram")
+                        .setScraper(fileScraper("prometheus-counter.txt")).build());
+                Assert.fail("Targets must have unique IDs");
+            } catch (IllegalArgumentException expected) {
+            }
+
+            manager.start();
+            Assert.assertTrue(scrapes.await(10, TimeUnit.SECONDS));
+
+            ScrapeTargetStatus status = manager.getStatus("histogram");
+            Assert.assertTrue(status.getScrapeCount() > 0);
+            Assert.assertTrue(status.isLastScrapeSuccessful());
+            Assert.assertEquals(8, status.getLastSampleCount()); // 6 buckets plus sum and count
+            Assert.assertTrue(status.getLastSuccessTime() > 0);
+            Assert.assertTrue(status.getLastDurationNanos() > 0);
+            Assert.assertNull(status.getLastError());
+            Assert.assertEquals(3, manager.getStatus("three-counters").getLastSampleCount());
+
+            Assert.assertEquals("histogram", manager.removeTarget("histogram").getId());
+            Assert.assertNull(manager.removeTarget("histogram"));
+            Assert.assertEquals(1, manager.getTargets().size());
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testScrapeTimeout() throws Exception {
+        final CountDownLatch failures = new CountDownLatch(1);
+        PrometheusScraper slowScraper = new PrometheusScraper(new URL("http://127.0.0.1:9/metrics")) {
+            @Override
+            protected OpenConnectionDetails openConnection(URL endpointUrl) throws IOException {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+                throw new IOException("should have timed out");
+            }
+        };
+
+        ScrapeManager manager = new ScrapeManager.Builder()
+                .setListener(new ScrapeListener() {
+                    @Override
+                    public void scrapeSucceeded(ScrapeTarget target, List<MetricFamily> metricFamilies) {
+                    }
+
+                    @Override
+                    public void scrapeFailed(ScrapeTarget target, Throwable error) {
+                        Assert.assertTrue(error instanceof TimeoutException);
+                        failures.countDown();
+                    }
+                })
+                .build();
+        try {
+            manager.addTarget(new ScrapeTarget.Builder().setId("slow").setScraper(slowScraper)
+                    .setIntervalMillis(200).setTimeoutMillis(50).build());
+            manager.start();
+            Assert.assertTrue(failures.await(10, TimeUnit.SECONDS));
+
+            ScrapeTargetStatus status = manager.getStatus("slow");
+            Assert.assertFalse(status.isLastScrapeSuccessful());
+            Assert.assertTrue(status.getLastError() instanceof TimeoutException);
+            Assert.assertEquals(0, status.getLastSuccessTime());
+            Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), status.getLastDurationNanos());
+        } finally {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidTarget() throws Exception {
+        try {
+            new ScrapeTarget.Builder().setId("t").setScraper(fileScraper("prometheus-counter.txt"))
+                    .setIntervalMillis(1000).setTimeoutMillis(2000).build();
+            Assert.fail("Timeout must not be greater than the interval");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        ScrapeTarget target = new ScrapeTarget.Builder().setId("t")
+                .setScraper(fileScraper("prometheus-counter.txt")).setIntervalMillis(5000).build();
+        Assert.assertEquals(5000, target.getTimeoutMillis());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.transport.ContentEncoding;
+import prometheus.types.Gauge;
+import prometheus.types.Labels;
+import prometheus.types.Metric;
+import prometheus.types.MetricFamily;
+import prometheus.types.MetricType;
+
+public class ScrapeStatsTest {
+
+    // prometheus.txt has 505 lines, 145 of which are comments
+    private static void assertTextStats(ScrapeStats stats) {
+        Assert.assertEquals(ContentEncoding.IDENTITY, stats.getContentEncoding());
+        Assert.assertEquals(505, stats.getLineCount());
+        Assert.assertEquals(72, stats.getFamilyCount());
+        Assert.assertEquals(127, stats.getMetricCount());
+        Assert.assertEquals(505 - 145, stats.getSampleCount());
+        Assert.assertTrue(stats.getWireBytes() > 0);
+        Assert.assertEquals(stats.getWireBytes(), stats.getDecodedBytes());
+        Assert.assertEquals(0, stats.getDecodeNanos());
+        Assert.assertTrue(stats.getParseErrors().isEmpty());
+        assertPhases(stats);
+    }
+
+    private static void assertPhases(ScrapeStats stats) {
+        long phaseNanos = 0;
+        for (ScrapeStats.Phase phase : ScrapeStats.Phase.values()) {
+            Assert.assertTrue(phase.toString(), stats.getPhaseNanos(phase) >= 0);
+            phaseNanos += stats.getPhaseNanos(phase);
+        }
+        Assert.assertTrue(stats.getPhaseNanos(ScrapeStats.Phase.PARSE) > 0);
+        Assert.assertTrue(stats.getPhaseNanos(ScrapeStats.Phase.WALK) > 0);
+        Assert.assertTrue(stats.toString(), phaseNanos <= stats.getDurationNanos());
+    }
+
+    @Test
+    public void testTextScrape() throws Exception {
+        URL testDataUrl = getClass().getClassLoader().getResource("prometheus.txt");
+        PrometheusScraper scraper = new PrometheusScraper(testDataUrl, PrometheusDataFormat.TEXT);
+        Assert.assertNull(scraper.getLastScrapeStats());
+        scraper.scrape();
+        assertTextStats(scraper.getLastScrapeStats());
+
+        scraper.setTextParserPool(ForkJoinPool.commonPool());
+        scraper.scrape();
+        assertTextStats(scraper.getLastScrapeStats());
+    }
+
+    @Test
+    public void testBinaryScrape() throws Exception {
+        URL testDataUrl = getClass().getClassLoader().getResource("prometheus.data");
+        PrometheusScraper scraper = new PrometheusScraper(testDataUrl, PrometheusDataFormat.BINARY);
+        scraper.scrape();
+        ScrapeStats stats = scraper.getLastScrapeStats();
+        Assert.assertEquals(0, stats.getLineCount());
+        Assert.assertEquals(71, stats.getFamilyCount());
+        Assert.assertEquals(126, stats.getMetricCount());
+        Assert.assertTrue(stats.getSampleCount() > stats.getMetricCount());
+        assertPhases(stats);
+    }
+
+    @Test
+    public void testToMetricFamilies() {
+        ParseErrors parseErrors = new ParseErrors();
+        parseErrors.lineRejected(ParseErrors.Reason.MALFORMED_LINE);
+        ScrapeStats stats = new ScrapeStats.Builder()
+                .setContentEncoding(ContentEncoding.GZIP)
+                .setWireBytes(1000)
+                .setDecodedBytes(5000)
+                .setDurationNanos(2500000000L)
+                .setPhaseNanos(ScrapeStats.Phase.CONNECT, 1000000000L)
+                .setDecodeNanos(500000000L)
+                .setPhaseNanos(ScrapeStats.Phase.PARSE, 250000000L)
+                .setLineCount(40)
+                .setFamilyCount(3)
+                .setMetricCount(10)
+                .setSampleCount(30)
+                .setParseErrors(parseErrors)
+                .build();
+        Map<String, String> target = new HashMap<>();
+        target.put("job", "node");
+        target.put("instance", "host:9100");
+
+        Map<String, MetricFamily> families = new HashMap<>();
+        for (MetricFamily family : stats.toMetricFamilies(Labels.of(target))) {
+            Assert.assertEquals(MetricType.GAUGE, family.getType());
+            Assert.assertNotNull(family.getHelp());
+            families.put(family.getName(), family);
+        }
+        Assert.assertEquals(2.5, value(families.get("scrape_duration_seconds"), target), 0);
+        Assert.assertEquals(1000, value(families.get("scrape_wire_bytes"), target), 0);
+        Assert.assertEquals(5000, value(families.get("scrape_decoded_bytes"), target), 0);
+        Assert.assertEquals(40, value(families.get("scrape_lines"), target), 0);
+        Assert.assertEquals(3, value(families.get("scrape_metric_families"), target), 0);
+        Assert.assertEquals(10, value(families.get("scrape_metrics"), target), 0);
+        Assert.assertEquals(30, value(families.get("scrape_samples_scraped"), target), 0);
+        Assert.assertEquals(1, value(families.get("scrape_lines_rejected"), target), 0);
+        Assert.assertEquals(0, value(families.get("scrape_metric_families_dropped"), target), 0);
+        Assert.assertEquals(10, families.size());
+
+        MetricFamily phases = families.get("scrape_phase_duration_seconds");
+        Assert.assertEquals(ScrapeStats.Phase.values().length, phases.getMetrics().size());
+        Map<String, Double> phaseSeconds = new HashMap<>();
+        for (Metric metric : phases.getMetrics()) {
+            Assert.assertEquals("node", metric.getLabels().get("job"));
+            Assert.assertEquals("host:9100", metric.getLabels().get("instance"));
+            phaseSeconds.put(metric.getLabels().get("phase"), ((Gauge) metric).getValue());
+        }
+        Assert.assertEquals(1.0, phaseSeconds.get("connect"), 0);
+        Assert.assertEquals(0.0, phaseSeconds.get("transfer"), 0);
+        Assert.assertEquals(0.5, phaseSeconds.get("decode"), 0);
+        Assert.assertEquals(0.25, phaseSeconds.get("parse"), 0);
+        Assert.assertEquals(0.0, phaseSeconds.get("walk"), 0);
+    }
+
+    private static double value(MetricFamily family, Map<String, String> labels) {
+        List<Metric> metrics = family.getMetrics();
+        Assert.assertEquals(1, metrics.size());
+        Assert.assertEquals(labels, metrics.get(0).getLabels());
+        return ((Gauge) metrics.get(0)).getValue();
+    }
+}
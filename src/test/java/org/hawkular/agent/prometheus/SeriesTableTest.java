@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import prometheus.types.Labels;
+
+public class SeriesTableTest {
+
+    private static Labels labels(int i) {
+        return Labels.of(new String[] { "id" }, new String[] { String.valueOf(i) }, 1);
+    }
+
+    @Test
+    public void testPutAndFind() {
+        SeriesTable table = new SeriesTable(2);
+        int slot = table.put("a", Labels.EMPTY);
+        Assert.assertTrue(slot < 0);
+        slot = -(slot + 1);
+        table.setDouble(slot, 0, 1.5);
+        table.setLong(slot, 1, 42L);
+
+        Assert.assertEquals(slot, table.put("a", Labels.EMPTY));
+        Assert.assertEquals(slot, table.find("a", Labels.EMPTY));
+        Assert.assertEquals(-1, table.find("b", Labels.EMPTY));
+        Assert.assertEquals(-1, table.find("a", labels(1)));
+        Assert.assertEquals(1.5, table.getDouble(slot, 0), 0);
+        Assert.assertEquals(42L, table.getLong(slot, 1));
+        Assert.assertEquals("a", table.getFamily(slot));
+        Assert.assertEquals(Labels.EMPTY, table.getLabels(slot));
+        Assert.assertEquals(1, table.size());
+    }
+
+    @Test
+    public void testGrowAndSweep() {
+        final SeriesTable table = new SeriesTable(1);
+        for (int i = 0; i < 1000; i++) {
+            int slot = -(table.put("family", labels(i)) + 1);
+            table.setLong(slot, 0, i);
+        }
+        Assert.assertEquals(1000, table.size());
+
+        // keep every third series in the next generation; the others are swept out
+        table.nextGeneration();
+        for (int i = 0; i < 1000; i += 3) {
+            Assert.assertTrue(table.put("family", labels(i)) >= 0);
+        }
+        final Map<Long, Labels> removed = new HashMap<>();
+        int count = table.sweep(0, new SeriesTable.RemovalListener() {
+            @Override
+            public void removed(int slot) {
+                removed.put(table.getLong(slot, 0), table.getLabels(slot));
+            }
+        });
+        Assert.assertEquals(666, count);
+        Assert.assertEquals(666, removed.size());
+        Assert.assertEquals(334, table.size());
+        for (int i = 0; i < 1000; i++) {
+            int slot = table.find("family", labels(i));
+            if (i % 3 == 0) {
+                Assert.assertEquals(i, table.getLong(slot, 0));
+                Assert.assertEquals(0, table.getAge(slot));
+            } else {
+                Assert.assertEquals(-1, slot);
+                Assert.assertEquals(labels(i), removed.get((long) i));
+            }
+        }
+    }
+
+    @Test
+    public void testSweepMaxAge() {
+        SeriesTable table = new SeriesTable(0);
+        table.put("old", Labels.EMPTY);
+        table.nextGeneration();
+        table.put("newer", Labels.EMPTY);
+        table.nextGeneration();
+        Assert.assertEquals(0, table.sweep(2, null));
+        Assert.assertEquals(1, table.sweep(1, null));
+        Assert.assertEquals(-1, table.find("old", Labels.EMPTY));
+        Assert.assertEquals(1, table.getAge(table.find("newer", Labels.EMPTY)));
+        table.clear();
+        Assert.assertEquals(0, table.size());
+        Assert.assertEquals(-1, table.find("newer", Labels.EMPTY));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        // compare against a map, with removals in between that move series around within probe sequences
+        SeriesTable table = new SeriesTable(1);
+        Map<Integer, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            table.nextGeneration();
+            Map<Integer, Long> kept = new HashMap<>();
+            for (int n = 0; n < 200; n++) {
+                int id = random.nextInt(500);
+                int slot = table.put("f", labels(id));
+                if (slot < 0) {
+                    Assert.assertFalse(expected.containsKey(id) || kept.containsKey(id));
+                    slot = -(slot + 1);
+                }
+                long value = random.nextLong();
+                table.setLong(slot, 0, value);
+                kept.put(id, value);
+            }
+            table.sweep(0, null);
+            expected = kept;
+            Assert.assertEquals(expected.size(), table.size());
+            for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+                int slot = table.find("f", labels(entry.getKey()));
+                Assert.assertTrue(slot >= 0);
+                Assert.assertEquals(entry.getValue().longValue(), table.getLong(slot, 0));
+            }
+        }
+    }
+}
@@ -16,6 +16,9 @@
  */
 package prometheus;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Test;
 import prometheus.types.Summary;
@@ -45,4 +48,36 @@ public class SummaryTest {
         Assert.assertEquals(1, summary.getLabels().size());
         Assert.assertEquals("111", summary.getLabels().get("one"));
     }
+
+    @Test
+    public void testQuantileArrays() {
+        Summary.Builder builder = new Summary.Builder().setName("foo");
+        for (int i = 0; i < 10; i++) {
+            builder.addQuantile(i / 10.0, i * 2.0);
+        }
+        Summary summary = builder.addQuantiles(Arrays.asList(new Summary.Quantile(0.99, 42))).build();
+        Assert.assertEquals(11, summary.getQuantileCount());
+        Assert.assertEquals(0.3, summary.getQuantile(3), 0);
+        Assert.assertEquals(6.0, summary.getQuantileValue(3), 0);
+        Assert.assertEquals(0.99, summary.getQuantile(10), 0);
+        Assert.assertEquals(42, summary.getQuantileValue(10), 0);
+
+        List<Summary.Quantile> quantiles = summary.getQuantiles();
+        Assert.assertEquals(11, quantiles.size());
+        Assert.assertEquals(0.99, quantiles.get(10).getQuantile(), 0);
+        Assert.assertEquals("0.99:42", quantiles.get(10).toString());
+        try {
+            quantiles.remove(0);
+            Assert.fail("Quantiles must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        // adding more to the builder does not change the summary already built
+        builder.addQuantile(1.0, 1);
+        Assert.assertEquals(11, summary.getQuantileCount());
+
+        Summary empty = new Summary.Builder().setName("foo").build();
+        Assert.assertEquals(0, empty.getQuantileCount());
+        Assert.assertTrue(empty.getQuantiles().isEmpty());
+    }
 }
@@ -17,20 +17,27 @@
 
 package prometheus;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.logging.Logger.Level;
 import org.junit.Assert;
 import org.junit.Test;
+import prometheus.text.LabelView;
+import prometheus.text.ParallelTextPrometheusMetricDataParser;
 import prometheus.text.TextPrometheusMetricDataParser;
 import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.text.TextSampleSink;
 import prometheus.types.Counter;
 import prometheus.types.Gauge;
 import prometheus.types.Histogram;
+import prometheus.types.Metric;
 import prometheus.types.MetricFamily;
 import prometheus.types.MetricType;
 import prometheus.types.Summary;
@@ -156,6 +163,110 @@ public class TextPrometheusParserTest {
         Assert.assertEquals(144320, metric.getBuckets().get(5).getCumulativeCount());
     }
 
+    @Test
+    public void testTimestamps() throws Exception {
+        String textData = "# TYPE requests counter\n"
+                + "requests{code=\"200\"} 10 1395066363000\n"
+                + "requests{code=\"500\"} 2\n"
+                + "# TYPE latency summary\n"
+                + "latency{quantile=\"0.5\"} 0.1 1395066363000\n"
+                + "latency_sum 4.5 1395066363001\n"
+                + "latency_count 30\n"
+                + "# TYPE old gauge\n"
+                + "old -5 -1000\n";
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(textData.getBytes(StandardCharsets.UTF_8)));
+
+        MetricFamily requests = parser.parse();
+        Assert.assertEquals(1395066363000L, requests.getMetrics().get(0).getTimestamp());
+        Assert.assertTrue(requests.getMetrics().get(0).hasTimestamp());
+        Assert.assertEquals(Metric.NO_TIMESTAMP, requests.getMetrics().get(1).getTimestamp());
+        Assert.assertFalse(requests.getMetrics().get(1).hasTimestamp());
+
+        Summary latency = (Summary) parser.parse().getMetrics().get(0);
+        Assert.assertEquals(1395066363001L, latency.getTimestamp()); // the last timestamp given
+        Assert.assertEquals(30, latency.getSampleCount());
+
+        Gauge old = (Gauge) parser.parse().getMetrics().get(0);
+        Assert.assertEquals(-1000, old.getTimestamp());
+        Assert.assertEquals(-5, old.getValue(), 0);
+        Assert.assertNull(parser.parse());
+    }
+
+    @Test
+    public void testInterleavedSeries() throws Exception {
+        // the samples of the series are usually grouped together, but they don't have to be
+        String textData = "# TYPE latency histogram\n"
+                + "latency_bucket{path=\"/a\",le=\"1\"} 1\n"
+                + "latency_bucket{path=\"/b\",le=\"1\"} 2\n"
+                + "latency_bucket{le=\"+Inf\",path=\"/a\"} 3\n"
+                + "latency_bucket{path=\"/b\",le=\"+Inf\"} 4\n"
+                + "latency_count{path=\"/b\"} 4\n"
+                + "latency_count{path=\"/a\"} 3\n"
+                + "latency_sum{path=\"/a\"} 0.5\n"
+                + "latency_sum{path=\"/b\"} 1.5\n";
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(textData.getBytes(StandardCharsets.UTF_8)));
+        MetricFamily family = parser.parse();
+        Assert.assertEquals(2, family.getMetrics().size());
+
+        Histogram a = (Histogram) family.getMetrics().get(0);
+        Assert.assertEquals("/a", a.getLabels().get("path"));
+        Assert.assertEquals(2, a.getBucketCount());
+        Assert.assertEquals(1, a.getCumulativeCount(0));
+        Assert.assertEquals(3, a.getCumulativeCount(1));
+        Assert.assertEquals(3, a.getSampleCount());
+        Assert.assertEquals(0.5, a.getSampleSum(), 0);
+
+        Histogram b = (Histogram) family.getMetrics().get(1);
+        Assert.assertEquals("/b", b.getLabels().get("path"));
+        Assert.assertEquals(2, b.getBucketCount());
+        Assert.assertEquals(2, b.getCumulativeCount(0));
+        Assert.assertEquals(4, b.getCumulativeCount(1));
+        Assert.assertEquals(4, b.getSampleCount());
+        Assert.assertEquals(1.5, b.getSampleSum(), 0);
+        Assert.assertNull(parser.parse());
+    }
+
+    @Test
+    public void testSampleNameSuffixes() throws Exception {
+        String textData = "# TYPE rpc summary\n"
+                + "rpc{quantile=\"0.5\"} 1\n"
+                + "rpc_sum 10\n"
+                + "rpc_count 5\n"
+                + "rpc_bucket{le=\"1\"} 2\n" // summaries have no buckets
+                + "# TYPE rpc_latency histogram\n"
+                + "rpc_latency_bucket{le=\"1\"} 2\n"
+                + "rpc_latency_bucket{le=\"+Inf\"} 3\n"
+                + "rpc_latency_count 3\n"
+                + "rpc_latency_sum 1.5\n"
+                + "rpc_latency 7\n" // histograms have no samples without a suffix
+                + "# TYPE rpc_sum_total counter\n"
+                + "rpc_sum_total 4\n";
+        TextPrometheusMetricDataParser parser = new TextPrometheusMetricDataParser(
+                new ByteArrayInputStream(textData.getBytes(StandardCharsets.UTF_8)));
+
+        MetricFamily rpc = parser.parse();
+        Assert.assertEquals("rpc", rpc.getName());
+        Summary summary = (Summary) rpc.getMetrics().get(0);
+        Assert.assertEquals(1, summary.getQuantileCount());
+        Assert.assertEquals(10, summary.getSampleSum(), 0);
+        Assert.assertEquals(5, summary.getSampleCount());
+
+        MetricFamily latency = parser.parse();
+        Assert.assertEquals("rpc_latency", latency.getName());
+        Histogram histogram = (Histogram) latency.getMetrics().get(0);
+        Assert.assertEquals(2, histogram.getBucketCount());
+        Assert.assertEquals(1.5, histogram.getSampleSum(), 0);
+        Assert.assertEquals(3, histogram.getSampleCount());
+
+        MetricFamily total = parser.parse();
+        Assert.assertEquals("rpc_sum_total", total.getName());
+        Assert.assertEquals(4, ((Counter) total.getMetrics().get(0)).getValue(), 0);
+        Assert.assertNull(parser.parse());
+        Assert.assertEquals(2, parser.getParseErrors().getCount(ParseErrors.Reason.UNEXPECTED_SAMPLE));
+    }
+
     @Test
     public void testThreeCounters() throws Exception {
         List<MetricFamily> metricFamilies = parseTestFile("prometheus-three-counters.txt");
@@ -254,4 +365,143 @@ public class TextPrometheusParserTest {
         List<MetricFamily> allFamilies = scraper.scrape();
         Assert.assertEquals(72, allFamilies.size());
     }
+
+    @Test
+    public void testStreamToSink() throws Exception {
+        final List<String> events = new ArrayList<>();
+        TextSampleSink sink = new TextSampleSink() {
+            @Override
+            public void startMetricFamily(String name, MetricType type, String help) {
+                events.add("start " + name + " " + type + " " + help);
+            }
+
+            @Override
+            public void sample(String name, LabelView labels, double value, long timestamp) {
+                StringBuilder str = new StringBuilder(name);
+                for (int i = 0; i < labels.getLabelCount(); i++) {
+                    str.append(' ').append(labels.getLabelName(i)).append('=').append(labels.getLabelValue(i));
+                }
+                events.add(str.append(' ').append(value).append(' ').append(timestamp).toString());
+            }
+
+            @Override
+            public void endMetricFamily() {
+                events.add("end");
+            }
+        };
+
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus-histogram.txt")) {
+            new TextPrometheusMetricDataParser(testData).parse(sink);
+        }
+        Assert.assertEquals(10, events.size());
+        Assert.assertEquals("start http_request_duration_seconds HISTOGRAM A histogram of the request duration.",
+                events.get(0));
+        Assert.assertEquals("http_request_duration_seconds_bucket mylabel=wotgorilla? le=0.05 24054.0 123456789",
+                events.get(1));
+        Assert.assertEquals("http_request_duration_seconds_bucket mylabel=wotgorilla? le=+Inf 144320.0 123456789",
+                events.get(6));
+        Assert.assertEquals("http_request_duration_seconds_count mylabel=wotgorilla? 144320.0 123456789",
+                events.get(8));
+        Assert.assertEquals("end", events.get(9));
+
+        events.clear();
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus-three-counters.txt")) {
+            new TextPrometheusMetricDataParser(testData).parse(sink);
+        }
+        Assert.assertEquals(9, events.size());
+        Assert.assertEquals("start one_counter_total COUNTER This is the first", events.get(0));
+        Assert.assertEquals("one_counter_total 111.0 " + TextSampleSink.NO_TIMESTAMP, events.get(1));
+        Assert.assertEquals("end", events.get(2));
+        Assert.assertEquals("start three_counter_total COUNTER This is the third with type specified first",
+                events.get(6));
+
+        // the samples streamed to a sink must be the same ones that make up the metrics built by parse()
+        final AtomicInteger familyCount = new AtomicInteger(0);
+        final AtomicInteger sampleCount = new AtomicInteger(0);
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.txt")) {
+            new TextPrometheusMetricDataParser(testData).parse(new TextSampleSink() {
+                @Override
+                public void startMetricFamily(String name, MetricType type, String help) {
+                    familyCount.incrementAndGet();
+                }
+
+                @Override
+                public void sample(String name, LabelView labels, double value, long timestamp) {
+                    sampleCount.incrementAndGet();
+                }
+
+                @Override
+                public void endMetricFamily() {
+                }
+            });
+        }
+        int expectedSampleCount = 0;
+        for (MetricFamily family : parseTestFile("prometheus.txt")) {
+            for (prometheus.types.Metric metric : family.getMetrics()) {
+                if (metric instanceof Summary) {
+                    expectedSampleCount += ((Summary) metric).getQuantiles().size() + 2;
+                } else if (metric instanceof Histogram) {
+                    expectedSampleCount += ((Histogram) metric).getBuckets().size() + 2;
+                } else {
+                    expectedSampleCount++;
+                }
+            }
+        }
+        Assert.assertEquals(72, familyCount.get());
+        Assert.assertEquals(expectedSampleCount, sampleCount.get());
+    }
+
+    @Test
+    public void testParallelParse() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            String[] fileNames = { "prometheus.txt", "prometheus-counter.txt", "prometheus-gauge.txt",
+                    "prometheus-summary.txt", "prometheus-histogram.txt", "prometheus-three-counters.txt" };
+            for (String fileName : fileNames) {
+                List<MetricFamily> expected = parseTestFile(fileName);
+
+                // a segment size of 1 puts every metric family in its own segment
+                for (int minimumSegmentSize : new int[] { 1, 1024, Integer.MAX_VALUE }) {
+                    List<MetricFamily> actual = new ArrayList<>();
+                    try (InputStream testData = getClass().getClassLoader().getResourceAsStream(fileName)) {
+                        ParallelTextPrometheusMetricDataParser parser = new ParallelTextPrometheusMetricDataParser(
+                                testData, pool, minimumSegmentSize);
+                        for (MetricFamily family = parser.parse(); family != null; family = parser.parse()) {
+                            actual.add(family);
+                        }
+                        Assert.assertNull(parser.parse());
+                    }
+
+                    Assert.assertEquals(fileName, expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        Assert.assertEquals(fileName, describe(expected.get(i)), describe(actual.get(i)));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private String describe(MetricFamily family) {
+        StringBuilder str = new StringBuilder();
+        str.append(family.getName()).append(' ').append(family.getType()).append(' ').append(family.getHelp());
+        for (prometheus.types.Metric metric : family.getMetrics()) {
+            str.append('\n').append(metric.getName()).append(metric.getLabels()).append(' ');
+            if (metric instanceof Counter) {
+                str.append(((Counter) metric).getValue());
+            } else if (metric instanceof Gauge) {
+                str.append(((Gauge) metric).getValue());
+            } else if (metric instanceof Summary) {
+                Summary summary = (Summary) metric;
+                str.append(summary.getSampleCount()).append(' ').append(summary.getSampleSum()).append(' ')
+                        .append(summary.getQuantiles());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                str.append(histogram.getSampleCount()).append(' ').append(histogram.getSampleSum()).append(' ')
+                        .append(histogram.getBuckets());
+            }
+        }
+        return str.toString();
+    }
 }
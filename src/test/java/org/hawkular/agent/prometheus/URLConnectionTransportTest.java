@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import prometheus.transport.ContentEncoding;
+import prometheus.transport.TransportResponse;
+import prometheus.transport.URLConnectionTransport;
+import prometheus.types.MetricFamily;
+
+public class URLConnectionTransportTest {
+
+    private HttpServer server;
+    private volatile String acceptEncoding;
+    private final Set<InetSocketAddress> clients = Collections
+            .newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/text", new ResourceHandler("prometheus.txt", "text/plain; version=0.0.4"));
+        server.createContext("/binary", new ResourceHandler("prometheus.data",
+                "application/vnd.google.protobuf; proto=io.prometheus.client.MetricFamily; encoding=delimited"));
+        server.createContext("/gzip", new ResourceHandler("prometheus.txt", "text/plain; version=0.0.4", "gzip"));
+        server.createContext("/deflate",
+                new ResourceHandler("prometheus.txt", "text/plain; version=0.0.4", "deflate"));
+        server.createContext("/rawdeflate",
+                new ResourceHandler("prometheus.data", "application/vnd.google.protobuf; "
+                        + "proto=io.prometheus.client.MetricFamily; encoding=delimited", "rawdeflate"));
+        server.createContext("/zstd", new ResourceHandler("prometheus.txt", "text/plain; version=0.0.4", "zstd"));
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private URL url(String path) throws Exception {
+        return new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+    }
+
+    @Test
+    public void testScrape() throws Exception {
+        URLConnectionTransport transport = new URLConnectionTransport();
+
+        PrometheusScraper textScraper = new PrometheusScraper(url("/text"));
+        textScraper.setTransport(transport);
+        List<MetricFamily> textFamilies = textScraper.scrape();
+        Assert.assertEquals(72, textFamilies.size());
+
+        PrometheusScraper binaryScraper = new PrometheusScraper(url("/binary"));
+        binaryScraper.setTransport(transport);
+        List<MetricFamily> binaryFamilies = binaryScraper.scrape();
+        Assert.assertEquals(71, binaryFamilies.size());
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        PrometheusScraper scraper = new PrometheusScraper(url("/text"));
+        scraper.setTransport(new URLConnectionTransport());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(72, scraper.scrape().size());
+        }
+
+        // every request came over the same connection
+        Assert.assertEquals(1, clients.size());
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        Assert.assertTrue(ContentEncoding.ZSTD.isAvailable());
+        Assert.assertEquals("gzip, deflate, zstd", ContentEncoding.getAcceptEncoding());
+
+        URLConnectionTransport transport = new URLConnectionTransport();
+        int textSize = readResource("prometheus.txt").length;
+        String[] paths = { "/gzip", "/deflate", "/zstd" };
+        ContentEncoding[] encodings = { ContentEncoding.GZIP, ContentEncoding.DEFLATE, ContentEncoding.ZSTD };
+        for (int i = 0; i < paths.length; i++) {
+            PrometheusScraper scraper = new PrometheusScraper(url(paths[i]));
+            scraper.setTransport(transport);
+            Assert.assertEquals(72, scraper.scrape().size());
+            Assert.assertEquals("gzip, deflate, zstd", acceptEncoding);
+
+            ScrapeStats stats = scraper.getLastScrapeStats();
+            Assert.assertEquals(encodings[i], stats.getContentEncoding());
+            Assert.assertEquals(textSize, stats.getDecodedBytes());
+            Assert.assertTrue(stats.toString(), stats.getWireBytes() < stats.getDecodedBytes() / 3);
+            Assert.assertTrue(stats.getDecodeNanos() > 0);
+        }
+
+        // some servers send deflate data without the zlib wrapper
+        PrometheusScraper scraper = new PrometheusScraper(url("/rawdeflate"));
+        scraper.setTransport(transport);
+        Assert.assertEquals(71, scraper.scrape().size());
+        Assert.assertEquals(ContentEncoding.DEFLATE, scraper.getLastScrapeStats().getContentEncoding());
+
+        // uncompressed data
+        scraper = new PrometheusScraper(url("/text"));
+        scraper.setTransport(new URLConnectionTransport(1000, 1000, false));
+        Assert.assertEquals(72, scraper.scrape().size());
+        Assert.assertNull(acceptEncoding);
+        ScrapeStats stats = scraper.getLastScrapeStats();
+        Assert.assertEquals(ContentEncoding.IDENTITY, stats.getContentEncoding());
+        Assert.assertEquals(textSize, stats.getWireBytes());
+        Assert.assertEquals(textSize, stats.getDecodedBytes());
+        Assert.assertEquals(0, stats.getDecodeNanos());
+    }
+
+    @Test
+    public void testErrorStatus() throws Exception {
+        try {
+            new URLConnectionTransport().open(url("/wotgorilla"), null);
+            Assert.fail("Should have failed with a 404");
+        } catch (IOException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("404"));
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        try (TransportResponse response = new URLConnectionTransport(1000, 100).open(url("/slow"), null)) {
+            Assert.fail("Should have timed out");
+        } catch (SocketTimeoutException expected) {
+        }
+    }
+
+    private byte[] readResource(String resource) throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private class ResourceHandler implements HttpHandler {
+        private final String resource;
+        private final String contentType;
+        private final String contentEncoding;
+
+        ResourceHandler(String resource, String contentType) {
+            this(resource, contentType, null);
+        }
+
+        ResourceHandler(String resource, String contentType, String contentEncoding) {
+            this.resource = resource;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            clients.add(exchange.getRemoteAddress());
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] data = readResource(resource);
+            if (contentEncoding != null) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                OutputStream out;
+                if (contentEncoding.equals("gzip")) {
+                    out = new GZIPOutputStream(compressed);
+                } else if (contentEncoding.equals("deflate")) {
+                    out = new DeflaterOutputStream(compressed);
+                } else if (contentEncoding.equals("rawdeflate")) {
+                    out = new DeflaterOutputStream(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+                } else {
+                    out = new ZstdOutputStream(compressed);
+                }
+                out.write(data);
+                out.close();
+                data = compressed.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding",
+                        contentEncoding.equals("rawdeflate") ? "deflate" : contentEncoding);
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package prometheus;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import prometheus.text.TextPrometheusMetricsProcessor;
+import prometheus.walkers.XMLPrometheusMetricsWalker;
+
+public class XMLPrometheusMetricsWalkerTest {
+
+    private String walk(InputStream testData, URL url, int bufferSize) throws Exception {
+        StringWriter writer = new StringWriter();
+        new TextPrometheusMetricsProcessor(testData, new XMLPrometheusMetricsWalker(url, writer, bufferSize)).walk();
+        return writer.toString();
+    }
+
+    private String walk(String textData, URL url, int bufferSize) throws Exception {
+        return walk(new ByteArrayInputStream(textData.getBytes(StandardCharsets.UTF_8)), url, bufferSize);
+    }
+
+    private Document parseXml(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        String textData = "# HELP queue_size Items in <the> queue & then some\n"
+                + "# TYPE queue_size gauge\n"
+                + "queue_size{name=\"a<b>&c\",bell=\"\u0007\"} 12.5\n"
+                + "# TYPE latency histogram\n"
+                + "latency_bucket{le=\"0.25\"} 3\n"
+                + "latency_bucket{le=\"+Inf\"} 4\n"
+                + "latency_sum 0.75\n"
+                + "latency_count 4\n";
+        String xml = walk(textData, new URL("http://localhost:8080/metrics?a=1&b=2"), 8192);
+
+        Document document = parseXml(xml);
+        Element root = document.getDocumentElement();
+        Assert.assertEquals("metricFamilies", root.getTagName());
+        Assert.assertEquals("http://localhost:8080/metrics?a=1&b=2",
+                root.getElementsByTagName("url").item(0).getTextContent());
+        Assert.assertEquals("Items in <the> queue & then some",
+                root.getElementsByTagName("help").item(0).getTextContent());
+        Assert.assertEquals("bell=\uFFFD,name=a<b>&c", root.getElementsByTagName("labels").item(0).getTextContent());
+        Assert.assertEquals("12.5", root.getElementsByTagName("value").item(0).getTextContent());
+        Assert.assertEquals(1, root.getElementsByTagName("buckets").getLength());
+        Assert.assertEquals("0.25:3", root.getElementsByTagName("bucket").item(0).getTextContent());
+        Assert.assertEquals("+Inf:4", root.getElementsByTagName("bucket").item(1).getTextContent());
+        Assert.assertEquals("0.75", root.getElementsByTagName("sum").item(0).getTextContent());
+
+        // a buffer that has to be drained many times must not change anything
+        Assert.assertEquals(xml, walk(textData, new URL("http://localhost:8080/metrics?a=1&b=2"), 32));
+    }
+
+    @Test
+    public void testWellFormed() throws Exception {
+        try (InputStream testData = getClass().getClassLoader().getResourceAsStream("prometheus.txt")) {
+            Document document = parseXml(walk(testData, null, 8192));
+            Assert.assertEquals(72, document.getElementsByTagName("metricFamily").getLength());
+            Assert.assertEquals(0, document.getElementsByTagName("url").getLength());
+        }
+    }
+}
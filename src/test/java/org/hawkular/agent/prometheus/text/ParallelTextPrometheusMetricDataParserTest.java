@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package prometheus.text;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelTextPrometheusMetricDataParserTest {
+
+    @Test
+    public void testGrownSize() {
+        Assert.assertEquals(2 * LineReader.DEFAULT_BUFFER_SIZE,
+                ParallelTextPrometheusMetricDataParser.grownSize(LineReader.DEFAULT_BUFFER_SIZE));
+        Assert.assertEquals(1 << 30, ParallelTextPrometheusMetricDataParser.grownSize(1 << 29));
+
+        // doubling would overflow past 1GB, so the buffer grows to the largest array there can be, and no further
+        int max = ParallelTextPrometheusMetricDataParser.grownSize(1 << 30);
+        Assert.assertEquals(Integer.MAX_VALUE - 8, max);
+        Assert.assertEquals(max, ParallelTextPrometheusMetricDataParser.grownSize((1 << 30) + 1));
+        Assert.assertEquals(-1, ParallelTextPrometheusMetricDataParser.grownSize(max));
+    }
+}
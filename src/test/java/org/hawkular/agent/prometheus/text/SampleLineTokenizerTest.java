@@ -0,0 +1,256 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package prometheus.text;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Makes sure the tokenizer splits sample lines exactly like the string based parser it replaced did.
+ */
+public class SampleLineTokenizerTest {
+
+    private static final String[] LINES = {
+            "metric 1",
+            "metric\t1",
+            "metric  \t 1.5e-3",
+            "metric{} 1",
+            "metric { } 1",
+            "metric{a=\"1\"} 2",
+            "metric{a=\"1\",} 2",
+            "metric{a=\"1\",b=\"2\"} 3",
+            "metric{a = \"1\" , b=\"2\"} 3",
+            "metric{a=\"1\", b=\"2\"} 3",
+            "metric{a=\"1\",a=\"2\",b=\"3\"} 4",
+            "metric{a=\"\"} 1",
+            "metric{a=\"quote \\\" backslash \\\\ newline \\n other \\t\"} 1",
+            "metric{a=\"trailing backslash \\\\\"} 1",
+            "metric{a=\"},{=\\\"\"} 1",
+            "metric{path=\"/caf\u00e9\",\u00fcnicode=\"\u2603\"} 1",
+            "metric{a=\"1\"}\t+Inf",
+            "metric NaN",
+            "metric 1 1395066363000",
+            "metric 1\t-1395066363000",
+            "metric 1 not-a-timestamp",
+            "metric{a=\"1\"}",
+            "metric{a=\"1\"",
+            "metric{a=\"1",
+            "metric{a",
+            "metric{a=1} 1",
+            "metric{a=\"1\"b=\"2\"} 1",
+            "metric{a \"1\"} 1",
+            "metric",
+    };
+
+    private static byte[] bytes(String line) {
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, String> labels(SampleLineTokenizer tokenizer) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (int i = 0; i < tokenizer.getLabelCount(); i++) {
+            labels.put(tokenizer.getLabelName(i), tokenizer.getLabelValue(i));
+        }
+        return labels;
+    }
+
+    @Test
+    public void testSameAsStringParser() throws Exception {
+        SampleLineTokenizer tokenizer = new SampleLineTokenizer();
+        for (String line : LINES) {
+            assertSameAsStringParser(tokenizer, line);
+        }
+
+        // and every sample line of the test data
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream("prometheus.txt"), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    assertSameAsStringParser(tokenizer, line);
+                }
+            }
+        }
+    }
+
+    private static void assertSameAsStringParser(SampleLineTokenizer tokenizer, String line) {
+        // in the middle of a bigger buffer, to make sure only the given range is looked at
+        byte[] buffer = bytes("x" + line + "}\" 9");
+        int end = bytes("x" + line).length;
+        StringParserResult expected = parseWithStrings(line);
+        boolean tokenized = tokenizer.tokenize(buffer, 1, end);
+        Assert.assertEquals(line, expected != null, tokenized);
+        if (tokenized) {
+            Assert.assertEquals(line, expected.name.toString(), tokenizer.getName());
+            Assert.assertEquals(line, expected.value.toString(), tokenizer.getValue());
+            Assert.assertEquals(line, expected.labels, labels(tokenizer));
+        }
+    }
+
+    @Test
+    public void testTokenize() {
+        SampleLineTokenizer tokenizer = new SampleLineTokenizer();
+        byte[] line = bytes("http_requests{code=\"200\",path=\"/a\\\\b\\n\"}\t1027.5 1395066363000");
+        Assert.assertTrue(tokenizer.tokenize(line, 0, line.length));
+        Assert.assertEquals("http_requests", tokenizer.getName());
+        Assert.assertEquals("1027.5", tokenizer.getValue());
+        Assert.assertEquals(1027.5, tokenizer.getDoubleValue(), 0.0);
+        Assert.assertTrue(tokenizer.isValueNumber());
+        Assert.assertEquals(1395066363000L, tokenizer.getTimestamp());
+        Assert.assertEquals(2, tokenizer.getLabelCount());
+        Assert.assertEquals("200", tokenizer.getLabelValue("code"));
+        Assert.assertEquals("/a\\b\n", tokenizer.getLabelValue("path"));
+        Assert.assertNull(tokenizer.getLabelValue("method"));
+
+        // the results of the previous line are not carried over
+        line = bytes("up{} abc");
+        Assert.assertTrue(tokenizer.tokenize(line, 0, line.length));
+        Assert.assertEquals("up", tokenizer.getName());
+        Assert.assertEquals(0, tokenizer.getLabelCount());
+        Assert.assertFalse(tokenizer.isValueNumber());
+        Assert.assertEquals(TextSampleSink.NO_TIMESTAMP, tokenizer.getTimestamp());
+    }
+
+    @Test
+    public void testManyLabels() {
+        StringBuilder line = new StringBuilder("metric{");
+        for (int i = 0; i < 20; i++) {
+            line.append("label").append(i).append("=\"").append(i).append("\",");
+        }
+        line.append("} 1");
+        SampleLineTokenizer tokenizer = new SampleLineTokenizer();
+        byte[] bytes = bytes(line.toString());
+        Assert.assertTrue(tokenizer.tokenize(bytes, 0, bytes.length));
+        Assert.assertEquals(20, tokenizer.getLabelCount());
+        Assert.assertEquals("label19", tokenizer.getLabelName(19));
+        Assert.assertEquals("19", tokenizer.getLabelValue(19));
+    }
+
+    private static class StringParserResult {
+        final StringBuilder name = new StringBuilder();
+        final StringBuilder value = new StringBuilder();
+        final Map<String, String> labels = new LinkedHashMap<>();
+    }
+
+    // the string based algorithm the tokenizer replaced; null if the line is not valid
+    private static StringParserResult parseWithStrings(String line) {
+        StringParserResult result = new StringParserResult();
+        StringBuilder labelname = new StringBuilder();
+        StringBuilder labelvalue = new StringBuilder();
+        String state = "name";
+
+        for (int c = 0; c < line.length(); c++) {
+            char charAt = line.charAt(c);
+            if (state.equals("name")) {
+                if (charAt == '{') {
+                    state = "startoflabelname";
+                } else if (charAt == ' ' || charAt == '\t') {
+                    state = "endofname";
+                } else {
+                    result.name.append(charAt);
+                }
+            } else if (state.equals("endofname")) {
+                if (charAt == ' ' || charAt == '\t') {
+                    // do nothing
+                } else if (charAt == '{') {
+                    state = "startoflabelname";
+                } else {
+                    result.value.append(charAt);
+                    state = "value";
+                }
+            } else if (state.equals("startoflabelname")) {
+                if (charAt == ' ' || charAt == '\t') {
+                    // do nothing
+                } else if (charAt == '}') {
+                    state = "endoflabels";
+                } else {
+                    labelname.append(charAt);
+                    state = "labelname";
+                }
+            } else if (state.equals("labelname")) {
+                if (charAt == '=') {
+                    state = "labelvaluequote";
+                } else if (charAt == '}') {
+                    state = "endoflabels";
+                } else if (charAt == ' ' || charAt == '\t') {
+                    state = "labelvalueequals";
+                } else {
+                    labelname.append(charAt);
+                }
+            } else if (state.equals("labelvalueequals")) {
+                if (charAt == '=') {
+                    state = "labelvaluequote";
+                } else if (charAt != ' ' && charAt != '\t') {
+                    return null;
+                }
+            } else if (state.equals("labelvaluequote")) {
+                if (charAt == '"') {
+                    state = "labelvalue";
+                } else if (charAt != ' ' && charAt != '\t') {
+                    return null;
+                }
+            } else if (state.equals("labelvalue")) {
+                if (charAt == '\\') {
+                    state = "labelvalueslash";
+                } else if (charAt == '"') {
+                    result.labels.put(labelname.toString(), labelvalue.toString());
+                    labelname.setLength(0);
+                    labelvalue.setLength(0);
+                    state = "nextlabel";
+                } else {
+                    labelvalue.append(charAt);
+                }
+            } else if (state.equals("labelvalueslash")) {
+                state = "labelvalue";
+                if (charAt == '\\') {
+                    labelvalue.append('\\');
+                } else if (charAt == 'n') {
+                    labelvalue.append('\n');
+                } else if (charAt == '"') {
+                    labelvalue.append('"');
+                } else {
+                    labelvalue.append('\\').append(charAt);
+                }
+            } else if (state.equals("nextlabel")) {
+                if (charAt == ',') {
+                    state = "labelname";
+                } else if (charAt == '}') {
+                    state = "endoflabels";
+                } else if (charAt != ' ' && charAt != '\t') {
+                    return null;
+                }
+            } else if (state.equals("endoflabels")) {
+                if (charAt != ' ' && charAt != '\t') {
+                    result.value.append(charAt);
+                    state = "value";
+                }
+            } else if (state.equals("value")) {
+                if (charAt == ' ' || charAt == '\t') {
+                    break;
+                }
+                result.value.append(charAt);
+            }
+        }
+        return result;
+    }
+}
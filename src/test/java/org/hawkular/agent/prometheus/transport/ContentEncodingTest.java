@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015-2016 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package prometheus.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContentEncodingTest {
+
+    /**
+     * Counts how many times it is ended.
+     */
+    private static class CountingInflater extends Inflater {
+        int ends;
+
+        @Override
+        public void end() {
+            ends++;
+            super.end();
+        }
+    }
+
+    @Test
+    public void testInflateEndsInflater() throws Exception {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(deflated)) {
+            out.write("metric 1\n".getBytes(StandardCharsets.UTF_8));
+        }
+
+        CountingInflater inflater = new CountingInflater();
+        InputStream inflated = ContentEncoding.inflate(new ByteArrayInputStream(deflated.toByteArray()), inflater);
+        Assert.assertEquals('m', inflated.read());
+        Assert.assertEquals(0, inflater.ends);
+        inflated.close();
+        Assert.assertEquals(1, inflater.ends);
+    }
+
+    @Test
+    public void testInflateEndsInflaterWhenCloseFails() throws Exception {
+        CountingInflater inflater = new CountingInflater();
+        InputStream inflated = ContentEncoding.inflate(new InputStream() {
+            @Override
+            public int read() {
+                return -1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        }, inflater);
+        try {
+            inflated.close();
+            Assert.fail("The failure to close the deflate data should have been passed on");
+        } catch (IOException expected) {
+            Assert.assertEquals(1, inflater.ends);
+        }
+    }
+}